@@ -0,0 +1,66 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CircuitBreaker} tracks consecutive failures of calls to a resource. Once the number of
+ * consecutive failures reaches the failure threshold the circuit opens and no call is permitted
+ * until the open duration elapses. After that calls are permitted again, and a single failure
+ * opens the circuit again until a call succeeds.
+ *
+ * <p>This class is thread-safe.
+ */
+public class CircuitBreaker {
+  private final int failureThreshold;
+  private final long openDurationNanos;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicLong openUntilNanos = new AtomicLong(System.nanoTime());
+
+  /**
+   * Constructs a {@link CircuitBreaker} with the given params.
+   *
+   * @param failureThreshold the number of consecutive failures that opens the circuit
+   * @param openDuration     the duration for which the circuit stays open
+   * @param timeUnit         the unit of the open duration
+   * @throws IllegalArgumentException if the failure threshold is not positive or the duration is
+   *                                  negative or the time unit is null
+   */
+  public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit timeUnit)
+          throws IllegalArgumentException {
+    if (failureThreshold <= 0) {
+      throw new IllegalArgumentException("Failure threshold has to be positive");
+    }
+    if (openDuration < 0) {
+      throw new IllegalArgumentException("Open duration cannot be negative");
+    }
+    this.failureThreshold = failureThreshold;
+    this.openDurationNanos = Utils.requireNonNull(timeUnit).toNanos(openDuration);
+  }
+
+  /**
+   * Returns true if a call is permitted, i.e. the circuit is not open, false otherwise.
+   *
+   * @return true if a call is permitted, false otherwise
+   */
+  public boolean isCallPermitted() {
+    return System.nanoTime() - openUntilNanos.get() >= 0;
+  }
+
+  /**
+   * Records a successful call, which closes the circuit.
+   */
+  public void recordSuccess() {
+    consecutiveFailures.set(0);
+  }
+
+  /**
+   * Records a failed call, which opens the circuit if the failure threshold is reached.
+   */
+  public void recordFailure() {
+    if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      openUntilNanos.set(System.nanoTime() + openDurationNanos);
+    }
+  }
+}
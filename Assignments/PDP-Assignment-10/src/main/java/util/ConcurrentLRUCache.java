@@ -0,0 +1,254 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class represents a thread safe, weight bounded LRU Key value cache of Generic Type.
+ *
+ * <p>The cache is split into independently locked segments, a key always maps to the same
+ * segment, hence threads working with keys of different segments never contend. Each segment keeps
+ * its entries in access order and evicts the least recently used entries once the total weight of
+ * its entries exceeds its share of the maximum weight of the cache. The weight of an entry is
+ * computed once, when it is put in the cache, by the weigher given to the constructor.
+ *
+ * <p>Null keys and values are not permitted.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ConcurrentLRUCache<K, V> {
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  private final List<Segment<K, V>> segments;
+  private final ToLongFunction<? super V> weigher;
+
+  /**
+   * Constructs a {@link ConcurrentLRUCache} with the given maximum weight and weigher and the
+   * default concurrency level.
+   *
+   * @param maximumWeight the maximum total weight of the entries of the cache
+   * @param weigher       the function that computes the weight of a value
+   * @throws IllegalArgumentException if the maximum weight is not positive or the weigher is null
+   */
+  public ConcurrentLRUCache(long maximumWeight, ToLongFunction<? super V> weigher)
+          throws IllegalArgumentException {
+    this(maximumWeight, weigher, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Constructs a {@link ConcurrentLRUCache} with the given maximum weight, weigher and concurrency
+   * level. The concurrency level is rounded up to the next power of two.
+   *
+   * @param maximumWeight    the maximum total weight of the entries of the cache
+   * @param weigher          the function that computes the weight of a value
+   * @param concurrencyLevel the number of independently locked segments
+   * @throws IllegalArgumentException if the maximum weight or the concurrency level is not
+   *                                  positive or the weigher is null
+   */
+  public ConcurrentLRUCache(long maximumWeight, ToLongFunction<? super V> weigher,
+                            int concurrencyLevel) throws IllegalArgumentException {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight has to be positive");
+    }
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Concurrency level has to be positive");
+    }
+    this.weigher = Utils.requireNonNull(weigher);
+
+    int segmentCount = Integer.highestOneBit(concurrencyLevel);
+    if (segmentCount < concurrencyLevel) {
+      segmentCount <<= 1;
+    }
+    long maximumSegmentWeight = Math.max(1, maximumWeight / segmentCount);
+    List<Segment<K, V>> segments = new ArrayList<>(segmentCount);
+    for (int i = 0; i < segmentCount; i++) {
+      segments.add(new Segment<>(maximumSegmentWeight));
+    }
+    this.segments = Collections.unmodifiableList(segments);
+  }
+
+  /**
+   * Returns the value mapped to the given key and marks it as the most recently used entry.
+   *
+   * @param key the key
+   * @return the value mapped to the given key, null if the key is not cached
+   * @throws IllegalArgumentException if the key is null
+   */
+  public V get(K key) throws IllegalArgumentException {
+    return getSegment(key).get(key);
+  }
+
+  /**
+   * Maps the given key to the given value, replacing any previous value, and evicts the least
+   * recently used entries if the cache exceeds its maximum weight.
+   *
+   * @param key   the key
+   * @param value the value
+   * @throws IllegalArgumentException if the key or value is null or if the weight is negative
+   */
+  public void put(K key, V value) throws IllegalArgumentException {
+    Utils.requireNonNull(value);
+    long weight = weigher.applyAsLong(value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("Weight cannot be negative");
+    }
+    getSegment(key).put(key, value, weight);
+  }
+
+  /**
+   * Removes the value mapped to the given key.
+   *
+   * @param key the key
+   * @return the removed value, null if the key was not cached
+   * @throws IllegalArgumentException if the key is null
+   */
+  public V remove(K key) throws IllegalArgumentException {
+    return getSegment(key).remove(key);
+  }
+
+  /**
+   * Removes all the entries of the cache.
+   */
+  public void clear() {
+    for (Segment<K, V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the number of entries in the cache
+   */
+  public int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the total weight of the entries in the cache.
+   *
+   * @return the total weight of the entries in the cache
+   */
+  public long getWeight() {
+    long weight = 0;
+    for (Segment<K, V> segment : segments) {
+      weight += segment.getWeight();
+    }
+    return weight;
+  }
+
+  private Segment<K, V> getSegment(K key) {
+    int hash = Utils.requireNonNull(key).hashCode();
+    hash ^= hash >>> 16;
+    return segments.get(hash & (segments.size() - 1));
+  }
+
+  private static class Segment<K, V> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, WeightedValue<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maximumWeight;
+    private long weight;
+
+    private Segment(long maximumWeight) {
+      this.maximumWeight = maximumWeight;
+    }
+
+    private V get(K key) {
+      lock.lock();
+      try {
+        WeightedValue<V> weightedValue = map.get(key);
+        return Objects.nonNull(weightedValue) ? weightedValue.value : null;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void put(K key, V value, long valueWeight) {
+      lock.lock();
+      try {
+        WeightedValue<V> previous = map.put(key, new WeightedValue<>(value, valueWeight));
+        if (Objects.nonNull(previous)) {
+          weight -= previous.weight;
+        }
+        weight += valueWeight;
+        evict();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private V remove(K key) {
+      lock.lock();
+      try {
+        WeightedValue<V> removed = map.remove(key);
+        if (Objects.isNull(removed)) {
+          return null;
+        }
+        weight -= removed.weight;
+        return removed.value;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void clear() {
+      lock.lock();
+      try {
+        map.clear();
+        weight = 0;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private int size() {
+      lock.lock();
+      try {
+        return map.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private long getWeight() {
+      lock.lock();
+      try {
+        return weight;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void evict() {
+      Iterator<Map.Entry<K, WeightedValue<V>>> iterator = map.entrySet().iterator();
+      // the most recently used entry is never evicted, even if it alone exceeds the maximum
+      while (weight > maximumWeight && map.size() > 1) {
+        WeightedValue<V> eldest = iterator.next().getValue();
+        iterator.remove();
+        weight -= eldest.weight;
+      }
+    }
+  }
+
+  private static class WeightedValue<V> {
+    private final V value;
+    private final long weight;
+
+    private WeightedValue(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package util;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link FixedPointDecimal} is a mutable decimal number for money arithmetic in inner loops. It
+ * is backed by a <code>long</code> unscaled value and a scale, exactly like a {@link BigDecimal}
+ * with a compact value, hence its results are equal to the results of the same {@link BigDecimal}
+ * arithmetic, including the scale.
+ *
+ * <p>The operations do not allocate as long as the value fits in a <code>long</code> with a scale
+ * of at most {@value #MAX_SCALE}. Once it does not fit, the number switches to {@link BigDecimal}
+ * arithmetic for good, so the results stay exact.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class FixedPointDecimal {
+  /**
+   * The maximum scale of a value that is backed by a <code>long</code>.
+   */
+  public static final int MAX_SCALE = 18;
+
+  private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private long unscaledValue;
+  private int scale;
+  private BigDecimal bigDecimalValue;
+
+  /**
+   * Constructs a {@link FixedPointDecimal} that is equal to {@link BigDecimal#ZERO}.
+   */
+  public FixedPointDecimal() {
+    this.unscaledValue = 0;
+    this.scale = 0;
+  }
+
+  /**
+   * Returns a {@link FixedPointDecimal} that is equal to the given value.
+   *
+   * @param value the value
+   * @return a {@link FixedPointDecimal} that is equal to the given value
+   * @throws IllegalArgumentException if the given value is null
+   */
+  public static FixedPointDecimal valueOf(BigDecimal value) throws IllegalArgumentException {
+    FixedPointDecimal fixedPointDecimal = new FixedPointDecimal();
+    fixedPointDecimal.add(Utils.requireNonNull(value));
+    return fixedPointDecimal;
+  }
+
+  /**
+   * Returns true if the given value can be represented by a <code>long</code> unscaled value and
+   * a scale between 0 and {@value #MAX_SCALE}.
+   *
+   * @param value the value
+   * @return true if the given value can be represented in fixed point, false otherwise
+   */
+  public static boolean isRepresentable(BigDecimal value) {
+    return value.scale() >= 0 && value.scale() <= MAX_SCALE && value.precision() <= MAX_SCALE;
+  }
+
+  /**
+   * Adds the product of the given fixed point value and the given multiplier to this number.
+   *
+   * @param unscaledValue the unscaled value
+   * @param scale         the scale of the value, between 0 and {@value #MAX_SCALE}
+   * @param multiplier    the multiplier of the value
+   * @return this number
+   */
+  public FixedPointDecimal addProduct(long unscaledValue, int scale, long multiplier) {
+    if (isFixedPoint() && scale >= 0 && scale <= MAX_SCALE) {
+      try {
+        int resultScale = Math.max(this.scale, scale);
+        long product = Math.multiplyExact(Math.multiplyExact(unscaledValue, multiplier),
+                POWERS_OF_TEN[resultScale - scale]);
+        long rescaledValue = Math.multiplyExact(this.unscaledValue,
+                POWERS_OF_TEN[resultScale - this.scale]);
+        this.unscaledValue = Math.addExact(rescaledValue, product);
+        this.scale = resultScale;
+        return this;
+      } catch (ArithmeticException e) {
+        // overflow, the value no longer fits in a long
+      }
+    }
+    // switches to BigDecimal for good, as adding in fixed point would overflow again
+    this.bigDecimalValue = toBigDecimal().add(BigDecimal.valueOf(unscaledValue, scale)
+            .multiply(BigDecimal.valueOf(multiplier)));
+    return this;
+  }
+
+  /**
+   * Adds the given value to this number.
+   *
+   * @param value the value to add
+   * @return this number
+   */
+  public FixedPointDecimal add(BigDecimal value) {
+    if (isFixedPoint() && isRepresentable(value)) {
+      return addProduct(value.unscaledValue().longValue(), value.scale(), 1);
+    }
+    this.bigDecimalValue = toBigDecimal().add(value);
+    return this;
+  }
+
+  /**
+   * Divides this number by the given fixed point value and returns the integer part of the
+   * quotient. It is equal to {@code toBigDecimal().divide(divisor, BigDecimal.ROUND_DOWN)
+   * .longValue()}.
+   *
+   * @param divisorUnscaledValue the unscaled value of the divisor
+   * @param divisorScale         the scale of the divisor
+   * @return the integer part of the quotient
+   * @throws ArithmeticException if the divisor is zero
+   */
+  public long divideToLong(long divisorUnscaledValue, int divisorScale)
+          throws ArithmeticException {
+    if (isFixedPoint() && divisorScale >= 0 && divisorScale <= MAX_SCALE) {
+      // this / divisor = (unscaledValue * 10^divisorScale) / (divisorUnscaledValue * 10^scale)
+      int scaleDifference = divisorScale - this.scale;
+      if (scaleDifference >= 0 && fitsAfterScaling(this.unscaledValue, scaleDifference)) {
+        return this.unscaledValue * POWERS_OF_TEN[scaleDifference] / divisorUnscaledValue;
+      }
+      if (scaleDifference < 0 && fitsAfterScaling(divisorUnscaledValue, -scaleDifference)) {
+        return this.unscaledValue / (divisorUnscaledValue * POWERS_OF_TEN[-scaleDifference]);
+      }
+    }
+    return toBigDecimal().divide(BigDecimal.valueOf(divisorUnscaledValue, divisorScale),
+            BigDecimal.ROUND_DOWN).longValue();
+  }
+
+  /**
+   * Returns the value of this number as a {@link BigDecimal}.
+   *
+   * @return the value of this number as a {@link BigDecimal}
+   */
+  public BigDecimal toBigDecimal() {
+    if (isFixedPoint()) {
+      return BigDecimal.valueOf(unscaledValue, scale);
+    }
+    return bigDecimalValue;
+  }
+
+  private boolean isFixedPoint() {
+    return bigDecimalValue == null;
+  }
+
+  private static boolean fitsAfterScaling(long value, int power) {
+    return value != Long.MIN_VALUE && Math.abs(value) <= Long.MAX_VALUE / POWERS_OF_TEN[power];
+  }
+}
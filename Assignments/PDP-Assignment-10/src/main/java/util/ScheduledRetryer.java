@@ -0,0 +1,367 @@
+package util;
+
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import virtualgambling.model.exceptions.RetryException;
+
+/**
+ * {@link ScheduledRetryer} represents a retrying mechanism that allows a client to retry any
+ * {@link BiFunction} without blocking the calling thread.
+ *
+ * <p>Every attempt runs on an executor and a failed attempt is retried after an exponentially
+ * growing back off with jitter, which is waited for on a {@link ScheduledExecutorService} instead
+ * of a sleeping thread. A call gives up once the number of retries is exhausted or the next
+ * attempt would start after the deadline of the call. An optional {@link CircuitBreaker} makes
+ * calls fail fast while the retried resource is known to be unavailable. A function that waits,
+ * such as for a permit, can bound its wait by the deadline of its call with {@link
+ * #getRemainingNanosOfCurrentCall()}. An interactive caller can cap the deadlines of all the calls
+ * it makes with {@link #callWithDeadline(long, Callable)}.
+ *
+ * <p>The default executor has a fixed number of threads, hence a burst of calls queues its
+ * attempts instead of starting a thread for each of them.
+ *
+ * @param <T> the type of the first argument to the function
+ * @param <U> the type of the second argument to the function
+ * @param <R> the type of the result of the function
+ */
+public class ScheduledRetryer<T, U, R> {
+  private static final ScheduledExecutorService DEFAULT_SCHEDULER =
+          Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private static final int DEFAULT_EXECUTOR_THREADS = 16;
+  private static final ExecutorService DEFAULT_EXECUTOR =
+          Executors.newFixedThreadPool(DEFAULT_EXECUTOR_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "retry-worker");
+            thread.setDaemon(true);
+            return thread;
+          });
+  // the deadline of the call whose attempt runs on the current thread
+  private static final ThreadLocal<Long> CURRENT_DEADLINE_NANOS = new ThreadLocal<>();
+
+  private final BiFunction<T, U, R> functionToRetry;
+  private final Class<? extends Throwable> exceptionClass;
+  private final int numRetries;
+  private final long initialBackOffMillis;
+  private final long maximumBackOffMillis;
+  private final long deadlineMillis;
+  private final CircuitBreaker circuitBreaker;
+  private final ScheduledExecutorService scheduler;
+  private final Executor executor;
+
+  private ScheduledRetryer(RetryerBuilder<T, U, R> builder) {
+    this.functionToRetry = builder.functionToRetry;
+    this.exceptionClass = builder.exceptionClass;
+    this.numRetries = builder.numRetries;
+    this.initialBackOffMillis = builder.initialBackOffMillis;
+    this.maximumBackOffMillis = builder.maximumBackOffMillis;
+    this.deadlineMillis = builder.deadlineMillis;
+    this.circuitBreaker = builder.circuitBreaker;
+    this.scheduler = builder.scheduler;
+    this.executor = builder.executor;
+  }
+
+  /**
+   * Retries the function at most numRetries number of times without blocking the calling thread.
+   *
+   * @param param1 param of type T
+   * @param param2 param of type U
+   * @return a future of the result of the function, completed exceptionally with {@link
+   *         RetryException} if it fails to get results within the retries or the deadline or if
+   *         the circuit is open, or with the exception of the function if it is not retried
+   */
+  public CompletableFuture<R> retryAsync(T param1, U param2) {
+    CompletableFuture<R> result = new CompletableFuture<>();
+    long deadlineNanos = getDeadlineNanos(deadlineMillis);
+    executor.execute(() -> attempt(param1, param2, 0, deadlineNanos, result));
+    return result;
+  }
+
+  /**
+   * Retries the function at most numRetries number of times and waits for the result.
+   *
+   * @param param1 param of type T
+   * @param param2 param of type U
+   * @return R after running the function at most the number of times one needs to retry
+   * @throws RetryException in case it fails to get results within the retries or the deadline or
+   *                        if the circuit is open
+   */
+  public R retry(T param1, U param2) throws RetryException {
+    CompletableFuture<R> result = new CompletableFuture<>();
+    long deadlineNanos = getDeadlineNanos(deadlineMillis);
+    // the caller waits anyway, hence the first attempt runs on the calling thread
+    attempt(param1, param2, 0, deadlineNanos, result);
+    return Utils.join(result);
+  }
+
+  /**
+   * Returns the time left until the deadline of the call whose attempt runs on the current thread.
+   * The earliest deadline wins if an attempt makes another call.
+   *
+   * @return the remaining time in nanoseconds, negative once the deadline passed, or empty if
+   *         neither an attempt nor a call with a deadline runs on the current thread
+   */
+  public static OptionalLong getRemainingNanosOfCurrentCall() {
+    Long deadlineNanos = CURRENT_DEADLINE_NANOS.get();
+    if (Objects.isNull(deadlineNanos)) {
+      return OptionalLong.empty();
+    }
+    return OptionalLong.of(deadlineNanos - System.nanoTime());
+  }
+
+  /**
+   * Calls the given callable with the calls of every {@link ScheduledRetryer} that it makes on the
+   * current thread given up at the latest after the given deadline, for example so that a user
+   * interface waits for a short time instead of the deadline of the retryers. A deadline that the
+   * calling thread already has is kept if it is earlier.
+   *
+   * @param deadlineMillis the deadline of the calls in milliseconds
+   * @param callable       the callable to call
+   * @param <V>            the type of the result of the callable
+   * @return the result of the callable
+   * @throws Exception                if the callable throws an exception
+   * @throws IllegalArgumentException if the callable is null or the deadline is negative
+   */
+  public static <V> V callWithDeadline(long deadlineMillis, Callable<V> callable)
+          throws Exception {
+    Utils.requireNonNull(callable);
+    if (deadlineMillis < 0) {
+      throw new IllegalArgumentException("Deadline cannot be negative");
+    }
+    Long outerDeadlineNanos = CURRENT_DEADLINE_NANOS.get();
+    CURRENT_DEADLINE_NANOS.set(getDeadlineNanos(deadlineMillis));
+    try {
+      return callable.call();
+    } finally {
+      if (Objects.nonNull(outerDeadlineNanos)) {
+        CURRENT_DEADLINE_NANOS.set(outerDeadlineNanos);
+      } else {
+        CURRENT_DEADLINE_NANOS.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the deadline of a call that starts now, which is the earlier of the given deadline and
+   * the deadline that the current thread already has.
+   */
+  private static long getDeadlineNanos(long deadlineMillis) {
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    Long outerDeadlineNanos = CURRENT_DEADLINE_NANOS.get();
+    // the nano times are compared by their difference, which is overflow safe
+    return Objects.nonNull(outerDeadlineNanos) && outerDeadlineNanos - deadlineNanos < 0
+            ? outerDeadlineNanos : deadlineNanos;
+  }
+
+  private void attempt(T param1, U param2, int attemptNumber, long deadlineNanos,
+                       CompletableFuture<R> result) {
+    if (Objects.nonNull(circuitBreaker) && !circuitBreaker.isCallPermitted()) {
+      result.completeExceptionally(new RetryException("failed to get results as the circuit " +
+              "is open"));
+      return;
+    }
+
+    Long outerDeadlineNanos = CURRENT_DEADLINE_NANOS.get();
+    // the nano times are compared by their difference, which is overflow safe
+    CURRENT_DEADLINE_NANOS.set(Objects.nonNull(outerDeadlineNanos)
+            && outerDeadlineNanos - deadlineNanos < 0 ? outerDeadlineNanos : deadlineNanos);
+    try {
+      R value = functionToRetry.apply(param1, param2);
+      if (Objects.nonNull(circuitBreaker)) {
+        circuitBreaker.recordSuccess();
+      }
+      result.complete(value);
+      return;
+    } catch (Throwable e) {
+      if (!exceptionClass.isInstance(e)) {
+        result.completeExceptionally(e);
+        return;
+      }
+      if (Objects.nonNull(circuitBreaker)) {
+        circuitBreaker.recordFailure();
+      }
+    } finally {
+      if (Objects.nonNull(outerDeadlineNanos)) {
+        CURRENT_DEADLINE_NANOS.set(outerDeadlineNanos);
+      } else {
+        CURRENT_DEADLINE_NANOS.remove();
+      }
+    }
+
+    int nextAttemptNumber = attemptNumber + 1;
+    if (nextAttemptNumber >= numRetries) {
+      result.completeExceptionally(new RetryException(String.format("failed to get results " +
+              "after retrying %s number of times", numRetries)));
+      return;
+    }
+
+    long backOffMillis = getBackOffMillis(attemptNumber);
+    if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backOffMillis) - deadlineNanos > 0) {
+      // the deadline might have been capped by the caller, hence its length is not reported
+      result.completeExceptionally(new RetryException("failed to get results within the " +
+              "deadline of the call"));
+      return;
+    }
+    Runnable nextAttempt = () -> attempt(param1, param2, nextAttemptNumber, deadlineNanos, result);
+    scheduler.schedule(() -> executor.execute(nextAttempt), backOffMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private long getBackOffMillis(int attemptNumber) {
+    // shifting by more than 62 bits would overflow, the maximum back off is reached well before
+    long exponentialBackOffMillis = initialBackOffMillis << Math.min(attemptNumber, 62);
+    if (exponentialBackOffMillis <= 0 || exponentialBackOffMillis > maximumBackOffMillis) {
+      exponentialBackOffMillis = maximumBackOffMillis;
+    }
+    // half of the back off is fixed and the other half is random, so that the callers that failed
+    // together do not retry together
+    long fixedBackOffMillis = exponentialBackOffMillis / 2;
+    long randomBackOffMillis = exponentialBackOffMillis - fixedBackOffMillis;
+    return fixedBackOffMillis + ThreadLocalRandom.current().nextLong(randomBackOffMillis + 1);
+  }
+
+  /**
+   * A Retryer Builder that builds a {@link ScheduledRetryer}.
+   *
+   * @param <T> the type of the first argument to the function
+   * @param <U> the type of the second argument to the function
+   * @param <R> the type of the result of the function
+   */
+  public static class RetryerBuilder<T, U, R> {
+    private final BiFunction<T, U, R> functionToRetry;
+    private Class<? extends Throwable> exceptionClass;
+    private int numRetries;
+    private long initialBackOffMillis;
+    private long maximumBackOffMillis;
+    private long deadlineMillis;
+    private CircuitBreaker circuitBreaker;
+    private ScheduledExecutorService scheduler;
+    private Executor executor;
+
+    /**
+     * Sets up the builder with default values.
+     *
+     * @param functionToRetry the function that needs to be retried
+     */
+    public RetryerBuilder(BiFunction<T, U, R> functionToRetry) {
+      this.functionToRetry = Utils.requireNonNull(functionToRetry);
+      this.exceptionClass = Exception.class;
+      this.numRetries = 1;
+      this.initialBackOffMillis = 1000;
+      this.maximumBackOffMillis = 1000;
+      // effectively no deadline, the nano time arithmetic is overflow safe
+      this.deadlineMillis = Long.MAX_VALUE;
+      this.scheduler = DEFAULT_SCHEDULER;
+      this.executor = DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Sets the exception on which to retry, any other exception other than the one that is passed
+     * here will lead to the exception being propagated.
+     *
+     * @param exceptionClass the exception that needs to be caught and then retried
+     * @return builder with exceptionClass set
+     */
+    public RetryerBuilder<T, U, R> setExceptionClass(Class<? extends Throwable> exceptionClass) {
+      this.exceptionClass = Utils.requireNonNull(exceptionClass);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of attempts after which the function should not retry.
+     *
+     * @param numRetries maximum number of attempts
+     * @return builder with numRetries set
+     */
+    public RetryerBuilder<T, U, R> setNumRetries(int numRetries) {
+      this.numRetries = numRetries;
+      return this;
+    }
+
+    /**
+     * Sets the back off after the first failed attempt and the maximum back off, the back off
+     * doubles after every failed attempt until it reaches the maximum.
+     *
+     * @param initialBackOffMillis the back off after the first failed attempt in milliseconds
+     * @param maximumBackOffMillis the maximum back off in milliseconds
+     * @return builder with the back off set
+     * @throws IllegalArgumentException if the initial back off is not positive or the maximum back
+     *                                  off is less than the initial back off
+     */
+    public RetryerBuilder<T, U, R> setBackOffMillis(long initialBackOffMillis,
+                                                    long maximumBackOffMillis)
+            throws IllegalArgumentException {
+      if (initialBackOffMillis <= 0 || maximumBackOffMillis < initialBackOffMillis) {
+        throw new IllegalArgumentException("Invalid back off");
+      }
+      this.initialBackOffMillis = initialBackOffMillis;
+      this.maximumBackOffMillis = maximumBackOffMillis;
+      return this;
+    }
+
+    /**
+     * Sets the time from the start of a call after which no attempt is started.
+     *
+     * @param deadlineMillis the deadline of a call in milliseconds
+     * @return builder with the deadline set
+     */
+    public RetryerBuilder<T, U, R> setDeadlineMillis(long deadlineMillis) {
+      this.deadlineMillis = deadlineMillis;
+      return this;
+    }
+
+    /**
+     * Sets the circuit breaker that is consulted before every attempt and that records the
+     * outcome of every attempt.
+     *
+     * @param circuitBreaker the circuit breaker
+     * @return builder with the circuit breaker set
+     */
+    public RetryerBuilder<T, U, R> setCircuitBreaker(CircuitBreaker circuitBreaker) {
+      this.circuitBreaker = Utils.requireNonNull(circuitBreaker);
+      return this;
+    }
+
+    /**
+     * Sets the scheduler that waits for the back off between attempts.
+     *
+     * @param scheduler the scheduler
+     * @return builder with the scheduler set
+     */
+    public RetryerBuilder<T, U, R> setScheduler(ScheduledExecutorService scheduler) {
+      this.scheduler = Utils.requireNonNull(scheduler);
+      return this;
+    }
+
+    /**
+     * Sets the executor that runs the attempts.
+     *
+     * @param executor the executor
+     * @return builder with the executor set
+     */
+    public RetryerBuilder<T, U, R> setExecutor(Executor executor) {
+      this.executor = Utils.requireNonNull(executor);
+      return this;
+    }
+
+    /**
+     * Creates a new retryer with the parameters correctly set.
+     *
+     * @return a {@link ScheduledRetryer} with their parameters set
+     */
+    public ScheduledRetryer<T, U, R> createRetryer() {
+      return new ScheduledRetryer<>(this);
+    }
+  }
+}
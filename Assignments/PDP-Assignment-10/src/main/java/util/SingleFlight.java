@@ -0,0 +1,63 @@
+package util;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * This class represents a registry of in-flight loads that coalesces concurrent loads of the same
+ * key into a single load.
+ *
+ * <p>The first caller for a key runs the loader, every other caller that asks for the same key
+ * while the load is in progress waits for it and receives the same value or the same exception.
+ * Once the load finishes the key is forgotten, hence the next caller starts a new load.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public class SingleFlight<K, V> {
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlightLoads = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the value of the given key by running the loader, or by waiting for the load of the
+   * same key that is already in progress.
+   *
+   * @param key    the key to load
+   * @param loader the loader that is run if no load of the key is in progress
+   * @return the loaded value
+   * @throws IllegalArgumentException if the key or the loader is null
+   * @throws RuntimeException         the exception thrown by the loader
+   */
+  public V execute(K key, Supplier<V> loader) throws IllegalArgumentException {
+    Utils.requireNonNull(key);
+    Utils.requireNonNull(loader);
+
+    CompletableFuture<V> load = new CompletableFuture<>();
+    CompletableFuture<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+    if (Objects.nonNull(inFlightLoad)) {
+      return Utils.join(inFlightLoad);
+    }
+
+    try {
+      V value = loader.get();
+      load.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightLoads.remove(key, load);
+    }
+  }
+
+  /**
+   * Returns the number of loads that are in progress.
+   *
+   * @return the number of loads that are in progress
+   */
+  public int getInFlightCount() {
+    return inFlightLoads.size();
+  }
+}
@@ -0,0 +1,90 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TokenBucket} represents a rate limit of a number of permits per period. The bucket
+ * starts full and is refilled evenly over the period, and a permit can be acquired only if the
+ * bucket holds at least one token.
+ *
+ * <p>This class is thread-safe.
+ */
+public class TokenBucket {
+  private final long capacity;
+  private final double tokensPerNano;
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * Constructs a full {@link TokenBucket} that permits the given number of permits per period.
+   *
+   * @param capacity the number of permits per period
+   * @param period   the period
+   * @param timeUnit the unit of the period
+   * @throws IllegalArgumentException if the capacity or the period is not positive or the time
+   *                                  unit is null
+   */
+  public TokenBucket(long capacity, long period, TimeUnit timeUnit)
+          throws IllegalArgumentException {
+    if (capacity <= 0 || period <= 0) {
+      throw new IllegalArgumentException("Capacity and period have to be positive");
+    }
+    this.capacity = capacity;
+    this.tokensPerNano = (double) capacity / Utils.requireNonNull(timeUnit).toNanos(period);
+    this.tokens = capacity;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  /**
+   * Acquires a permit if one is available.
+   *
+   * @return true if a permit was acquired, false otherwise
+   */
+  public synchronized boolean tryAcquire() {
+    refill();
+    if (tokens < 1) {
+      return false;
+    }
+    tokens -= 1;
+    return true;
+  }
+
+  /**
+   * Returns the number of whole permits that are available.
+   *
+   * @return the number of whole permits that are available
+   */
+  public synchronized long getAvailablePermits() {
+    refill();
+    return (long) tokens;
+  }
+
+  /**
+   * Returns the number of nanoseconds after which a permit will be available, 0 if a permit is
+   * available now.
+   *
+   * @return the number of nanoseconds after which a permit will be available
+   */
+  public synchronized long getNanosUntilAvailable() {
+    refill();
+    if (tokens >= 1) {
+      return 0;
+    }
+    return (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  /**
+   * Removes every available permit, to be used when the limited resource reports that the limit
+   * has been reached before this bucket ran out.
+   */
+  public synchronized void drain() {
+    refill();
+    tokens = 0;
+  }
+
+  private void refill() {
+    long nowNanos = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+    lastRefillNanos = nowNanos;
+  }
+}
@@ -13,29 +13,42 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.TemporalAccessor;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
-import virtualgambling.model.exceptions.RetryException;
-
 /**
  * Represents utility functions that are independent of the state of the application.
  */
 public class Utils {
 
-  private static final SimpleDateFormat SIMPLE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+  private static final DateTimeFormatter DEFAULT_DATE_FORMATTER =
+          DateTimeFormatter.ofPattern("uuuu-MM-dd");
+  // like a non lenient SimpleDateFormat, it accepts single digit months and days
+  private static final DateTimeFormatter DEFAULT_DATE_PARSER =
+          DateTimeFormatter.ofPattern("uuuu-M-d").withResolverStyle(ResolverStyle.STRICT);
+  private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+  // the default time zone is read once, TimeZone.getDefault returns a new copy on every call
+  private static final TimeZone DEFAULT_TIME_ZONE = TimeZone.getDefault();
+
+  private static volatile Today today = new Today(System.currentTimeMillis());
 
   /**
    * Enforces that inputs are non null.
@@ -70,8 +83,7 @@ public class Utils {
    */
   public static String getDefaultFormattedDateStringFromDate(Date date) {
     Utils.requireNonNull(date);
-    SIMPLE_DATE_FORMAT.setLenient(false);
-    return SIMPLE_DATE_FORMAT.format(date);
+    return LocalDate.ofEpochDay(toEpochDay(date)).format(DEFAULT_DATE_FORMATTER);
   }
 
   /**
@@ -84,10 +96,26 @@ public class Utils {
    */
   public static Date getDateFromDefaultFormattedDateString(String dateString)
           throws ParseException {
+    return fromEpochDay(getEpochDayFromDefaultFormattedDateString(dateString));
+  }
 
+  /**
+   * Parses the given dateString and returns the number of days since the epoch (1970-01-01) of
+   * the date. The format of the dateString should be 'yyyy-MM-dd'.
+   *
+   * @param dateString the string to parse
+   * @return the epoch day of the date
+   * @throws ParseException if the string cannot be parsed to an Date
+   */
+  public static int getEpochDayFromDefaultFormattedDateString(String dateString)
+          throws ParseException {
     Utils.requireNonNull(dateString);
-    SIMPLE_DATE_FORMAT.setLenient(false);
-    return SIMPLE_DATE_FORMAT.parse(dateString);
+    try {
+      TemporalAccessor parsedDate = DEFAULT_DATE_PARSER.parse(dateString, new ParsePosition(0));
+      return Math.toIntExact(LocalDate.from(parsedDate).toEpochDay());
+    } catch (DateTimeException | ArithmeticException e) {
+      throw new ParseException(String.format("Unparseable date: \"%s\"", dateString), 0);
+    }
   }
 
 
@@ -98,11 +126,19 @@ public class Utils {
    * @return true if the given date is a weekend, false otherwise
    */
   public static boolean isNonWorkingDayOfTheWeek(Date date) {
-    Calendar c = Utils.getCalendarInstance();
-    c.setTime(date);
-    int dayOfTheWeek = c.get(Calendar.DAY_OF_WEEK);
+    return isNonWorkingDayOfTheWeek(toEpochDay(date));
+  }
 
-    return dayOfTheWeek < 2 || dayOfTheWeek > 6;
+  /**
+   * Returns true if the given epoch day is a weekend, false otherwise.
+   *
+   * @param epochDay the number of days since the epoch (1970-01-01)
+   * @return true if the given epoch day is a weekend, false otherwise
+   */
+  public static boolean isNonWorkingDayOfTheWeek(int epochDay) {
+    // the epoch was a Thursday, hence 0 is a Monday
+    int dayOfTheWeek = Math.floorMod(epochDay + 3, 7);
+    return dayOfTheWeek >= 5;
   }
 
   /**
@@ -112,8 +148,7 @@ public class Utils {
    * @return true if the given date is in Future, false otherwise.
    */
   public static boolean isFutureDate(Date date) {
-    Date currentDate = Utils.getCalendarInstance().getTime();
-    return date.compareTo(currentDate) > 0;
+    return date.getTime() > System.currentTimeMillis();
   }
 
   /**
@@ -124,7 +159,7 @@ public class Utils {
    * @return true if the given dates have same year, month and day component, false otherwise.
    */
   public static boolean doesDatesHaveSameDay(Date date1, Date date2) {
-    return removeTimeFromDate(date1).equals(removeTimeFromDate(date2));
+    return toEpochDay(date1) == toEpochDay(date2);
   }
 
   /**
@@ -134,13 +169,61 @@ public class Utils {
    * @return a copy the given date with Hour, Minute, Second and Millisecond component set to 0
    */
   public static Date removeTimeFromDate(Date date) {
-    Calendar calendar = Utils.getCalendarInstance();
-    calendar.setTime(date);
-    calendar.set(Calendar.HOUR_OF_DAY, 0);
-    calendar.set(Calendar.MINUTE, 0);
-    calendar.set(Calendar.SECOND, 0);
-    calendar.set(Calendar.MILLISECOND, 0);
-    return calendar.getTime();
+    return fromEpochDay(toEpochDay(date));
+  }
+
+  /**
+   * Returns the number of days since the epoch (1970-01-01) of the given date in the system
+   * default time zone, ignoring the time component of the date.
+   *
+   * @param date the date
+   * @return the epoch day of the given date
+   */
+  public static int toEpochDay(Date date) {
+    return toEpochDay(date.getTime());
+  }
+
+  /**
+   * Returns the number of days since the epoch (1970-01-01) of the given instant in the system
+   * default time zone.
+   *
+   * @param epochMillis the number of milliseconds since the epoch
+   * @return the epoch day of the given instant
+   */
+  public static int toEpochDay(long epochMillis) {
+    long localMillis = epochMillis + DEFAULT_TIME_ZONE.getOffset(epochMillis);
+    return Math.toIntExact(Math.floorDiv(localMillis, MILLIS_PER_DAY));
+  }
+
+  /**
+   * Returns the date at the start of the given epoch day in the system default time zone.
+   *
+   * @param epochDay the number of days since the epoch (1970-01-01)
+   * @return the date at the start of the given epoch day
+   */
+  public static Date fromEpochDay(int epochDay) {
+    return new Date(getStartOfEpochDayMillis(epochDay));
+  }
+
+  /**
+   * Returns today as the number of days since the epoch (1970-01-01) in the system default time
+   * zone. The day is cached until midnight, hence this does not allocate.
+   *
+   * @return today as an epoch day
+   */
+  public static int getTodayEpochDay() {
+    long nowMillis = System.currentTimeMillis();
+    Today cachedToday = today;
+    if (nowMillis < cachedToday.startMillis || nowMillis >= cachedToday.endMillis) {
+      cachedToday = new Today(nowMillis);
+      today = cachedToday;
+    }
+    return cachedToday.epochDay;
+  }
+
+  private static long getStartOfEpochDayMillis(int epochDay) {
+    return LocalDate.ofEpochDay(epochDay).atStartOfDay(DEFAULT_TIME_ZONE.toZoneId())
+            .toInstant().toEpochMilli();
   }
 
   /**
@@ -230,6 +313,18 @@ public class Utils {
     return calendar.getTime();
   }
 
+  private static class Today {
+    private final int epochDay;
+    private final long startMillis;
+    private final long endMillis;
+
+    private Today(long nowMillis) {
+      this.epochDay = toEpochDay(nowMillis);
+      this.startMillis = getStartOfEpochDayMillis(epochDay);
+      this.endMillis = getStartOfEpochDayMillis(epochDay + 1);
+    }
+  }
+
   /**
    * Saves the given string to a file at the given path.
    *
@@ -317,150 +412,41 @@ public class Utils {
   }
 
   /**
-   * {@link BiFunctionRetryer} represents a retrying mechanism that allows a client to retry any
-   * {@link java.util.function.BiFunction}.
+   * Waits for the given future to complete and returns its result. If the future completed
+   * exceptionally with a {@link RuntimeException} or an {@link Error}, it is rethrown as it is
+   * instead of being wrapped in a {@link CompletionException}.
    *
-   * @param <T> the type of the first argument to the function
-   * @param <U> the type of the second argument to the function
-   * @param <R> the type of the result of the function
+   * @param future the future to wait for
+   * @param <T>    the type of the result of the future
+   * @return the result of the future
    */
-  public static class BiFunctionRetryer<T, U, R> {
-    private final int numRetries;
-    private final int backOffSeconds;
-    private final BiFunction<T, U, R> functionToRetry;
-    private final Class<? extends Throwable> exceptionClass;
-
-    private BiFunctionRetryer(
-            int numRetries,
-            int backOffSeconds, BiFunction<T, U, R> functionToRetry,
-            Class<? extends Throwable> exceptionClass) {
-      this.numRetries = numRetries;
-      this.backOffSeconds = backOffSeconds;
-      this.functionToRetry = functionToRetry;
-      this.exceptionClass = exceptionClass;
-    }
-
-    /**
-     * Retry the function numEntries number of times.
-     *
-     * @param param1 param of type T
-     * @param param2 param of type U
-     * @return R after running the function at most the number of times one needs to retry.
-     * @throws RetryException in case it fails to get results after retrying numRetries times
-     */
-    public R retry(T param1, U param2) throws RetryException, InterruptedException {
-      for (int i = 0; i < numRetries; i++) {
-        try {
-          return functionToRetry.apply(param1, param2);
-        } catch (Throwable e) {
-          if (!exceptionClass.isInstance(e)) {
-            throw e;
-          } else {
-            Thread.sleep(this.backOffSeconds * 1000);
-          }
-        }
-      }
-      throw new RetryException(String.format("failed to get results after retrying %s number of " +
-              "times", numRetries));
-    }
-
-    /**
-     * A Retryer Builder that builds a retryer.
-     *
-     * @param <T> the type of the first argument to the function
-     * @param <U> the type of the second argument to the function
-     * @param <R> the type of the result of the function
-     */
-    public static class RetryerBuilder<T, U, R> {
-      private final BiFunction<T, U, R> functionToRetry;
-      private int numRetries;
-      private int backOffSeconds;
-      private Class<? extends Throwable> exceptionClass;
-
-      /**
-       * Sets up the builder with default values.
-       *
-       * @param functionToRetry the function that needs to be retried
-       */
-      public RetryerBuilder(BiFunction<T, U, R> functionToRetry) {
-        this.numRetries = 1;
-        this.backOffSeconds = 1;
-        this.functionToRetry = requireNonNull(functionToRetry);
-        exceptionClass = Exception.class;
-      }
-
-      /**
-       * Sets the number of seconds after which a failed call should retry.
-       *
-       * @param backOffSeconds backOffSeconds
-       * @return builder with backOffSeconds set
-       */
-      public RetryerBuilder<T, U, R> setBackOffSeconds(int backOffSeconds) {
-        this.backOffSeconds = backOffSeconds;
-        return this;
-      }
-
-      /**
-       * Sets the maximum number of retries after which the function should not retry.
-       *
-       * @param numRetries maximum number of retries
-       * @return builder with numRetries set
-       */
-      public RetryerBuilder<T, U, R> setNumRetries(int numRetries) {
-        this.numRetries = numRetries;
-        return this;
-      }
-
-      /**
-       * Sets the exception on which to retry, any other exception other than the one that is passed
-       * here will lead to the exception being propagated.
-       *
-       * @param exceptionClass the exception that needs to be caught and then retried
-       * @return builder with exceptionClass set
-       */
-      public RetryerBuilder<T, U, R> setExceptionClass(Class<? extends Throwable> exceptionClass) {
-        this.exceptionClass = exceptionClass;
-        return this;
-      }
-
-      /**
-       * Creates a new retryer with the parameters correctly set.
-       *
-       * @return a {@link BiFunctionRetryer} with their parameters set
-       */
-      public BiFunctionRetryer<T, U, R> createRetryer() {
-        return new BiFunctionRetryer<>(numRetries, backOffSeconds, functionToRetry, exceptionClass);
-      }
+  public static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw unwrapCompletionException(e);
     }
   }
 
   /**
-   * This class represents a LRU Key value cache of Generic Type. It extends {@link LinkedHashMap}
-   * class.
+   * Returns the cause of the given {@link CompletionException} if it is a {@link
+   * RuntimeException}, throws it if it is an {@link Error}, and returns the given throwable
+   * otherwise.
+   *
+   * @param throwable the throwable to unwrap
+   * @return the unwrapped runtime exception
    */
-  public static class LRUCache<K, V> extends LinkedHashMap<K, V> {
-
-    private final int cacheCapacity;
-
-    /**
-     * Create an object of LRU Cache with the given capacity.
-     *
-     * <p>It will start removing older entries once the cache capacity is hit.
-     *
-     * @param cacheCapacity the capacity of the cache
-     */
-    public LRUCache(int cacheCapacity) {
-      this.cacheCapacity = cacheCapacity;
+  public static RuntimeException unwrapCompletionException(Throwable throwable) {
+    Throwable cause = throwable;
+    if (cause instanceof CompletionException && Objects.nonNull(cause.getCause())) {
+      cause = cause.getCause();
     }
-
-    /**
-     * Returns true if the current size of the cache is greater than it's capacity.
-     *
-     * @return true if the current size of the cache is greater than it's capacity
-     */
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-      return this.size() > cacheCapacity;
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
     }
+    return new RuntimeException(cause);
   }
 }
@@ -1,6 +1,10 @@
 package virtualgambling;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 
 import virtualgambling.controller.Controller;
 import virtualgambling.controller.GUITradingController;
@@ -12,6 +16,8 @@ import virtualgambling.model.SimpleUserModel;
 import virtualgambling.model.UserModel;
 import virtualgambling.model.factory.StockDAOType;
 import virtualgambling.model.factory.StockDataSourceType;
+import virtualgambling.model.stockdatasource.AlphaVantageAPIStockDataSource;
+import virtualgambling.model.stockdatasource.PriceHistoryImporter;
 import virtualgambling.view.TextView;
 import virtualgambling.view.View;
 import virtualgambling.view.guiview.GUIView;
@@ -40,12 +46,32 @@ public class TradingApp {
           default:
             System.out.println("Invalid view options, correct usage is -view [gui|console]");
         }
+      } else if (args[0].equals("-import")) {
+        runPriceHistoryImport(Paths.get(args[1]));
+      } else {
+        System.out.println("Invalid options, correct usage is -view [gui|console] or "
+                + "-import <directory>");
       }
     } else {
       System.out.println("Invalid view options, correct usage is -view [gui|console]");
     }
   }
 
+  private static void runPriceHistoryImport(Path directoryPath) {
+    try {
+      PriceHistoryImporter.ImportSummary summary = AlphaVantageAPIStockDataSource.getInstance()
+              .importPriceHistories(directoryPath, Runtime.getRuntime().availableProcessors());
+      for (Map.Entry<String, String> failure : summary.getFailures().entrySet()) {
+        System.out.println(String.format("Could not import %s: %s", failure.getKey(),
+                failure.getValue()));
+      }
+      System.out.println(summary);
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println(String.format("Could not import %s: %s", directoryPath,
+              e.getMessage()));
+    }
+  }
+
   private static void runGUITradingApp() {
     GUIView guiView = new MainForm();
     PersistableUserModel persistableUserModel =
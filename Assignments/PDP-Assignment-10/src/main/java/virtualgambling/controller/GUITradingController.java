@@ -9,6 +9,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import util.Constants;
+import util.ScheduledRetryer;
 import util.Utils;
 import virtualgambling.model.PersistableUserModel;
 import virtualgambling.model.bean.Portfolio;
@@ -28,8 +29,16 @@ import virtualgambling.view.guiview.GUIView;
  * This class represents a GUI Trading Controller. It implements {@link Controller} interface. This
  * is a Asynchronous Controller which wait for the callback from {@link GUIView} to perform
  * operations.
+ *
+ * <p>The callbacks run on the thread of the user interface, hence the calls that fetch prices give
+ * up after {@link #INTERACTIVE_DEADLINE_MILLIS} instead of the longer deadline of the data source,
+ * and report an error that the user can retry.
  */
 public class GUITradingController implements Controller {
+  /**
+   * The time after which the calls of a callback that fetch prices give up, in milliseconds.
+   */
+  public static final long INTERACTIVE_DEADLINE_MILLIS = 10000;
 
   private final PersistableUserModel persistableUserModel;
   private final GUIView guiView;
@@ -76,7 +85,10 @@ public class GUITradingController implements Controller {
     @Override
     public Optional<Portfolio> getPortfolio(String portfolioName) {
       try {
-        return Optional.of(this.userModel.getPortfolio(portfolioName));
+        Portfolio portfolio = this.userModel.getPortfolio(portfolioName);
+        // the selected portfolio is valued right after, warm the caches for all of its stocks
+        portfolio.prefetchPrices();
+        return Optional.of(portfolio);
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -102,7 +114,8 @@ public class GUITradingController implements Controller {
     @Override
     public Optional<BigDecimal> getPortfolioValue(String portfolio, Date date) {
       try {
-        return Optional.of(this.userModel.getPortfolio(portfolio).getValue(date));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.getPortfolio(portfolio).getValue(date)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -121,8 +134,9 @@ public class GUITradingController implements Controller {
                                                   long quantity,
                                                   double commissionPercentage) {
       try {
-        return Optional.of(this.userModel
-                .buyShares(tickerName, portfolioName, date, quantity, commissionPercentage));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(tickerName, portfolioName, date, quantity,
+                        commissionPercentage)));
 
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
@@ -140,8 +154,9 @@ public class GUITradingController implements Controller {
                 new OneTimeWeightedInvestmentStrategy(date,
                         Utils.getStocksWithWeights(tickerNames));
 
-        return Optional.of(this.userModel.buyShares(portfolioName, amountToInvest, strategy,
-                commission));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(portfolioName, amountToInvest, strategy,
+                        commission)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -158,8 +173,9 @@ public class GUITradingController implements Controller {
                 new OneTimeWeightedInvestmentStrategy(date,
                         stockWeights);
 
-        return Optional.of(this.userModel.buyShares(portfolioName, amountToInvest, strategy,
-                commission));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(portfolioName, amountToInvest, strategy,
+                        commission)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -175,8 +191,9 @@ public class GUITradingController implements Controller {
                 new RecurringWeightedInvestmentStrategy(startDate,
                         Utils.getStocksWithWeights(tickerNames), dayFrequency);
 
-        return Optional.of(this.userModel.buyShares(portfolioName, amountToInvest, strategy,
-                commission));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(portfolioName, amountToInvest, strategy,
+                        commission)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -195,8 +212,9 @@ public class GUITradingController implements Controller {
                         Utils.getStocksWithWeights(tickerNames), dayFrequency,
                         endDate);
 
-        return Optional.of(this.userModel.buyShares(portfolioName, amountToInvest, strategy,
-                commission));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(portfolioName, amountToInvest, strategy,
+                        commission)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -213,8 +231,9 @@ public class GUITradingController implements Controller {
         Strategy strategy =
                 new RecurringWeightedInvestmentStrategy(startDate, stockWeights, dayFrequency);
 
-        return Optional.of(this.userModel.buyShares(portfolioName, amountToInvest, strategy,
-                commission));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(portfolioName, amountToInvest, strategy,
+                        commission)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -233,8 +252,9 @@ public class GUITradingController implements Controller {
                 new RecurringWeightedInvestmentStrategy(startDate, stockWeights, dayFrequency,
                         endDate);
 
-        return Optional.of(this.userModel.buyShares(portfolioName, amountToInvest, strategy,
-                commission));
+        return Optional.of(ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS,
+                () -> this.userModel.buyShares(portfolioName, amountToInvest, strategy,
+                        commission)));
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
         return Optional.empty();
@@ -248,8 +268,11 @@ public class GUITradingController implements Controller {
       try {
         JSONSerDes<Strategy> serDes = new JSONSerDes<>(Paths.get(filePath),
                 Constants.RECURRING_STRATEGY_TYPE);
-        userModel.loadIntoModel(new StrategyLoader(serDes, portfolioName,
-                amountToInvest, commissionPercentage));
+        ScheduledRetryer.callWithDeadline(INTERACTIVE_DEADLINE_MILLIS, () -> {
+          userModel.loadIntoModel(new StrategyLoader(serDes, portfolioName,
+                  amountToInvest, commissionPercentage));
+          return null;
+        });
         return true;
       } catch (Exception e) {
         this.guiView.displayError(e.getMessage());
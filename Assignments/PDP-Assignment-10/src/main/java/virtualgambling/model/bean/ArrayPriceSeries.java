@@ -0,0 +1,192 @@
+package virtualgambling.model.bean;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+import util.Utils;
+
+/**
+ * {@link ArrayPriceSeries} is a columnar {@link PriceSeries} that stores epoch days in a sorted
+ * {@code int[]} and the corresponding unscaled prices in a parallel {@code long[]}.
+ *
+ * <p>Instances are immutable and can only be created using the {@link Builder}.
+ */
+public class ArrayPriceSeries implements PriceSeries {
+  private final int[] epochDays;
+  private final long[] unscaledPrices;
+  private final int scale;
+
+  private ArrayPriceSeries(int[] epochDays, long[] unscaledPrices, int scale) {
+    this.epochDays = epochDays;
+    this.unscaledPrices = unscaledPrices;
+    this.scale = scale;
+  }
+
+  @Override
+  public int size() {
+    return epochDays.length;
+  }
+
+  @Override
+  public int getScale() {
+    return scale;
+  }
+
+  @Override
+  public int getEpochDay(int index) throws IndexOutOfBoundsException {
+    return epochDays[index];
+  }
+
+  @Override
+  public long getUnscaledPrice(int index) throws IndexOutOfBoundsException {
+    return unscaledPrices[index];
+  }
+
+  @Override
+  public int binarySearch(int epochDay) {
+    return Arrays.binarySearch(epochDays, epochDay);
+  }
+
+  @Override
+  public StockPrice getStockPrice(int index) throws IndexOutOfBoundsException {
+    return new StockPrice(unscaledPrices[index], scale, Utils.fromEpochDay(epochDays[index]));
+  }
+
+  /**
+   * A builder that collects entries in any order and builds an {@link ArrayPriceSeries} sorted by
+   * epoch day. If the same epoch day is added more than once, the entry added last wins.
+   */
+  public static class Builder {
+    private final int scale;
+    private int[] epochDays;
+    private long[] unscaledPrices;
+    private int size;
+
+    /**
+     * Constructs a builder whose prices will have the given scale.
+     *
+     * @param scale the number of digits to the right of the decimal point of every price
+     * @throws IllegalArgumentException if the scale is negative
+     */
+    public Builder(int scale) throws IllegalArgumentException {
+      this(scale, 16);
+    }
+
+    /**
+     * Constructs a builder whose prices will have the given scale and that holds the given number
+     * of entries before it grows.
+     *
+     * @param scale            the number of digits to the right of the decimal point of every
+     *                         price
+     * @param expectedCapacity the expected number of entries
+     * @throws IllegalArgumentException if the scale or the expectedCapacity is negative
+     */
+    public Builder(int scale, int expectedCapacity) throws IllegalArgumentException {
+      if (scale < 0) {
+        throw new IllegalArgumentException("Scale cannot be negative");
+      }
+      if (expectedCapacity < 0) {
+        throw new IllegalArgumentException("Capacity cannot be negative");
+      }
+      this.scale = scale;
+      this.epochDays = new int[Math.max(expectedCapacity, 1)];
+      this.unscaledPrices = new long[Math.max(expectedCapacity, 1)];
+    }
+
+    /**
+     * Adds an entry given its epoch day and its unscaled price.
+     *
+     * @param epochDay      the epoch day of the entry
+     * @param unscaledPrice the unscaled price of the entry
+     * @return this builder
+     */
+    public Builder add(int epochDay, long unscaledPrice) {
+      if (size == epochDays.length) {
+        epochDays = Arrays.copyOf(epochDays, size * 2);
+        unscaledPrices = Arrays.copyOf(unscaledPrices, size * 2);
+      }
+      epochDays[size] = epochDay;
+      unscaledPrices[size] = unscaledPrice;
+      size++;
+      return this;
+    }
+
+    /**
+     * Adds an entry given its epoch day and its price. The price is rounded half up to the scale
+     * of this builder.
+     *
+     * @param epochDay the epoch day of the entry
+     * @param price    the price of the entry
+     * @return this builder
+     * @throws IllegalArgumentException if the price is null
+     */
+    public Builder add(int epochDay, BigDecimal price) throws IllegalArgumentException {
+      Utils.requireNonNull(price);
+      return add(epochDay,
+              price.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Builds the {@link ArrayPriceSeries} from the entries added so far.
+     *
+     * @return the {@link ArrayPriceSeries} sorted by epoch day
+     */
+    public ArrayPriceSeries build() {
+      int[] sortedEpochDays = Arrays.copyOf(epochDays, size);
+      long[] sortedPrices = Arrays.copyOf(unscaledPrices, size);
+      if (isStrictlyDescending()) {
+        // Alpha Vantage returns the latest day first, reversing is cheaper than sorting
+        for (int i = 0; i < size; i++) {
+          sortedEpochDays[i] = epochDays[size - 1 - i];
+          sortedPrices[i] = unscaledPrices[size - 1 - i];
+        }
+      } else if (!isStrictlyAscending()) {
+        return sortAndDeduplicate();
+      }
+      return new ArrayPriceSeries(sortedEpochDays, sortedPrices, scale);
+    }
+
+    private boolean isStrictlyAscending() {
+      for (int i = 1; i < size; i++) {
+        if (epochDays[i - 1] >= epochDays[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean isStrictlyDescending() {
+      for (int i = 1; i < size; i++) {
+        if (epochDays[i - 1] <= epochDays[i]) {
+          return false;
+        }
+      }
+      return size > 1;
+    }
+
+    private ArrayPriceSeries sortAndDeduplicate() {
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      // stable sort keeps the insertion order of duplicates, the last one is retained below
+      Arrays.sort(order, (i1, i2) -> Integer.compare(epochDays[i1], epochDays[i2]));
+
+      int[] sortedEpochDays = new int[size];
+      long[] sortedPrices = new long[size];
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        int epochDay = epochDays[order[i]];
+        if (count > 0 && sortedEpochDays[count - 1] == epochDay) {
+          count--;
+        }
+        sortedEpochDays[count] = epochDay;
+        sortedPrices[count] = unscaledPrices[order[i]];
+        count++;
+      }
+      return new ArrayPriceSeries(Arrays.copyOf(sortedEpochDays, count),
+              Arrays.copyOf(sortedPrices, count), scale);
+    }
+  }
+}
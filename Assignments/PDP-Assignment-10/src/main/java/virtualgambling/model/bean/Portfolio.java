@@ -4,11 +4,18 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import util.FixedPointDecimal;
 import util.Utils;
+import virtualgambling.model.exceptions.BatchPriceLookupException;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
 import virtualgambling.model.factory.StockDAOFactory;
 import virtualgambling.model.factory.StockDAOType;
@@ -99,11 +106,13 @@ public class Portfolio implements Serializable {
    */
   public BigDecimal getCostBasisIncludingCommission(Date date) {
     this.checkSanity(date);
-    return this.getPurchases().stream()
-            .filter(sharePurchaseInfo -> sharePurchaseInfo.getStockPrice().getDate()
-                    .compareTo(date) <= 0)
-            .map(SharePurchaseOrder::getCostOfPurchase)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    FixedPointDecimal costBasis = new FixedPointDecimal();
+    for (SharePurchaseOrder sharePurchaseOrder : this.purchases) {
+      if (sharePurchaseOrder.getStockPrice().getDate().compareTo(date) <= 0) {
+        sharePurchaseOrder.addCostOfPurchaseTo(costBasis);
+      }
+    }
+    return costBasis.toBigDecimal();
   }
 
   /**
@@ -114,12 +123,14 @@ public class Portfolio implements Serializable {
    */
   public BigDecimal getCostBasisExcludingCommission(Date dateTime) {
     this.checkSanity(dateTime);
-    return this.getPurchases().stream()
-            .filter(sharePurchaseInfo -> sharePurchaseInfo.getStockPrice().getDate()
-                    .compareTo(dateTime) <= 0)
-            .map(sharePurchaseOrder -> sharePurchaseOrder.getStockPrice().getUnitPrice()
-                    .multiply(BigDecimal.valueOf(sharePurchaseOrder.getQuantity())))
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    FixedPointDecimal costBasis = new FixedPointDecimal();
+    for (SharePurchaseOrder sharePurchaseOrder : this.purchases) {
+      StockPrice stockPrice = sharePurchaseOrder.getStockPrice();
+      if (stockPrice.getDate().compareTo(dateTime) <= 0) {
+        stockPrice.addCostTo(costBasis, sharePurchaseOrder.getQuantity());
+      }
+    }
+    return costBasis.toBigDecimal();
   }
 
   /**
@@ -137,25 +148,119 @@ public class Portfolio implements Serializable {
    * @throws IllegalArgumentException   if the given params are invalid
    */
   public BigDecimal getValue(Date date) {
+    return Utils.join(this.getValueAsync(date));
+  }
+
+  /**
+   * Returns the total value of this portfolio at the given date without blocking the calling
+   * thread. It throws {@link IllegalArgumentException} in the same cases as {@link
+   * #getValue(Date)}.
+   *
+   * @param date the date
+   * @return a future of the total value of the portfolio, completed exceptionally with {@link
+   *         StockDataNotFoundException} if the data is not found for the given date
+   * @throws IllegalArgumentException if the given params are invalid
+   */
+  public CompletableFuture<BigDecimal> getValueAsync(Date date) {
     this.checkSanity(date);
-    BigDecimal totalPortfolioValue = BigDecimal.ZERO;
 
-    List<SharePurchaseOrder> filteredPurchaseInfo = this.getPurchases().stream()
-            .filter(sharePurchaseInfo -> sharePurchaseInfo.getStockPrice()
-                    .getDate().compareTo(date) <= 0)
-            .collect(Collectors.toList());
+    Map<String, Long> quantitiesByTicker = this.getQuantitiesByTicker(date);
+    CompletableFuture<BigDecimal> portfolioValue = new CompletableFuture<>();
+    this.getPricesAsync(quantitiesByTicker.keySet(), date)
+            .whenComplete((stockPrices, throwable) -> {
+              if (Objects.nonNull(throwable)) {
+                portfolioValue.completeExceptionally(throwable);
+              } else {
+                portfolioValue.complete(getValue(quantitiesByTicker, stockPrices));
+              }
+            });
+    return portfolioValue;
+  }
 
-    for (SharePurchaseOrder sharePurchaseOrder : filteredPurchaseInfo) {
-      long quantity = sharePurchaseOrder.getQuantity();
-      StockPrice stockPrice =
-              this.stockDAO.getPrice(sharePurchaseOrder.getTickerName(), date);
-      totalPortfolioValue = totalPortfolioValue.add(stockPrice.getUnitPrice()
-              .multiply(new BigDecimal(quantity)));
+  /**
+   * Loads the prices of every stock in this portfolio, from the earliest purchase until today,
+   * into the caches of the data source in the background, so that the first valuation of this
+   * portfolio is as fast as the later ones.
+   *
+   * @return a future that is completed, never exceptionally, once the prices are loaded
+   */
+  public CompletableFuture<Void> prefetchPrices() {
+    Set<String> tickerNames = new LinkedHashSet<>();
+    Date earliestPurchaseDate = null;
+    for (SharePurchaseOrder sharePurchaseOrder : this.purchases) {
+      tickerNames.add(sharePurchaseOrder.getTickerName());
+      Date purchaseDate = sharePurchaseOrder.getStockPrice().getDate();
+      if (Objects.isNull(earliestPurchaseDate) || purchaseDate.before(earliestPurchaseDate)) {
+        earliestPurchaseDate = purchaseDate;
+      }
+    }
+    if (tickerNames.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
 
+    // portfolios that are deserialized do not have a stockDAO
+    StockDAO portfolioStockDAO = Objects.nonNull(this.stockDAO) ? this.stockDAO
+            : StockDAOFactory.fromStockDAOAndDataSource(this.stockDAOType,
+            this.stockDataSourceType);
+    return portfolioStockDAO.prefetch(tickerNames, earliestPurchaseDate, getTodayDate());
+  }
+
+  /**
+   * Returns the total quantity of every stock purchased until the given date, in the order of the
+   * first purchase of each stock, hence every stock is priced once however often it was bought.
+   */
+  private Map<String, Long> getQuantitiesByTicker(Date date) {
+    Map<String, Long> quantitiesByTicker = new LinkedHashMap<>();
+    for (SharePurchaseOrder sharePurchaseOrder : this.purchases) {
+      if (sharePurchaseOrder.getStockPrice().getDate().compareTo(date) <= 0) {
+        quantitiesByTicker.merge(sharePurchaseOrder.getTickerName(),
+                sharePurchaseOrder.getQuantity(), Math::addExact);
+      }
+    }
+    return quantitiesByTicker;
+  }
+
+  /**
+   * Looks up the prices of the given stocks at the given date in a single batch. The returned
+   * future is completed exceptionally with the failure of the first stock that has no price.
+   */
+  private CompletableFuture<Map<String, StockPrice>> getPricesAsync(Set<String> tickerNames,
+                                                                    Date date) {
+    if (tickerNames.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
     }
-    return totalPortfolioValue;
+
+    CompletableFuture<Map<String, StockPrice>> prices = new CompletableFuture<>();
+    this.stockDAO.getPricesAsync(tickerNames, date).whenComplete((stockPrices, throwable) -> {
+      if (Objects.nonNull(throwable)) {
+        prices.completeExceptionally(getFirstFailure(throwable));
+      } else {
+        prices.complete(stockPrices);
+      }
+    });
+    return prices;
+  }
+
+  private static BigDecimal getValue(Map<String, Long> quantitiesByTicker,
+                                     Map<String, StockPrice> stockPrices) {
+    FixedPointDecimal totalPortfolioValue = new FixedPointDecimal();
+    for (Map.Entry<String, Long> quantityOfTicker : quantitiesByTicker.entrySet()) {
+      StockPrice stockPrice = stockPrices.get(quantityOfTicker.getKey());
+      stockPrice.addCostTo(totalPortfolioValue, quantityOfTicker.getValue());
+    }
+    return totalPortfolioValue.toBigDecimal();
   }
 
+  private static RuntimeException getFirstFailure(Throwable throwable) {
+    RuntimeException exception = Utils.unwrapCompletionException(throwable);
+    if (exception instanceof BatchPriceLookupException) {
+      // tickers are in the order of purchase, hence this is the failure of the earliest order
+      return ((BatchPriceLookupException) exception).getFirstFailure();
+    }
+    return exception;
+  }
+
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -185,6 +290,12 @@ public class Portfolio implements Serializable {
             "Quantity", "Cost Price", "Current Value", "Commission Percentage"));
     composition.append(System.lineSeparator());
     List<SharePurchaseOrder> purchases = this.getPurchases();
+    // every stock is priced once, for its rows and for the total value
+    Set<String> tickerNames = purchases.stream()
+            .map(SharePurchaseOrder::getTickerName)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    Map<String, StockPrice> currentPrices = Utils.join(this.getPricesAsync(tickerNames,
+            dateTime));
     for (SharePurchaseOrder sharePurchaseOrder : purchases) {
       composition.append(String.format("%-20s%-20s%-20s%-20s%-20s%s",
               Utils.getDefaultFormattedDateStringFromDate(sharePurchaseOrder.getStockPrice()
@@ -194,13 +305,12 @@ public class Portfolio implements Serializable {
               Utils.getFormattedCurrencyNumberString(sharePurchaseOrder.getStockPrice()
                       .getUnitPrice()),
               Utils.getFormattedCurrencyNumberString(
-                      this.stockDAO.getPrice(sharePurchaseOrder.getTickerName(), dateTime)
-                              .getUnitPrice()),
+                      currentPrices.get(sharePurchaseOrder.getTickerName()).getUnitPrice()),
               String.valueOf(sharePurchaseOrder.getCommissionPercentage()))).append("%");
       composition.append(System.lineSeparator());
     }
 
-    BigDecimal portfolioValue = getValue(dateTime);
+    BigDecimal portfolioValue = getValue(this.getQuantitiesByTicker(dateTime), currentPrices);
     BigDecimal costBasisOfPortfolioWithCommission = getCostBasisIncludingCommission(dateTime);
     BigDecimal costBasisOfPortfolioWithoutCommission = getCostBasisExcludingCommission(dateTime);
 
@@ -224,7 +334,7 @@ public class Portfolio implements Serializable {
   }
 
   protected Date getTodayDate() {
-    return Utils.removeTimeFromDate(Utils.getCalendarInstance().getTime());
+    return Utils.fromEpochDay(Utils.getTodayEpochDay());
   }
 
   private void checkSanity(Date date) throws IllegalArgumentException {
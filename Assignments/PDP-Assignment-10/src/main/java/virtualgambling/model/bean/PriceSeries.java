@@ -0,0 +1,142 @@
+package virtualgambling.model.bean;
+
+/**
+ * {@link PriceSeries} represents a sorted series of daily closing prices of a single stock.
+ *
+ * <p>Each entry of the series is expressed in terms of its epoch day (the number of days since
+ * 1970-01-01) and its unscaled fixed-point price, such that the actual price is {@code
+ * unscaledPrice / 10^scale}. Entries are sorted by epoch day in ascending order and every epoch
+ * day appears at most once.
+ */
+public interface PriceSeries {
+
+  /**
+   * Returns the number of entries in this series.
+   *
+   * @return the number of entries in this series
+   */
+  int size();
+
+  /**
+   * Returns true if this series has no entries, false otherwise.
+   *
+   * @return true if this series has no entries, false otherwise
+   */
+  default boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Returns the number of digits to the right of the decimal point of every price in this series.
+   *
+   * @return the scale of the prices in this series
+   */
+  int getScale();
+
+  /**
+   * Returns the epoch day of the entry at the given index.
+   *
+   * @param index the index of the entry
+   * @return the epoch day of the entry at the given index
+   * @throws IndexOutOfBoundsException if the index is not within the series
+   */
+  int getEpochDay(int index) throws IndexOutOfBoundsException;
+
+  /**
+   * Returns the unscaled fixed-point price of the entry at the given index.
+   *
+   * @param index the index of the entry
+   * @return the unscaled fixed-point price of the entry at the given index
+   * @throws IndexOutOfBoundsException if the index is not within the series
+   */
+  long getUnscaledPrice(int index) throws IndexOutOfBoundsException;
+
+  /**
+   * Returns the index of the entry with the greatest epoch day less than or equal to the given
+   * epoch day, -1 if there is no such entry.
+   *
+   * @param epochDay the epoch day to look for
+   * @return the index of the floor entry, -1 if there is no such entry
+   */
+  default int floorIndex(int epochDay) {
+    int index = binarySearch(epochDay);
+    return index >= 0 ? index : -(index + 1) - 1;
+  }
+
+  /**
+   * Returns the index of the entry with the least epoch day greater than or equal to the given
+   * epoch day, -1 if there is no such entry.
+   *
+   * @param epochDay the epoch day to look for
+   * @return the index of the ceiling entry, -1 if there is no such entry
+   */
+  default int ceilingIndex(int epochDay) {
+    int index = binarySearch(epochDay);
+    if (index >= 0) {
+      return index;
+    }
+    int insertionPoint = -(index + 1);
+    return insertionPoint < size() ? insertionPoint : -1;
+  }
+
+  /**
+   * Returns true if the given epoch day lies between the first and the last entry of this series
+   * (both inclusive), false otherwise.
+   *
+   * @param epochDay the epoch day to check
+   * @return true if the given epoch day is within the range of this series, false otherwise
+   */
+  default boolean isInRange(int epochDay) {
+    return !isEmpty() && getEpochDay(0) <= epochDay && epochDay <= getEpochDay(size() - 1);
+  }
+
+  /**
+   * Returns a view of the entries of this series whose epoch day lies between the given epoch days
+   * (both inclusive). The view is empty if there are no such entries.
+   *
+   * @param fromEpochDay the first epoch day of the view
+   * @param toEpochDay   the last epoch day of the view
+   * @return a view of the entries between the given epoch days
+   */
+  default PriceSeries subSeries(int fromEpochDay, int toEpochDay) {
+    int fromIndex = ceilingIndex(fromEpochDay);
+    int toIndex = floorIndex(toEpochDay);
+    if (fromIndex < 0 || toIndex < fromIndex) {
+      return new SubPriceSeries(this, 0, 0);
+    }
+    return new SubPriceSeries(this, fromIndex, toIndex - fromIndex + 1);
+  }
+
+  /**
+   * Returns the {@link StockPrice} of the entry at the given index.
+   *
+   * @param index the index of the entry
+   * @return the {@link StockPrice} of the entry at the given index
+   * @throws IndexOutOfBoundsException if the index is not within the series
+   */
+  StockPrice getStockPrice(int index) throws IndexOutOfBoundsException;
+
+  /**
+   * Searches the series for the given epoch day. It follows the contract of {@link
+   * java.util.Arrays#binarySearch(int[], int)}.
+   *
+   * @param epochDay the epoch day to look for
+   * @return index of the epoch day if it is present, otherwise (-(insertion point) - 1)
+   */
+  default int binarySearch(int epochDay) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midEpochDay = getEpochDay(mid);
+      if (midEpochDay < epochDay) {
+        low = mid + 1;
+      } else if (midEpochDay > epochDay) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+}
@@ -3,6 +3,7 @@ package virtualgambling.model.bean;
 import java.math.BigDecimal;
 import java.util.Objects;
 
+import util.FixedPointDecimal;
 import util.Utils;
 
 /**
@@ -102,6 +103,20 @@ public class SharePurchaseOrder {
     return costOfAllShares.add(commission);
   }
 
+  /**
+   * Adds the total cost of this purchase to the given total. The result is equal to adding {@link
+   * #getCostOfPurchase()}.
+   *
+   * @param total the total to add to
+   * @return the given total
+   */
+  public FixedPointDecimal addCostOfPurchaseTo(FixedPointDecimal total) {
+    if (commissionPercentage == 0) {
+      return this.getStockPrice().addCostTo(total, quantity);
+    }
+    return total.add(getCostOfPurchase());
+  }
+
   @Override
   public String toString() {
     return String.format("Purchased %d share(s) of '%s' at a rate of %s per stock on %s",
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.Objects;
 
+import util.FixedPointDecimal;
 import util.Utils;
 
 /**
@@ -12,6 +13,10 @@ import util.Utils;
 public class StockPrice {
   private final Date date;
   private final BigDecimal stockPrice;
+  // fixed point form of the stock price, absent in instances that are deserialized
+  private final transient boolean isFixedPoint;
+  private final transient long unscaledPrice;
+  private final transient int scale;
 
   /**
    * Constructs a stockPrice in terms of it's date and stockPrice.
@@ -23,6 +28,25 @@ public class StockPrice {
   public StockPrice(BigDecimal stockPrice, Date date) throws IllegalArgumentException {
     this.date = Utils.requireNonNull(date);
     this.stockPrice = Utils.requireNonNull(stockPrice);
+    this.isFixedPoint = FixedPointDecimal.isRepresentable(stockPrice);
+    this.unscaledPrice = this.isFixedPoint ? stockPrice.unscaledValue().longValue() : 0;
+    this.scale = stockPrice.scale();
+  }
+
+  /**
+   * Constructs a stockPrice in terms of it's date and the fixed point form of the stockPrice.
+   *
+   * @param unscaledPrice the unscaled value of the stock price
+   * @param scale         the scale of the stock price
+   * @param date          the date
+   * @throws IllegalArgumentException if the date is null
+   */
+  public StockPrice(long unscaledPrice, int scale, Date date) throws IllegalArgumentException {
+    this.date = Utils.requireNonNull(date);
+    this.stockPrice = BigDecimal.valueOf(unscaledPrice, scale);
+    this.isFixedPoint = scale >= 0 && scale <= FixedPointDecimal.MAX_SCALE;
+    this.unscaledPrice = unscaledPrice;
+    this.scale = scale;
   }
 
   @Override
@@ -60,4 +84,33 @@ public class StockPrice {
   public BigDecimal getUnitPrice() {
     return stockPrice;
   }
+
+  /**
+   * Adds the cost of the given quantity of shares at this price to the given total.
+   *
+   * @param total    the total to add to
+   * @param quantity the quantity of shares
+   * @return the given total
+   */
+  public FixedPointDecimal addCostTo(FixedPointDecimal total, long quantity) {
+    if (isFixedPoint) {
+      return total.addProduct(unscaledPrice, scale, quantity);
+    }
+    return total.add(stockPrice.multiply(BigDecimal.valueOf(quantity)));
+  }
+
+  /**
+   * Returns the number of whole shares that can be bought at this price with the given amount,
+   * rounded down.
+   *
+   * @param amount the amount
+   * @return the number of whole shares that can be bought with the given amount
+   * @throws ArithmeticException if the price is zero
+   */
+  public long getQuantityPurchasable(FixedPointDecimal amount) throws ArithmeticException {
+    if (isFixedPoint) {
+      return amount.divideToLong(unscaledPrice, scale);
+    }
+    return amount.toBigDecimal().divide(stockPrice, BigDecimal.ROUND_DOWN).longValue();
+  }
 }
@@ -0,0 +1,56 @@
+package virtualgambling.model.bean;
+
+/**
+ * {@link SubPriceSeries} is a view over a contiguous range of entries of another {@link
+ * PriceSeries}. It does not copy any entries.
+ */
+class SubPriceSeries implements PriceSeries {
+  private final PriceSeries priceSeries;
+  private final int offset;
+  private final int size;
+
+  /**
+   * Constructs a view over the given series starting at the given offset.
+   *
+   * @param priceSeries the underlying series
+   * @param offset      the index in the underlying series of the first entry of the view
+   * @param size        the number of entries in the view
+   */
+  SubPriceSeries(PriceSeries priceSeries, int offset, int size) {
+    this.priceSeries = priceSeries;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getScale() {
+    return priceSeries.getScale();
+  }
+
+  @Override
+  public int getEpochDay(int index) throws IndexOutOfBoundsException {
+    return priceSeries.getEpochDay(getUnderlyingIndex(index));
+  }
+
+  @Override
+  public long getUnscaledPrice(int index) throws IndexOutOfBoundsException {
+    return priceSeries.getUnscaledPrice(getUnderlyingIndex(index));
+  }
+
+  @Override
+  public StockPrice getStockPrice(int index) throws IndexOutOfBoundsException {
+    return priceSeries.getStockPrice(getUnderlyingIndex(index));
+  }
+
+  private int getUnderlyingIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+    }
+    return offset + index;
+  }
+}
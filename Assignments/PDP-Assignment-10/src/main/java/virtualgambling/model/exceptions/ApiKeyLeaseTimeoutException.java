@@ -0,0 +1,18 @@
+package virtualgambling.model.exceptions;
+
+/**
+ * {@link ApiKeyLeaseTimeoutException} is thrown when no API key becomes available before the
+ * deadline of a call. It is a {@link RetryException} as the call gives up, but it is not an {@link
+ * APILimitExceededException}, hence waiting for a key is neither retried nor counted as a failure
+ * of the API.
+ */
+public class ApiKeyLeaseTimeoutException extends RetryException {
+  /**
+   * Constructs an ApiKeyLeaseTimeoutException object with the given message.
+   *
+   * @param message the given message
+   */
+  public ApiKeyLeaseTimeoutException(String message) {
+    super(message);
+  }
+}
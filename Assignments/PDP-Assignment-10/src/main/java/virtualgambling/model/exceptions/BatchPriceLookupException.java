@@ -0,0 +1,58 @@
+package virtualgambling.model.exceptions;
+
+import java.util.Collections;
+import java.util.Map;
+
+import virtualgambling.model.bean.StockPrice;
+
+/**
+ * This class represents a runtime exception which will be thrown when the prices of some of the
+ * tickers of a batch lookup could not be retrieved. It carries the prices that were retrieved and
+ * the failure of every ticker whose price could not be retrieved.
+ */
+public class BatchPriceLookupException extends RuntimeException {
+  private final Map<String, StockPrice> stockPrices;
+  private final Map<String, RuntimeException> failures;
+
+  /**
+   * Constructs a {@link BatchPriceLookupException} with the prices and failures of a batch lookup.
+   * Both maps are expected to follow the iteration order of the requested tickers.
+   *
+   * @param stockPrices the price of every ticker that was retrieved
+   * @param failures    the failure of every ticker that could not be retrieved
+   */
+  public BatchPriceLookupException(Map<String, StockPrice> stockPrices,
+                                   Map<String, RuntimeException> failures) {
+    super(String.format("Stock Data not found for Stocks:%s", failures.keySet()));
+    this.stockPrices = Collections.unmodifiableMap(stockPrices);
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * Returns the price of every ticker that was retrieved.
+   *
+   * @return the price of every ticker that was retrieved
+   */
+  public Map<String, StockPrice> getStockPrices() {
+    return stockPrices;
+  }
+
+  /**
+   * Returns the failure of every ticker that could not be retrieved.
+   *
+   * @return the failure of every ticker that could not be retrieved
+   */
+  public Map<String, RuntimeException> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the failure of the first ticker, in the iteration order of the requested tickers, that
+   * could not be retrieved.
+   *
+   * @return the failure of the first ticker that could not be retrieved
+   */
+  public RuntimeException getFirstFailure() {
+    return failures.values().iterator().next();
+  }
+}
@@ -1,15 +1,28 @@
 package virtualgambling.model.factory;
 
 import java.math.BigDecimal;
-import java.util.Calendar;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import util.Utils;
+import virtualgambling.model.bean.ArrayPriceSeries;
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.StockPrice;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
 import virtualgambling.model.stockdao.SimpleStockDAO;
 import virtualgambling.model.stockdao.StockDAO;
 import virtualgambling.model.stockdatasource.AlphaVantageAPIStockDataSource;
+import virtualgambling.model.stockdatasource.CachingStockDataSource;
+import virtualgambling.model.stockdatasource.DiskPriceCacheTier;
+import virtualgambling.model.stockdatasource.MemoryPriceCacheTier;
+import virtualgambling.model.stockdatasource.PriceCacheTier;
 import virtualgambling.model.stockdatasource.SimpleStockDataSource;
 import virtualgambling.model.stockdatasource.StockDataSource;
 
@@ -19,8 +32,30 @@ import virtualgambling.model.stockdatasource.StockDataSource;
  */
 public class StockDAOFactory {
   /**
-   * Constructs an instance of {@link StockDAO} given the {@link StockDAOType} and the {@link
-   * StockDataSourceType}.
+   * The system property that lists the {@link StockDataSourceType}s whose data sources are
+   * decorated with a {@link CachingStockDataSource}, separated by commas, for example
+   * "ALPHA_VANTAGE,SIMPLE". No data source is decorated if the property is not set.
+   *
+   * <p>Only the prices of {@link StockDataSourceType#ALPHA_VANTAGE} are also cached on disk. The
+   * other data sources generate their prices in the process, some of them relative to the current
+   * day, hence their prices of a past run must not be served.
+   */
+  public static final String CACHED_DATA_SOURCE_TYPES_PROPERTY = "stockdatasource.cachedTypes";
+
+  private static final long MEMO_SIZE = 1024;
+  private static final long MEMORY_TIER_MAXIMUM_WEIGHT_IN_BYTES = 16L * 1024 * 1024;
+  private static final String DISK_TIER_ROOT_PATH = "TieredPriceCache";
+  private static final Map<StockDataSourceType, List<PriceCacheTier>> SHARED_TIERS =
+          new ConcurrentHashMap<>();
+  private static final Map<StockDataSourceType, StockDataSource> STOCK_DATA_SOURCES =
+          new ConcurrentHashMap<>();
+  private static final Map<StockDAOKey, StockDAO> STOCK_DAOS = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the shared instance of {@link StockDAO} for the given {@link StockDAOType} and {@link
+   * StockDataSourceType}. The instance and its data source are created on the first call and
+   * reused by every later call, hence all the portfolios and users of a process share the same
+   * caches. Every {@link StockDAO} is thread-safe.
    *
    * @param stockDAOType        stock DAO type
    * @param stockDataSourceType stock Data source type
@@ -28,68 +63,96 @@ public class StockDAOFactory {
    */
   public static StockDAO fromStockDAOAndDataSource(StockDAOType stockDAOType,
                                                    StockDataSourceType stockDataSourceType) {
-    StockDataSource stockDataSource;
+    StockDAOKey stockDAOKey = new StockDAOKey(stockDAOType, stockDataSourceType,
+            isCached(stockDataSourceType));
+    return STOCK_DAOS.computeIfAbsent(stockDAOKey, StockDAOFactory::createStockDAO);
+  }
+
+  private static StockDAO createStockDAO(StockDAOKey stockDAOKey) {
+    StockDataSource stockDataSource = STOCK_DATA_SOURCES.computeIfAbsent(
+            stockDAOKey.stockDataSourceType, StockDAOFactory::createStockDataSource);
+    if (stockDAOKey.isCached) {
+      stockDataSource = withCaches(stockDAOKey.stockDataSourceType, stockDataSource);
+    }
+
+    if (stockDAOKey.stockDAOType == StockDAOType.SIMPLE) {
+      return new SimpleStockDAO(stockDataSource);
+    } else {
+      throw new IllegalArgumentException("stock DAO not found");
+    }
+  }
+
+  private static StockDataSource createStockDataSource(StockDataSourceType stockDataSourceType) {
     switch (stockDataSourceType) {
-      case SIMPLE: {
-        stockDataSource = new SimpleStockDataSource();
-        break;
-      }
-      case ALPHA_VANTAGE: {
-        stockDataSource = AlphaVantageAPIStockDataSource.getInstance();
-        break;
-      }
+      case SIMPLE:
+        return new SimpleStockDataSource();
+      case ALPHA_VANTAGE:
+        return AlphaVantageAPIStockDataSource.getInstance();
       case MOCK:
-        stockDataSource = new MockDataSource();
-        break;
+        return new MockDataSource();
       default:
         throw new IllegalArgumentException("Data source not found");
     }
+  }
 
-    if (stockDAOType == StockDAOType.SIMPLE) {
-      return new SimpleStockDAO(stockDataSource);
-    } else {
-      throw new IllegalArgumentException("stock DAO not found");
+  private static boolean isCached(StockDataSourceType stockDataSourceType) {
+    String cachedTypes = System.getProperty(CACHED_DATA_SOURCE_TYPES_PROPERTY, "");
+    for (String cachedType : cachedTypes.split(",")) {
+      if (cachedType.trim().equalsIgnoreCase(stockDataSourceType.name())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static StockDataSource withCaches(StockDataSourceType stockDataSourceType,
+                                            StockDataSource stockDataSource) {
+    // the tiers are shared by the stockDAOs of every StockDAOType
+    CachingStockDataSource.Builder builder = new CachingStockDataSource.Builder(stockDataSource)
+            .setMemoSize(MEMO_SIZE);
+    for (PriceCacheTier priceCacheTier : SHARED_TIERS.computeIfAbsent(stockDataSourceType,
+            StockDAOFactory::createTiers)) {
+      builder.addTier(priceCacheTier);
     }
+    return builder.build();
+  }
+
+  private static List<PriceCacheTier> createTiers(StockDataSourceType stockDataSourceType) {
+    PriceCacheTier memoryTier = new MemoryPriceCacheTier(MEMORY_TIER_MAXIMUM_WEIGHT_IN_BYTES);
+    if (stockDataSourceType != StockDataSourceType.ALPHA_VANTAGE) {
+      return Collections.singletonList(memoryTier);
+    }
+    return Arrays.asList(memoryTier, new DiskPriceCacheTier(Paths.get(DISK_TIER_ROOT_PATH,
+            stockDataSourceType.name().toLowerCase())));
   }
 
   private static class MockDataSource implements StockDataSource {
+    private static final int DAY_3 = (int) LocalDate.of(2018, 11, 1).toEpochDay();
+    private static final int NOVEMBER_24 = (int) LocalDate.of(2018, 11, 24).toEpochDay();
+    private static final int OCTOBER_24 = (int) LocalDate.of(2018, 10, 24).toEpochDay();
+    private static final int SEPTEMBER_24 = (int) LocalDate.of(2018, 9, 24).toEpochDay();
 
     @Override
     public StockPrice getPrice(String tickerName, Date date) throws StockDataNotFoundException {
       switch (tickerName) {
         case "AAPL":
-          Calendar calendar = Utils.getCalendarInstance();
-
-          calendar.set(2018, Calendar.NOVEMBER, 1, 10, 0);
-          Date day3 = calendar.getTime();
-          if (Utils.doesDatesHaveSameDay(date, day3)) {
+          int epochDay = Utils.toEpochDay(date);
+          if (epochDay == DAY_3) {
             return new StockPrice(BigDecimal.TEN, date);
           }
-
-          calendar.add(Calendar.DATE, -1);
-          Date day2 = calendar.getTime();
-          if (Utils.doesDatesHaveSameDay(date, day2)) {
+          if (epochDay == DAY_3 - 1) {
             return new StockPrice(new BigDecimal(20), date);
           }
-
-          calendar.add(Calendar.DATE, -1);
-          Date day1 = calendar.getTime();
-          if (Utils.doesDatesHaveSameDay(date, day1)) {
+          if (epochDay == DAY_3 - 2) {
             return new StockPrice(new BigDecimal(30), date);
           }
-
-          calendar.set(2018, Calendar.NOVEMBER, 24);
-          if (Utils.doesDatesHaveSameDay(date, calendar.getTime())) {
+          if (epochDay == NOVEMBER_24) {
             return new StockPrice(new BigDecimal(1000), date);
           }
-
-          calendar.set(2018, Calendar.OCTOBER, 24);
-          if (Utils.doesDatesHaveSameDay(date, calendar.getTime())) {
+          if (epochDay == OCTOBER_24) {
             return new StockPrice(new BigDecimal(100), date);
           }
-
-          calendar.set(2018, Calendar.SEPTEMBER, 24);
-          if (Utils.doesDatesHaveSameDay(date, calendar.getTime())) {
+          if (epochDay == SEPTEMBER_24) {
             return new StockPrice(new BigDecimal(10), date);
           } else {
             return new StockPrice(new BigDecimal(2000), date);
@@ -121,6 +184,54 @@ public class StockDAOFactory {
 
       throw new StockDataNotFoundException("Stock Data not found");
     }
+
+    @Override
+    public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+            throws StockDataNotFoundException, IllegalArgumentException {
+      int fromEpochDay = Utils.toEpochDay(fromDate);
+      int toEpochDay = Utils.toEpochDay(toDate);
+      if (fromEpochDay > toEpochDay) {
+        throw new IllegalArgumentException("From date cannot be after the to date");
+      }
+
+      // every mocked price is a whole number and every day is a trading day
+      ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(0);
+      for (int epochDay = fromEpochDay; epochDay <= toEpochDay; epochDay++) {
+        builder.add(epochDay, getPrice(tickerName, Utils.fromEpochDay(epochDay)).getUnitPrice());
+      }
+      return builder.build();
+    }
   }
-}
 
+  private static class StockDAOKey {
+    private final StockDAOType stockDAOType;
+    private final StockDataSourceType stockDataSourceType;
+    private final boolean isCached;
+
+    private StockDAOKey(StockDAOType stockDAOType, StockDataSourceType stockDataSourceType,
+                        boolean isCached) {
+      this.stockDAOType = stockDAOType;
+      this.stockDataSourceType = stockDataSourceType;
+      this.isCached = isCached;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StockDAOKey)) {
+        return false;
+      }
+      StockDAOKey that = (StockDAOKey) o;
+      return stockDAOType == that.stockDAOType
+              && stockDataSourceType == that.stockDataSourceType
+              && isCached == that.isCached;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(stockDAOType, stockDataSourceType, isCached);
+    }
+  }
+}
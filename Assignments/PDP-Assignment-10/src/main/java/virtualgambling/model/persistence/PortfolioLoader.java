@@ -38,6 +38,8 @@ public class PortfolioLoader implements Loader {
     if (Objects.isNull(portfolio)) {
       throw new PersistenceException("Could not deserialize portfolio");
     }
+    // the purchases below look up one price at a time, warm the caches for all of them at once
+    portfolio.prefetchPrices();
     userModel.createPortfolio(portfolio.getName());
     StockDAOType stockDAOType = userModel.getStockDAOType();
     StockDataSourceType stockDataSourceType = userModel.getStockDataSourceType();
@@ -48,6 +48,8 @@ public class StrategyLoader implements Loader {
     if (Objects.isNull(strategy)) {
       throw new PersistenceException("Could not deserialize strategy");
     }
+    // the execution looks up one date at a time, warm the caches for all the dates at once
+    strategy.prefetchPrices(userModel.getStockDAOType(), userModel.getStockDataSourceType());
     userModel.buyShares(portfolioName, amountToInvest, strategy, commissionPercentage);
   }
 }
@@ -1,12 +1,27 @@
 package virtualgambling.model.stockdao;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.SharePurchaseOrder;
 import virtualgambling.model.bean.StockPrice;
+import virtualgambling.model.exceptions.BatchPriceLookupException;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
+import virtualgambling.model.stockdatasource.AsyncStockDataSource;
+import virtualgambling.model.stockdatasource.AsyncStockDataSourceAdapter;
 import virtualgambling.model.stockdatasource.StockDataSource;
+import virtualgambling.model.stockdatasource.TradingCalendar;
 
 /**
  * <code>SimpleStockDAO</code> represents a data access object that uses any implementation of the
@@ -14,15 +29,32 @@ import virtualgambling.model.stockdatasource.StockDataSource;
  * accessing stock data.
  */
 public class SimpleStockDAO implements StockDAO {
+  private static final int ASYNC_PARALLELISM = 8;
+  private static final ExecutorService ASYNC_EXECUTOR =
+          Executors.newFixedThreadPool(ASYNC_PARALLELISM, runnable -> {
+            Thread thread = new Thread(runnable, "stock-dao-async");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   private final StockDataSource stockDataSource;
+  private final AsyncStockDataSource asyncStockDataSource;
 
   /**
-   * Constructs a stockDAO given any implementation of the stock data source.
+   * Constructs a stockDAO given any implementation of the stock data source. If the data source
+   * also implements {@link AsyncStockDataSource} its asynchronous methods are used as they are,
+   * otherwise its calls are run on a shared pool of threads.
    *
    * @param stockDataSource the stock data source object
    */
   public SimpleStockDAO(StockDataSource stockDataSource) {
     this.stockDataSource = stockDataSource;
+    if (stockDataSource instanceof AsyncStockDataSource) {
+      this.asyncStockDataSource = (AsyncStockDataSource) stockDataSource;
+    } else {
+      this.asyncStockDataSource = new AsyncStockDataSourceAdapter(stockDataSource,
+              ASYNC_EXECUTOR);
+    }
   }
 
   @Override
@@ -51,6 +83,129 @@ public class SimpleStockDAO implements StockDAO {
     return stockDataSource.getPrice(tickerName, date);
   }
 
+  @Override
+  public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+          throws StockDataNotFoundException, IllegalArgumentException {
+    Utils.requireNonNull(tickerName);
+    Utils.requireNonNull(fromDate);
+    Utils.requireNonNull(toDate);
+    if (Utils.isFutureDate(fromDate)) {
+      throw new IllegalArgumentException("Cannot get prices from a future date");
+    }
+    if (fromDate.compareTo(toDate) > 0) {
+      throw new IllegalArgumentException("From date cannot be after the to date");
+    }
+
+    int lastEpochDay = Math.min(Utils.toEpochDay(toDate), Utils.getTodayEpochDay());
+    return stockDataSource.getPrices(tickerName, this.getValidDate(fromDate),
+            Utils.fromEpochDay(lastEpochDay));
+  }
+
+  @Override
+  public Map<String, StockPrice> getPrices(Set<String> tickerNames, Date date)
+          throws BatchPriceLookupException, IllegalArgumentException {
+    Utils.requireNonNull(tickerNames);
+    if (tickerNames.size() != 1) {
+      return Utils.join(this.getPricesAsync(tickerNames, date));
+    }
+
+    // a single ticker is looked up on the calling thread, its arguments are checked and its
+    // failure is reported the same way as those of a batch of many tickers
+    String tickerName = Utils.requireNonNull(tickerNames.iterator().next());
+    Utils.requireNonNull(date);
+    if (Utils.isFutureDate(date)) {
+      throw new IllegalArgumentException("Cannot buy shares at given time");
+    }
+    Map<String, StockPrice> stockPrices = new LinkedHashMap<>();
+    try {
+      stockPrices.put(tickerName, stockDataSource.getPrice(tickerName, this.getValidDate(date)));
+    } catch (RuntimeException e) {
+      throw new BatchPriceLookupException(stockPrices, Collections.singletonMap(tickerName, e));
+    }
+    return stockPrices;
+  }
+
+  @Override
+  public CompletableFuture<StockPrice> getPriceAsync(String tickerName, Date date)
+          throws IllegalArgumentException {
+    Utils.requireNonNull(tickerName);
+    Utils.requireNonNull(date);
+    if (Utils.isFutureDate(date)) {
+      throw new IllegalArgumentException("Cannot buy shares at given time");
+    }
+
+    return asyncStockDataSource.getPriceAsync(tickerName, this.getValidDate(date));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, StockPrice>> getPricesAsync(Set<String> tickerNames,
+                                                                   Date date)
+          throws IllegalArgumentException {
+    Utils.requireNonNull(tickerNames);
+    Utils.requireNonNull(date);
+    if (Utils.isFutureDate(date)) {
+      throw new IllegalArgumentException("Cannot buy shares at given time");
+    }
+    Date validDate = this.getValidDate(date);
+
+    Map<String, CompletableFuture<StockPrice>> pendingStockPrices = new LinkedHashMap<>();
+    for (String tickerName : tickerNames) {
+      Utils.requireNonNull(tickerName);
+      pendingStockPrices.put(tickerName,
+              asyncStockDataSource.getPriceAsync(tickerName, validDate));
+    }
+
+    return CompletableFuture.allOf(pendingStockPrices.values().toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, throwable) -> collectStockPrices(pendingStockPrices));
+  }
+
+  @Override
+  public CompletableFuture<Void> prefetch(Set<String> tickerNames, Date fromDate, Date toDate)
+          throws IllegalArgumentException {
+    Utils.requireNonNull(tickerNames);
+    Utils.requireNonNull(fromDate);
+    Utils.requireNonNull(toDate);
+    int lastEpochDay = Math.min(Utils.toEpochDay(toDate), Utils.getTodayEpochDay());
+    if (Utils.isFutureDate(fromDate) || Utils.toEpochDay(fromDate) > lastEpochDay) {
+      return CompletableFuture.completedFuture(null);
+    }
+    Date validFromDate = this.getValidDate(fromDate);
+    Date validToDate = Utils.fromEpochDay(lastEpochDay);
+
+    List<CompletableFuture<PriceSeries>> pendingPrefetches = new ArrayList<>();
+    for (String tickerName : tickerNames) {
+      Utils.requireNonNull(tickerName);
+      pendingPrefetches.add(asyncStockDataSource
+              .getPricesAsync(tickerName, validFromDate, validToDate)
+              .exceptionally(throwable -> null));
+    }
+    return CompletableFuture.allOf(pendingPrefetches.toArray(new CompletableFuture<?>[0]));
+  }
+
+  @Override
+  public TradingCalendar getTradingCalendar() {
+    return stockDataSource.getTradingCalendar();
+  }
+
+  private static Map<String, StockPrice> collectStockPrices(
+          Map<String, CompletableFuture<StockPrice>> pendingStockPrices) {
+    Map<String, StockPrice> stockPrices = new LinkedHashMap<>();
+    Map<String, RuntimeException> failures = new LinkedHashMap<>();
+    for (Map.Entry<String, CompletableFuture<StockPrice>> entry :
+            pendingStockPrices.entrySet()) {
+      try {
+        stockPrices.put(entry.getKey(), entry.getValue().join());
+      } catch (CompletionException e) {
+        failures.put(entry.getKey(), Utils.unwrapCompletionException(e));
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      throw new BatchPriceLookupException(stockPrices, failures);
+    }
+    return stockPrices;
+  }
+
   protected Date getValidDate(Date date) {
     return Utils.removeTimeFromDate(date);
   }
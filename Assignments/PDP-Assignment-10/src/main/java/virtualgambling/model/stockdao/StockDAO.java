@@ -1,10 +1,16 @@
 package virtualgambling.model.stockdao;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.SharePurchaseOrder;
 import virtualgambling.model.bean.StockPrice;
+import virtualgambling.model.exceptions.BatchPriceLookupException;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
+import virtualgambling.model.stockdatasource.TradingCalendar;
 
 /**
  * <code>StockDAO</code> represents a stock data access object that acts as a mediator between
@@ -43,4 +49,87 @@ public interface StockDAO {
    */
   StockPrice getPrice(String tickerName, Date date) throws StockDataNotFoundException,
           IllegalArgumentException;
+
+  /**
+   * Retrieves the stock prices of the given ticker for every trading day between the given dates
+   * (both inclusive). A toDate in the future is treated as today.
+   *
+   * @param tickerName the name of the stock ticker
+   * @param fromDate   the first date of the range
+   * @param toDate     the last date of the range
+   * @return the prices of the stock between the given dates
+   * @throws IllegalArgumentException   if any argument is null or if the fromDate represents a day
+   *                                    in the future or is after the toDate
+   * @throws StockDataNotFoundException if the stock data for the ticker is not found
+   */
+  PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+          throws StockDataNotFoundException, IllegalArgumentException;
+
+  /**
+   * Retrieves the stock prices of all the given tickers at the given date. The prices of
+   * different tickers may be retrieved in parallel.
+   *
+   * @param tickerNames the names of the stock tickers
+   * @param date        the date and time at which the prices are needed
+   * @return the stock price of every ticker in the iteration order of the given tickers
+   * @throws IllegalArgumentException  if any argument is null or if the date represents a day in
+   *                                   the future
+   * @throws BatchPriceLookupException if the price of any ticker could not be retrieved, it
+   *                                   carries the prices that were retrieved and the failure of
+   *                                   every other ticker
+   */
+  Map<String, StockPrice> getPrices(Set<String> tickerNames, Date date)
+          throws BatchPriceLookupException, IllegalArgumentException;
+
+  /**
+   * Retrieves the stock price of the given ticker at the given date without blocking the calling
+   * thread.
+   *
+   * @param tickerName the name of the stock ticker
+   * @param date       the date and time at which the price is needed
+   * @return a future of the stock price, completed exceptionally with {@link
+   *         StockDataNotFoundException} if the stock price at the given date is not found
+   * @throws IllegalArgumentException if any argument is null or if the date represents a day in
+   *                                  the future
+   */
+  CompletableFuture<StockPrice> getPriceAsync(String tickerName, Date date)
+          throws IllegalArgumentException;
+
+  /**
+   * Retrieves the stock prices of all the given tickers at the given date without blocking the
+   * calling thread. The prices of different tickers may be retrieved in parallel.
+   *
+   * @param tickerNames the names of the stock tickers
+   * @param date        the date and time at which the prices are needed
+   * @return a future of the stock price of every ticker in the iteration order of the given
+   *         tickers, completed exceptionally with {@link BatchPriceLookupException} if the price
+   *         of any ticker could not be retrieved
+   * @throws IllegalArgumentException if any argument is null or if the date represents a day in
+   *                                  the future
+   */
+  CompletableFuture<Map<String, StockPrice>> getPricesAsync(Set<String> tickerNames, Date date)
+          throws IllegalArgumentException;
+
+  /**
+   * Loads the stock prices of all the given tickers between the given dates into the caches of
+   * the data source in the background, so that later lookups in that range are served from the
+   * caches. Prices that could not be loaded are left to be fetched by the later lookups.
+   *
+   * @param tickerNames the names of the stock tickers
+   * @param fromDate    the first date of the range
+   * @param toDate      the last date of the range, clamped to the current day
+   * @return a future that is completed, never exceptionally, once all the prices are loaded or
+   *         have failed to load
+   * @throws IllegalArgumentException if any argument is null
+   */
+  CompletableFuture<Void> prefetch(Set<String> tickerNames, Date fromDate, Date toDate)
+          throws IllegalArgumentException;
+
+  /**
+   * Returns the calendar of the trading days of the data source, shared by every user of the data
+   * source, so that the days without prices are resolved without looking up prices.
+   *
+   * @return the trading calendar of the data source
+   */
+  TradingCalendar getTradingCalendar();
 }
@@ -1,30 +1,32 @@
 package virtualgambling.model.stockdatasource;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.NavigableMap;
 import java.util.Objects;
-import java.util.Random;
-import java.util.TreeMap;
-
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import util.CircuitBreaker;
+import util.ConcurrentLRUCache;
+import util.ScheduledRetryer;
+import util.SingleFlight;
 import util.Utils;
+import virtualgambling.model.bean.ArrayPriceSeries;
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.StockPrice;
 import virtualgambling.model.exceptions.APILimitExceededException;
 import virtualgambling.model.exceptions.RetryException;
@@ -38,8 +40,13 @@ import virtualgambling.model.exceptions.StockDataNotFoundException;
  * is to use the {@link AlphaVantageAPIStockDataSource#getInstance()} method.
  *
  * <p>The stock price that is returned is the closing price of the stock for a given day.
+ *
+ * <p>Calls that exceed the API limit are retried with an exponential back off that is waited for
+ * on a scheduler, hence the asynchronous methods of this data source never block a thread while
+ * waiting to retry. Requests are spread over the API keys by an {@link ApiKeyPool} that keeps
+ * every key within its quota, hence a burst of requests is queued instead of being rejected.
  */
-public class AlphaVantageAPIStockDataSource implements StockDataSource {
+public class AlphaVantageAPIStockDataSource implements StockDataSource, AsyncStockDataSource {
 
   private static final List<String> API_KEYS = Arrays.asList(
           "AOHAEN4D9GAK0UA3",
@@ -55,234 +62,351 @@ public class AlphaVantageAPIStockDataSource implements StockDataSource {
           "7C6VFPULZK6DO30H"
   );
 
-  private static final Utils.LRUCache<String, NavigableMap<String, StockPrice>> LRU_CACHE =
-          new Utils.LRUCache<>(20);
-  private static final Random RANDOM = new Random();
+  // enough for the full history of about a thousand tickers
+  private static final long LRU_CACHE_MAXIMUM_WEIGHT_IN_BYTES = 64L * 1024 * 1024;
+  private static final ConcurrentLRUCache<String, PriceSeries> LRU_CACHE =
+          new ConcurrentLRUCache<>(LRU_CACHE_MAXIMUM_WEIGHT_IN_BYTES,
+                  priceSeries -> (long) priceSeries.size() * (Integer.BYTES + Long.BYTES));
+  private static final SingleFlight<String, PriceSeries> IN_FLIGHT_LOADS = new SingleFlight<>();
+  // the tickers of Alpha Vantage trade on the US exchanges, which share their holidays
+  private static final TradingCalendar TRADING_CALENDAR = new TradingCalendar();
+  // the quota of a free Alpha Vantage key
+  private static final long API_KEY_REQUESTS_PER_MINUTE = 5;
+  private static final long API_KEY_REQUESTS_PER_DAY = 500;
+  // a call gives up once its retries or its wait for a key reach the deadline
+  private static final long RETRY_DEADLINE_MILLIS = 60000;
+  private static final ApiKeyPool API_KEY_POOL =
+          new ApiKeyPool(API_KEYS, API_KEY_REQUESTS_PER_MINUTE, API_KEY_REQUESTS_PER_DAY);
   private static final String DISK_CACHE_ROOT_PATH = "StocksPriceCache";
-
-  private static AlphaVantageAPIStockDataSource HOLDER;
-
-  private int apiKeyIndex = RANDOM.nextInt(API_KEYS.size());
-
-  private Utils.BiFunctionRetryer<String, Date, StockPrice> biFunctionRetryer =
-          new Utils.BiFunctionRetryer.RetryerBuilder<>(this::execute)
-                  .setNumRetries(10)
-                  .setBackOffSeconds(1)
-                  .setExceptionClass(APILimitExceededException.class)
-                  .createRetryer();
+  private static final String LEGACY_CACHE_FILE_NAME = "data.csv";
+  private static final DiskPriceCache DISK_CACHE =
+          new DiskPriceCache(Paths.get(DISK_CACHE_ROOT_PATH));
+  // the callers get their series once it is parsed, it reaches the disk in the background
+  private static final int MAX_PENDING_DISK_WRITES = 256;
+  private static final WriteBehindPriceCache WRITE_BEHIND_CACHE =
+          new WriteBehindPriceCache(DISK_CACHE, MAX_PENDING_DISK_WRITES, "alphavantage-persist");
+  private static final long SHUTDOWN_DISK_WRITES_TIMEOUT_SECONDS = 10;
+  // the responses are downloaded while the bytes received so far are parsed
+  private static final int DOWNLOAD_CHUNK_SIZE_IN_BYTES = 16 * 1024;
+  private static final int MAX_DOWNLOAD_CHUNKS_AHEAD = 64;
+  private static final ExecutorService DOWNLOAD_EXECUTOR =
+          Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "alphavantage-download");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private static final long NEGATIVE_CACHE_MAXIMUM_TICKERS = 10000;
+  private static final NegativePriceCache NEGATIVE_CACHE =
+          new NegativePriceCache(Paths.get(DISK_CACHE_ROOT_PATH), NEGATIVE_CACHE_MAXIMUM_TICKERS);
+  private static final long UNKNOWN_TICKER_TTL_HOURS = 24;
+  private static final long BEFORE_FIRST_DAY_TTL_HOURS = 24;
+  // prices of the latest day show up during the day, hence such misses are short lived
+  private static final long AFTER_LAST_DAY_TTL_HOURS = 1;
+  // Alpha Vantage reports prices with four digits after the decimal point
+  private static final int PRICE_SCALE = 4;
+  // the columns are timestamp, open, high, low, close and volume
+  private static final int CLOSE_PRICE_COLUMN = 4;
+  private static final String OUTPUT_SIZE_FULL = "full";
+  // the latest 100 trading days, enough to catch up after a few months without a full download
+  private static final String OUTPUT_SIZE_COMPACT = "compact";
+
+  private static final String DEFAULT_BASE_URL = "https://www.alphavantage.co/query?";
+  private static final String BASE_URL_PROPERTY = "alphavantage.baseUrl";
+
+  private static volatile AlphaVantageAPIStockDataSource HOLDER;
+
+  private volatile String baseUrl = System.getProperty(BASE_URL_PROPERTY, DEFAULT_BASE_URL);
+
+  // every key has failed in a row, hence calls fail fast until the per minute limit resets
+  private final CircuitBreaker apiKeysCircuitBreaker =
+          new CircuitBreaker(API_KEYS.size(), 30, TimeUnit.SECONDS);
+
+  private final ScheduledRetryer<String, Date, StockPrice> stockPriceRetryer =
+          createRetryer(this::execute);
+
+  private final ScheduledRetryer<String, Integer, PriceSeries> priceSeriesRetryer =
+          createRetryer(this::getPriceSeries);
 
   private AlphaVantageAPIStockDataSource() {
-
+    // the series that did not reach the disk would be fetched again by the next run
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        awaitDiskCacheWrites(SHUTDOWN_DISK_WRITES_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        // the remaining series are fetched again
+        Thread.currentThread().interrupt();
+      }
+    }, "alphavantage-persist-on-exit"));
   }
 
   @Override
   public StockPrice getPrice(String tickerName, Date date) throws StockDataNotFoundException,
           RetryException {
-    try {
-      return biFunctionRetryer.retry(tickerName, date);
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
-    }
+    return stockPriceRetryer.retry(tickerName, date);
   }
 
-  private StockPrice execute(String tickerName, Date date) {
-    String dateString = Utils.getDefaultFormattedDateStringFromDate(Utils.removeTimeFromDate(date));
-    if (Utils.isFutureDate(date)) {
-      throw new StockDataNotFoundException(String.format("Stock Data Not found for: %s for %s",
-              tickerName, dateString));
-    }
+  @Override
+  public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+          throws StockDataNotFoundException, RetryException, IllegalArgumentException {
+    int fromEpochDay = Utils.toEpochDay(fromDate);
+    int toEpochDay = Utils.toEpochDay(toDate);
+    return priceSeriesRetryer.retry(tickerName, getLastEpochDay(fromEpochDay, toEpochDay))
+            .subSeries(fromEpochDay, toEpochDay);
+  }
 
-    StockPrice stockPrice = getDataFromLruCache(tickerName, dateString);
-    if (Objects.nonNull(stockPrice)) {
-      return stockPrice;
+  @Override
+  public CompletableFuture<StockPrice> getPriceAsync(String tickerName, Date date) {
+    return stockPriceRetryer.retryAsync(tickerName, date);
+  }
+
+  @Override
+  public CompletableFuture<PriceSeries> getPricesAsync(String tickerName, Date fromDate,
+                                                       Date toDate) {
+    int fromEpochDay = Utils.toEpochDay(fromDate);
+    int toEpochDay = Utils.toEpochDay(toDate);
+    try {
+      return priceSeriesRetryer.retryAsync(tickerName, getLastEpochDay(fromEpochDay, toEpochDay))
+              .thenApply(priceSeries -> priceSeries.subSeries(fromEpochDay, toEpochDay));
+    } catch (IllegalArgumentException e) {
+      CompletableFuture<PriceSeries> priceSeries = new CompletableFuture<>();
+      priceSeries.completeExceptionally(e);
+      return priceSeries;
     }
+  }
 
-    setAPIKeyIndex();
+  /**
+   * Returns the calendar of the US exchanges, which knows the days of every series loaded by this
+   * data source.
+   *
+   * @return the trading calendar of the US exchanges
+   */
+  @Override
+  public TradingCalendar getTradingCalendar() {
+    return TRADING_CALENDAR;
+  }
 
-    if (addDataToLRUCacheIfAvailable(tickerName, dateString)) {
-      NavigableMap<String, StockPrice> dateToBigDecimalMap = LRU_CACHE.get(tickerName);
-      if (Objects.nonNull(dateToBigDecimalMap)) {
-        Map.Entry<String, StockPrice> dateToPriceEntry =
-                dateToBigDecimalMap.ceilingEntry(dateString);
-        if (Objects.isNull(dateToPriceEntry) || Objects.isNull(dateToPriceEntry.getValue())) {
-          throw new StockDataNotFoundException(String.format("Stock Data Not found for: %s for %s",
-                  tickerName, dateString));
-        }
-        return dateToPriceEntry.getValue();
-      }
+  private static int getLastEpochDay(int fromEpochDay, int toEpochDay)
+          throws IllegalArgumentException {
+    if (fromEpochDay > toEpochDay) {
+      throw new IllegalArgumentException("From date cannot be after the to date");
     }
-    throw new StockDataNotFoundException(String.format("Stock Data Not found for: %s for %s",
-            tickerName, dateString));
+    return Math.min(toEpochDay, Utils.getTodayEpochDay());
   }
 
-  private void setAPIKeyIndex() {
-    apiKeyIndex = RANDOM.nextInt(API_KEYS.size());
+  private <T, U, R> ScheduledRetryer<T, U, R> createRetryer(BiFunction<T, U, R> functionToRetry) {
+    return new ScheduledRetryer.RetryerBuilder<>(functionToRetry)
+            .setNumRetries(10)
+            .setBackOffMillis(1000, 16000)
+            .setDeadlineMillis(RETRY_DEADLINE_MILLIS)
+            .setExceptionClass(APILimitExceededException.class)
+            .setCircuitBreaker(apiKeysCircuitBreaker)
+            .createRetryer();
   }
 
-  private boolean addDataToLRUCacheIfAvailable(String tickerName, String dateString) {
-    try {
-      if (addDataToLRUCacheFromDisk(tickerName, dateString)) {
-        return true;
-      }
-    } catch (IOException ignored) {
+  private StockPrice execute(String tickerName, Date date) {
+    if (Utils.isFutureDate(date)) {
+      throw getStockDataNotFoundException(tickerName, date);
     }
+    int epochDay = Utils.toEpochDay(date);
 
-    return addDataToLRUCacheFromAPI(tickerName, dateString);
+    PriceSeries priceSeries = getPriceSeries(tickerName, epochDay);
+    if (priceSeries.isInRange(epochDay)) {
+      // a day within the range that is missing from the series is a holiday
+      return priceSeries.getStockPrice(priceSeries.ceilingIndex(epochDay));
+    }
+    throw getStockDataNotFoundException(tickerName, date);
   }
 
-  private StockPrice getDataFromLruCache(String tickerName, String dateString) {
-    if (LRU_CACHE.containsKey(tickerName)) {
-      NavigableMap<String, StockPrice> timeStampMap = LRU_CACHE.get(tickerName);
-      if (timeStampMap.containsKey(dateString)) {
-        return timeStampMap.get(dateString);
-      }
+  private PriceSeries getPriceSeries(String tickerName, int epochDay) {
+    PriceSeries priceSeries = LRU_CACHE.get(tickerName);
+    if (Objects.nonNull(priceSeries) && isInRangeOrMissing(tickerName, priceSeries, epochDay)) {
+      return priceSeries;
+    }
+    if (NEGATIVE_CACHE.isUnknownTicker(tickerName)) {
+      throw new StockDataNotFoundException("Stock Data Not found");
     }
-    return null;
-  }
 
-  private boolean addDataToLRUCacheFromDisk(String tickerName, String dateString)
-          throws IOException {
-    Path cachePath = getCacheFolderPath(tickerName);
-    if (Files.isDirectory(cachePath)) {
-      Path cacheFilePath = getCacheFilePath(tickerName);
-      if (Files.exists(cacheFilePath)) {
-        NavigableMap<String, StockPrice> timeStampMap = readDataFromDisk(cacheFilePath);
-        Map.Entry<String, StockPrice> lastEntry = timeStampMap.lastEntry();
-        Map.Entry<String, StockPrice> firstEntry = timeStampMap.firstEntry();
-        if (Objects.nonNull(firstEntry) && Objects.nonNull(lastEntry)) {
-          if (lastEntry.getKey().compareTo(dateString) >= 0 &&
-                  firstEntry.getKey().compareTo(dateString) <= 0) {
-            addToLruCache(tickerName, timeStampMap);
-            return true;
-
-          }
-        }
-      }
+    AtomicBoolean isLoadedByThisCall = new AtomicBoolean();
+    Supplier<PriceSeries> loader = () -> {
+      isLoadedByThisCall.set(true);
+      return loadPriceSeries(tickerName, epochDay);
+    };
+    priceSeries = IN_FLIGHT_LOADS.execute(tickerName, loader);
+    if (!isLoadedByThisCall.get() && isAfterLastDay(priceSeries, epochDay)) {
+      // the joined load was for an earlier day and might have been served by an older disk copy
+      priceSeries = IN_FLIGHT_LOADS.execute(tickerName, loader);
     }
-    return false;
+    return priceSeries;
   }
 
-  private Path getCacheFilePath(String tickerName) {
-    return Paths.get(DISK_CACHE_ROOT_PATH, tickerName, "data.csv");
+  private StockDataNotFoundException getStockDataNotFoundException(String tickerName, Date date) {
+    return new StockDataNotFoundException(String.format("Stock Data Not found for: %s for %s",
+            tickerName, Utils.getDefaultFormattedDateStringFromDate(date)));
   }
 
-  private NavigableMap<String, StockPrice> readDataFromDisk(Path cacheFilePath) throws IOException {
-    File file = new File(cacheFilePath.toUri());
-    NavigableMap<String, StockPrice> timeStampMap = new TreeMap<>();
-    try (BufferedReader reader =
-                 new BufferedReader(
-                         new InputStreamReader(
-                                 new FileInputStream(
-                                         file)))) {
-
-      String header = reader.readLine();
+  private static boolean isInRangeOrMissing(String tickerName, PriceSeries priceSeries,
+                                            int epochDay) {
+    return priceSeries.isInRange(epochDay) || NEGATIVE_CACHE.isMissing(tickerName, epochDay);
+  }
 
-      String temp;
-      while (Objects.nonNull((temp = reader.readLine()))) {
-        try {
-          parseAndUpdateMap(temp, timeStampMap);
-        } catch (ParseException e) {
-          throw new RuntimeException(e);
-        }
-      }
+  private static void putMisses(String tickerName, PriceSeries priceSeries, int epochDay) {
+    if (priceSeries.isEmpty()) {
+      NEGATIVE_CACHE.putUnknownTicker(tickerName, UNKNOWN_TICKER_TTL_HOURS, TimeUnit.HOURS);
+    } else if (epochDay < priceSeries.getEpochDay(0)) {
+      NEGATIVE_CACHE.putMissingRange(tickerName, Integer.MIN_VALUE,
+              priceSeries.getEpochDay(0) - 1, BEFORE_FIRST_DAY_TTL_HOURS, TimeUnit.HOURS);
+    } else if (isAfterLastDay(priceSeries, epochDay)) {
+      NEGATIVE_CACHE.putMissingRange(tickerName,
+              priceSeries.getEpochDay(priceSeries.size() - 1) + 1, epochDay,
+              AFTER_LAST_DAY_TTL_HOURS, TimeUnit.HOURS);
     }
-    return timeStampMap;
   }
 
-  private Path getCacheFolderPath(String tickerName) {
-    return Paths.get(DISK_CACHE_ROOT_PATH, tickerName);
+  private static boolean isAfterLastDay(PriceSeries priceSeries, int epochDay) {
+    return !priceSeries.isEmpty() && priceSeries.getEpochDay(priceSeries.size() - 1) < epochDay;
   }
 
-  private boolean addDataToLRUCacheFromAPI(String tickerName, String dateString) {
-
+  private PriceSeries loadPriceSeries(String tickerName, int epochDay) {
+    Optional<PriceSeries> diskPriceSeries = Optional.empty();
     try {
-      NavigableMap<String, StockPrice> timeStampMap = queryApi(tickerName);
-      Map.Entry<String, StockPrice> lastEntry = timeStampMap.lastEntry();
-      Map.Entry<String, StockPrice> firstEntry = timeStampMap.firstEntry();
-
-      if (Objects.nonNull(firstEntry) && Objects.nonNull(lastEntry)) {
-        if (lastEntry.getKey().compareTo(dateString) >= 0 &&
-                firstEntry.getKey().compareTo(dateString) <= 0) {
-          addToLruCache(tickerName, timeStampMap);
-          return true;
+      diskPriceSeries = readDataFromDisk(tickerName);
+      if (diskPriceSeries.isPresent()
+              && isInRangeOrMissing(tickerName, diskPriceSeries.get(), epochDay)) {
+        addToLruCache(tickerName, diskPriceSeries.get());
+        return diskPriceSeries.get();
+      }
+    } catch (IOException ignored) {
+    }
 
+    DiskPriceCache.TickerLock tickerLock = null;
+    try {
+      tickerLock = DISK_CACHE.lock(tickerName);
+      // another process might have fetched the series while this one waited for the lock
+      Optional<PriceSeries> lockedDiskPriceSeries = WRITE_BEHIND_CACHE.read(tickerName);
+      if (lockedDiskPriceSeries.isPresent()) {
+        diskPriceSeries = lockedDiskPriceSeries;
+        if (isInRangeOrMissing(tickerName, diskPriceSeries.get(), epochDay)) {
+          tickerLock.close();
+          addToLruCache(tickerName, diskPriceSeries.get());
+          return diskPriceSeries.get();
         }
       }
+    } catch (IOException ignored) {
+      // the series is fetched without sharing it with the other processes
+    }
+
+    try {
+      PriceSeries priceSeries;
+      if (diskPriceSeries.isPresent() && isAfterLastDay(diskPriceSeries.get(), epochDay)) {
+        priceSeries = refreshTail(tickerName, diskPriceSeries.get());
+      } else {
+        priceSeries = queryApi(tickerName, OUTPUT_SIZE_FULL);
+      }
+      if (tickerLock != null) {
+        // the lock is released once the series is written, hence waiting processes read it
+        WRITE_BEHIND_CACHE.write(tickerLock, priceSeries);
+        tickerLock = null;
+      }
+      addToLruCache(tickerName, priceSeries);
+      putMisses(tickerName, priceSeries, epochDay);
+      return priceSeries;
+    } catch (StockDataNotFoundException e) {
+      NEGATIVE_CACHE.putUnknownTicker(tickerName, UNKNOWN_TICKER_TTL_HOURS, TimeUnit.HOURS);
+      throw e;
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      if (tickerLock != null) {
+        tickerLock.close();
+      }
     }
-    return false;
   }
 
-  private void addToLruCache(String tickerName,
-                             NavigableMap<String, StockPrice> timeStampMap) {
-    LRU_CACHE.put(tickerName, timeStampMap);
-  }
+  /**
+   * Fetches only the latest prices of the given ticker and appends them to the given series. The
+   * full history is fetched instead if the latest prices do not overlap with the given series.
+   */
+  private PriceSeries refreshTail(String tickerName, PriceSeries priceSeries) throws IOException {
+    PriceSeries tail = queryApi(tickerName, OUTPUT_SIZE_COMPACT);
+    int lastEpochDay = priceSeries.getEpochDay(priceSeries.size() - 1);
+    if (tail.isEmpty() || tail.getEpochDay(0) > lastEpochDay) {
+      return queryApi(tickerName, OUTPUT_SIZE_FULL);
+    }
 
-  private NavigableMap<String, StockPrice> queryApi(String tickerName) throws IOException {
-    URL url = getUrl(tickerName);
+    ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(PRICE_SCALE);
+    int firstTailEpochDay = tail.getEpochDay(0);
+    for (int i = 0; i < priceSeries.size() && priceSeries.getEpochDay(i) < firstTailEpochDay;
+         i++) {
+      builder.add(priceSeries.getEpochDay(i),
+              BigDecimal.valueOf(priceSeries.getUnscaledPrice(i), priceSeries.getScale()));
+    }
+    for (int i = 0; i < tail.size(); i++) {
+      builder.add(tail.getEpochDay(i),
+              BigDecimal.valueOf(tail.getUnscaledPrice(i), tail.getScale()));
+    }
+    return builder.build();
+  }
 
-    NavigableMap<String, StockPrice> dateToPriceMap = new TreeMap<>();
-    try (BufferedReader reader =
-                 new BufferedReader(
-                         new InputStreamReader(
-                                 url.openStream()))) {
+  private Optional<PriceSeries> readDataFromDisk(String tickerName) throws IOException {
+    Optional<PriceSeries> priceSeries = WRITE_BEHIND_CACHE.read(tickerName);
+    if (priceSeries.isPresent()) {
+      return priceSeries;
+    }
+    return migrateLegacyCsvCache(tickerName);
+  }
 
-      File cacheFile = getCacheFile(tickerName);
-      try (BufferedWriter writer = new BufferedWriter(
-              new OutputStreamWriter(
-                      new FileOutputStream(cacheFile)))) {
+  private Optional<PriceSeries> migrateLegacyCsvCache(String tickerName) throws IOException {
+    Path legacyCacheFilePath =
+            DISK_CACHE.getTickerFolderPath(tickerName).resolve(LEGACY_CACHE_FILE_NAME);
+    if (!Files.exists(legacyCacheFilePath)) {
+      return Optional.empty();
+    }
 
-        String header = reader.readLine();
-        this.isValidResponse(header, reader);
+    PriceSeries priceSeries;
+    try (PriceCsvReader reader = new PriceCsvReader(Files.newInputStream(legacyCacheFilePath))) {
+      String header = reader.readLine();
+      priceSeries = reader.readPrices(CLOSE_PRICE_COLUMN, PRICE_SCALE);
+    }
 
-        writer.write(header);
-        writer.newLine();
+    // written before the legacy file is deleted, as it would be lost otherwise
+    DISK_CACHE.write(tickerName, priceSeries);
+    // another process might have migrated it meanwhile
+    Files.deleteIfExists(legacyCacheFilePath);
+    return DISK_CACHE.read(tickerName);
+  }
 
-        String temp;
-        while (Objects.nonNull((temp = reader.readLine()))) {
-          parseAndUpdateMap(temp, dateToPriceMap);
+  private void addToLruCache(String tickerName, PriceSeries priceSeries) {
+    LRU_CACHE.put(tickerName, priceSeries);
+    TRADING_CALENDAR.addTradingDays(priceSeries);
+  }
 
-          writer.write(temp);
-          writer.newLine();
-        }
-      }
-    } catch (IOException | ParseException e) {
-      throw new RuntimeException(e);
-    }
+  private PriceSeries queryApi(String tickerName, String outputSize) throws IOException {
+    String apiKey = leaseApiKey();
+    URL url = getUrl(tickerName, outputSize, apiKey);
 
-    return dateToPriceMap;
-  }
+    PriceSeries priceSeries;
+    try (PriceCsvReader reader = new PriceCsvReader(new PipelinedInputStream(url.openStream(),
+            DOWNLOAD_EXECUTOR, DOWNLOAD_CHUNK_SIZE_IN_BYTES, MAX_DOWNLOAD_CHUNKS_AHEAD))) {
+      String header = reader.readLine();
+      this.isValidResponse(header, reader, apiKey);
 
-  private File getCacheFile(String tickerName) throws IOException {
-    if (!Files.exists(Paths.get(DISK_CACHE_ROOT_PATH))) {
-      Files.createDirectory(Paths.get(DISK_CACHE_ROOT_PATH));
-    }
-    Path cacheFolderPath = getCacheFolderPath(tickerName);
-    if (!Files.exists(cacheFolderPath)) {
-      Files.createDirectory(cacheFolderPath);
+      priceSeries = reader.readPrices(CLOSE_PRICE_COLUMN, PRICE_SCALE);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
-    return new File(getCacheFilePath(tickerName).toUri());
-  }
 
-  private void parseAndUpdateMap(String temp, Map<String, StockPrice> timestampMap)
-          throws ParseException {
-    String[] split = temp.split(",");
-    String timeStamp = split[0];
-    String closingPrice = split[4];
-    timestampMap.put(timeStamp,
-            new StockPrice(new BigDecimal(closingPrice),
-                    Utils.getDateFromDefaultFormattedDateString(timeStamp)
-            ));
+    return priceSeries;
   }
 
-  private void isValidResponse(String header, BufferedReader reader) throws IOException {
+  private void isValidResponse(String header, PriceCsvReader reader, String apiKey)
+          throws IOException {
     if (header.equalsIgnoreCase("{")) {
       String message = reader.readLine();
       if (message.contains("Note")) {
+        API_KEY_POOL.reportLimitExceeded(apiKey);
         throw new APILimitExceededException(String.format("API Limit exceeded for key" +
                         " %s: %s",
-                this.getApiKey(),
+                apiKey,
                 message));
       }
       if (message.contains("Error")) {
@@ -292,15 +416,26 @@ public class AlphaVantageAPIStockDataSource implements StockDataSource {
     }
   }
 
-  private URL getUrl(String tickerName) throws MalformedURLException {
+  private URL getUrl(String tickerName, String outputSize, String apiKey)
+          throws MalformedURLException {
     return new ApiUrlBuilder()
-            .setApiKey(this.getApiKey())
+            .setBaseUrl(this.baseUrl)
+            .setApiKey(apiKey)
             .setSymbol(tickerName)
+            .setOutputSize(outputSize)
             .build();
   }
 
-  private String getApiKey() {
-    return API_KEYS.get(this.apiKeyIndex++ % API_KEYS.size());
+  private String leaseApiKey() {
+    try {
+      // waiting for a key is bounded only by the deadline of the call, not by a shorter timeout
+      long timeoutNanos = ScheduledRetryer.getRemainingNanosOfCurrentCall()
+              .orElse(TimeUnit.MILLISECONDS.toNanos(RETRY_DEADLINE_MILLIS));
+      return API_KEY_POOL.lease(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
   }
 
   /**
@@ -319,10 +454,63 @@ public class AlphaVantageAPIStockDataSource implements StockDataSource {
     return HOLDER;
   }
 
+  /**
+   * Imports the offline price histories of the given directory into the disk cache of this data
+   * source, as described by {@link PriceHistoryImporter}. The histories must have the columns of
+   * the responses of Alpha Vantage or a "close" column.
+   *
+   * @param directoryPath the directory of the history files
+   * @param parallelism   the number of files imported at the same time
+   * @return the outcome of the import
+   * @throws IOException              if the directory cannot be listed
+   * @throws IllegalArgumentException if the directoryPath is not a directory or if the
+   *                                  parallelism is not positive
+   */
+  public PriceHistoryImporter.ImportSummary importPriceHistories(Path directoryPath,
+                                                                 int parallelism)
+          throws IOException, IllegalArgumentException {
+    return new PriceHistoryImporter(DISK_CACHE, PRICE_SCALE, CLOSE_PRICE_COLUMN, parallelism)
+            .importDirectory(directoryPath);
+  }
+
+  /**
+   * Waits until every series loaded so far is written to the disk cache, as the series are
+   * written in the background once they are returned to the callers.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if every series is written, false if the timeout elapsed
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public boolean awaitDiskCacheWrites(long timeout, TimeUnit unit) throws InterruptedException {
+    return WRITE_BEHIND_CACHE.awaitWrites(timeout, unit);
+  }
 
-  private static class ApiUrlBuilder {
-    private static final String BASE_URL = "https://www.alphavantage.co/query?";
+  /**
+   * Sets the base URL of the API, which defaults to the value of the {@value BASE_URL_PROPERTY}
+   * system property or to the URL of Alpha Vantage if the property is not set. This allows
+   * pointing the data source to a stand-in of the API such as {@link
+   * AlphaVantageStandInServer}.
+   *
+   * @param baseUrl the base URL of the API, ending with the start of the query string
+   * @throws IllegalArgumentException if the given base URL is null
+   */
+  public void setBaseUrl(String baseUrl) throws IllegalArgumentException {
+    this.baseUrl = Utils.requireNonNull(baseUrl);
+  }
+
+  /**
+   * Returns the base URL of the API.
+   *
+   * @return the base URL of the API
+   */
+  public String getBaseUrl() {
+    return this.baseUrl;
+  }
 
+
+  private static class ApiUrlBuilder {
+    private String baseUrl;
     private String symbol;
     private String function;
     private String outputSize;
@@ -330,11 +518,17 @@ public class AlphaVantageAPIStockDataSource implements StockDataSource {
     private String responseType;
 
     public ApiUrlBuilder() {
+      this.baseUrl = DEFAULT_BASE_URL;
       this.function = "TIME_SERIES_DAILY";
-      this.outputSize = "full";
+      this.outputSize = OUTPUT_SIZE_FULL;
       this.responseType = "csv";
     }
 
+    public ApiUrlBuilder setBaseUrl(String baseUrl) {
+      this.baseUrl = baseUrl;
+      return this;
+    }
+
     public ApiUrlBuilder setSymbol(String symbol) {
       this.symbol = symbol;
       return this;
@@ -363,7 +557,7 @@ public class AlphaVantageAPIStockDataSource implements StockDataSource {
     public URL build() throws MalformedURLException {
       return new URL(String
               .format("%sfunction=%s&outputsize=%s&symbol=%s&apikey=%s&datatype=%s",
-                      BASE_URL,
+                      this.baseUrl,
                       this.function,
                       this.outputSize,
                       this.symbol,
@@ -0,0 +1,408 @@
+package virtualgambling.model.stockdatasource;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AlphaVantageStandInServer} is a local HTTP server that stands in for the
+ * <code>TIME_SERIES_DAILY</code> CSV endpoint of Alpha Vantage, so that the network path of
+ * {@link AlphaVantageAPIStockDataSource} can be measured and stress tested offline.
+ *
+ * <p>It serves a synthetic price history for any symbol. The history of a symbol is derived from
+ * the symbol alone, hence it is the same for every request. Every response can be delayed by a
+ * fixed latency, and a response can be replaced by the "Note" response that Alpha Vantage sends
+ * when the limit of a key is exceeded or by its "Error Message" response.
+ *
+ * <p>The server can be run on its own, e.g. <code>java
+ * virtualgambling.model.stockdatasource.AlphaVantageStandInServer 8080 200 5 0.1 0.05</code>, and
+ * the data source pointed to it with
+ * <code>-Dalphavantage.baseUrl=http://localhost:8080/query?</code>.
+ */
+public class AlphaVantageStandInServer {
+  private static final String PATH = "/query";
+  private static final String CSV_HEADER = "timestamp,open,high,low,close,volume";
+  private static final String NOTE_RESPONSE = "{\n    \"Note\": \"Thank you for using Alpha " +
+          "Vantage! Our standard API call frequency is 5 calls per minute and 500 calls per " +
+          "day.\"\n}";
+  private static final String ERROR_RESPONSE = "{\n    \"Error Message\": \"Invalid API call. " +
+          "Please retry or visit the documentation for TIME_SERIES_DAILY.\"\n}";
+  private static final int COMPACT_SIZE = 100;
+  private static final int PRICE_SCALE = 4;
+  private static final LocalDate HISTORY_START_DAY = LocalDate.of(1990, 1, 1);
+
+  private final HttpServer httpServer;
+  private final ExecutorService executorService;
+  private final long latencyMillis;
+  private final int requestsPerMinutePerKey;
+  private final double noteProbability;
+  private final double errorProbability;
+  private final int historyInDays;
+  private final Map<String, AtomicInteger> requestsOfKeyInCurrentMinute = new ConcurrentHashMap<>();
+  private final AtomicLong currentMinute = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong noteCount = new AtomicLong();
+  private final AtomicLong errorCount = new AtomicLong();
+
+  private AlphaVantageStandInServer(Builder builder) throws IOException {
+    this.latencyMillis = builder.latencyMillis;
+    this.requestsPerMinutePerKey = builder.requestsPerMinutePerKey;
+    this.noteProbability = builder.noteProbability;
+    this.errorProbability = builder.errorProbability;
+    this.historyInDays = builder.historyInDays;
+
+    this.httpServer = HttpServer.create(new InetSocketAddress("localhost", builder.port), 0);
+    this.executorService = Executors.newFixedThreadPool(builder.numThreads, runnable -> {
+      Thread thread = new Thread(runnable, "alpha-vantage-stand-in");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.httpServer.setExecutor(executorService);
+    this.httpServer.createContext(PATH, this::handle);
+  }
+
+  /**
+   * Starts serving requests.
+   */
+  public void start() {
+    httpServer.start();
+  }
+
+  /**
+   * Stops serving requests and releases the port.
+   */
+  public void stop() {
+    httpServer.stop(0);
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Returns the base URL of this server, to be passed to {@link
+   * AlphaVantageAPIStockDataSource#setBaseUrl(String)}.
+   *
+   * @return the base URL of this server
+   */
+  public String getBaseUrl() {
+    return String.format("http://localhost:%d%s?", httpServer.getAddress().getPort(), PATH);
+  }
+
+  /**
+   * Returns the number of requests that were served.
+   *
+   * @return the number of requests that were served
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Returns the number of requests that were answered with the "Note" response.
+   *
+   * @return the number of requests that were answered with the "Note" response
+   */
+  public long getNoteCount() {
+    return noteCount.get();
+  }
+
+  /**
+   * Returns the number of requests that were answered with the "Error Message" response.
+   *
+   * @return the number of requests that were answered with the "Error Message" response
+   */
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      requestCount.incrementAndGet();
+      Map<String, String> params = getQueryParams(exchange.getRequestURI().getRawQuery());
+      if (latencyMillis > 0) {
+        TimeUnit.MILLISECONDS.sleep(latencyMillis);
+      }
+
+      String response;
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      if (isLimitExceeded(params.get("apikey")) || random.nextDouble() < noteProbability) {
+        noteCount.incrementAndGet();
+        response = NOTE_RESPONSE;
+      } else if (Objects.isNull(params.get("symbol")) || random.nextDouble() < errorProbability) {
+        errorCount.incrementAndGet();
+        response = ERROR_RESPONSE;
+      } else {
+        response = getCsv(params.get("symbol"), "compact".equals(params.get("outputsize")));
+      }
+
+      byte[] body = response.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/csv");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(body);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private boolean isLimitExceeded(String apiKey) {
+    if (requestsPerMinutePerKey <= 0) {
+      return false;
+    }
+    long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    long previousMinute = currentMinute.getAndSet(minute);
+    if (previousMinute != minute) {
+      requestsOfKeyInCurrentMinute.clear();
+    }
+    return requestsOfKeyInCurrentMinute
+            .computeIfAbsent(String.valueOf(apiKey), key -> new AtomicInteger())
+            .incrementAndGet() > requestsPerMinutePerKey;
+  }
+
+  private String getCsv(String symbol, boolean isCompact) {
+    LocalDate today = LocalDate.now();
+    LocalDate firstDay = today.minusDays(historyInDays);
+    LocalDate startDay = firstDay.isBefore(HISTORY_START_DAY) ? firstDay : HISTORY_START_DAY;
+    Random random = new Random(symbol.hashCode());
+    long unscaledPrice = (10 + random.nextInt(490)) * 10000L;
+
+    // the prices are generated from a fixed day, so that a symbol has the same history on any day
+    // and for any output size, and written from the latest day as Alpha Vantage does
+    List<String> rows = new ArrayList<>();
+    for (LocalDate day = startDay; !day.isAfter(today); day = day.plusDays(1)) {
+      long openPrice = unscaledPrice;
+      unscaledPrice = Math.max(10000L,
+              unscaledPrice + Math.round(unscaledPrice * random.nextGaussian() * 0.02));
+      int volume = 1000000 + random.nextInt(9000000);
+      if (day.isBefore(firstDay)
+              || day.getDayOfWeek() == DayOfWeek.SATURDAY
+              || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+        continue;
+      }
+      rows.add(String.format("%s,%s,%s,%s,%s,%d", day,
+              toPrice(openPrice),
+              toPrice(Math.max(openPrice, unscaledPrice)),
+              toPrice(Math.min(openPrice, unscaledPrice)),
+              toPrice(unscaledPrice),
+              volume));
+    }
+
+    int numRowsToWrite = isCompact ? Math.min(COMPACT_SIZE, rows.size()) : rows.size();
+    StringBuilder csv = new StringBuilder(CSV_HEADER).append("\r\n");
+    for (int i = rows.size() - 1; i >= rows.size() - numRowsToWrite; i--) {
+      csv.append(rows.get(i)).append("\r\n");
+    }
+    return csv.toString();
+  }
+
+  private static String toPrice(long unscaledPrice) {
+    return BigDecimal.valueOf(unscaledPrice, PRICE_SCALE).toPlainString();
+  }
+
+  private static Map<String, String> getQueryParams(String rawQuery) throws IOException {
+    Map<String, String> params = new HashMap<>();
+    if (Objects.isNull(rawQuery)) {
+      return params;
+    }
+    for (String param : rawQuery.split("&")) {
+      int separatorIndex = param.indexOf('=');
+      if (separatorIndex > 0) {
+        params.put(URLDecoder.decode(param.substring(0, separatorIndex), "UTF-8"),
+                URLDecoder.decode(param.substring(separatorIndex + 1), "UTF-8"));
+      }
+    }
+    return params;
+  }
+
+  /**
+   * Runs the stand-in server until the process is killed.
+   *
+   * @param args the port, the latency in milliseconds, the requests per minute per key (0 for no
+   *             limit), the probability of a "Note" response and the probability of an "Error
+   *             Message" response, every one of them optional
+   * @throws IOException if the server cannot be started
+   */
+  public static void main(String[] args) throws IOException {
+    Builder builder = new Builder();
+    try {
+      if (args.length > 0) {
+        builder.setPort(Integer.parseInt(args[0]));
+      }
+      if (args.length > 1) {
+        builder.setLatencyMillis(Long.parseLong(args[1]));
+      }
+      if (args.length > 2) {
+        builder.setRequestsPerMinutePerKey(Integer.parseInt(args[2]));
+      }
+      if (args.length > 3) {
+        builder.setNoteProbability(Double.parseDouble(args[3]));
+      }
+      if (args.length > 4) {
+        builder.setErrorProbability(Double.parseDouble(args[4]));
+      }
+    } catch (IllegalArgumentException e) {
+      System.out.println("Invalid options, correct usage is [port] [latencyMillis] " +
+              "[requestsPerMinutePerKey] [noteProbability] [errorProbability]");
+      return;
+    }
+
+    AlphaVantageStandInServer server = builder.build();
+    server.start();
+    System.out.println(String.format("Serving Alpha Vantage stand-in at %s",
+            server.getBaseUrl()));
+  }
+
+  /**
+   * A builder that builds an {@link AlphaVantageStandInServer}.
+   */
+  public static class Builder {
+    private int port;
+    private int numThreads;
+    private long latencyMillis;
+    private int requestsPerMinutePerKey;
+    private double noteProbability;
+    private double errorProbability;
+    private int historyInDays;
+
+    /**
+     * Sets up the builder with default values, i.e. a free port, no latency, no rate limit, no
+     * injected responses and twenty years of history.
+     */
+    public Builder() {
+      this.port = 0;
+      this.numThreads = 16;
+      this.latencyMillis = 0;
+      this.requestsPerMinutePerKey = 0;
+      this.noteProbability = 0;
+      this.errorProbability = 0;
+      this.historyInDays = 20 * 365;
+    }
+
+    /**
+     * Sets the port of the server, 0 picks a free port.
+     *
+     * @param port the port
+     * @return builder with the port set
+     */
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Sets the number of requests that are served concurrently.
+     *
+     * @param numThreads the number of requests that are served concurrently
+     * @return builder with the number of threads set
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public Builder setNumThreads(int numThreads) throws IllegalArgumentException {
+      if (numThreads <= 0) {
+        throw new IllegalArgumentException("Number of threads has to be positive");
+      }
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    /**
+     * Sets the time every response is delayed by.
+     *
+     * @param latencyMillis the latency in milliseconds
+     * @return builder with the latency set
+     */
+    public Builder setLatencyMillis(long latencyMillis) {
+      this.latencyMillis = latencyMillis;
+      return this;
+    }
+
+    /**
+     * Sets the number of requests a key is answered per minute before it gets the "Note"
+     * response, 0 for no limit.
+     *
+     * @param requestsPerMinutePerKey the number of requests per minute per key
+     * @return builder with the limit set
+     */
+    public Builder setRequestsPerMinutePerKey(int requestsPerMinutePerKey) {
+      this.requestsPerMinutePerKey = requestsPerMinutePerKey;
+      return this;
+    }
+
+    /**
+     * Sets the probability of answering a request with the "Note" response.
+     *
+     * @param noteProbability the probability between 0 and 1
+     * @return builder with the probability set
+     * @throws IllegalArgumentException if the probability is not between 0 and 1
+     */
+    public Builder setNoteProbability(double noteProbability) throws IllegalArgumentException {
+      this.noteProbability = requireProbability(noteProbability);
+      return this;
+    }
+
+    /**
+     * Sets the probability of answering a request with the "Error Message" response.
+     *
+     * @param errorProbability the probability between 0 and 1
+     * @return builder with the probability set
+     * @throws IllegalArgumentException if the probability is not between 0 and 1
+     */
+    public Builder setErrorProbability(double errorProbability) throws IllegalArgumentException {
+      this.errorProbability = requireProbability(errorProbability);
+      return this;
+    }
+
+    /**
+     * Sets the number of days of history that is served for a symbol.
+     *
+     * @param historyInDays the number of days of history
+     * @return builder with the history set
+     * @throws IllegalArgumentException if the number of days is negative
+     */
+    public Builder setHistoryInDays(int historyInDays) throws IllegalArgumentException {
+      if (historyInDays < 0) {
+        throw new IllegalArgumentException("History cannot be negative");
+      }
+      this.historyInDays = historyInDays;
+      return this;
+    }
+
+    /**
+     * Creates the server, it starts serving requests once it is started.
+     *
+     * @return the server
+     * @throws IOException if the server cannot be bound to the port
+     */
+    public AlphaVantageStandInServer build() throws IOException {
+      return new AlphaVantageStandInServer(this);
+    }
+
+    private static double requireProbability(double probability) {
+      if (probability < 0 || probability > 1) {
+        throw new IllegalArgumentException("Probability has to be between 0 and 1");
+      }
+      return probability;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import util.TokenBucket;
+import util.Utils;
+import virtualgambling.model.exceptions.ApiKeyLeaseTimeoutException;
+
+/**
+ * {@link ApiKeyPool} hands out API keys while respecting the per minute and the per day quota of
+ * every key. Each key has a {@link TokenBucket} per quota, and leasing a key consumes a permit of
+ * both its buckets.
+ *
+ * <p>If no key has a permit available, the caller waits until the earliest key gets one. The
+ * waiting callers are served roughly in the order of their arrival. Waiting is the normal way a
+ * burst of calls is spread over the quota, hence a caller that gives up waiting gets an {@link
+ * ApiKeyLeaseTimeoutException} rather than a limit failure.
+ *
+ * <p>This class is thread-safe.
+ */
+public class ApiKeyPool {
+  private final List<ApiKey> apiKeys;
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final Condition permitAvailable = lock.newCondition();
+
+  /**
+   * Constructs an {@link ApiKeyPool} of the given keys.
+   *
+   * @param apiKeys           the API keys
+   * @param requestsPerMinute the number of requests a key permits per minute
+   * @param requestsPerDay    the number of requests a key permits per day
+   * @throws IllegalArgumentException if the keys are null or empty or the quotas are not positive
+   */
+  public ApiKeyPool(List<String> apiKeys, long requestsPerMinute, long requestsPerDay)
+          throws IllegalArgumentException {
+    if (Utils.requireNonNull(apiKeys).isEmpty()) {
+      throw new IllegalArgumentException("API keys cannot be empty");
+    }
+    this.apiKeys = new ArrayList<>();
+    for (String apiKey : apiKeys) {
+      this.apiKeys.add(new ApiKey(Utils.requireNonNull(apiKey),
+              new TokenBucket(requestsPerMinute, 1, TimeUnit.MINUTES),
+              new TokenBucket(requestsPerDay, 1, TimeUnit.DAYS)));
+    }
+  }
+
+  /**
+   * Leases the key that has the most permits available for the next request, waiting for at most
+   * the given time if no key has a permit available, such as the time left until the deadline of
+   * the caller.
+   *
+   * @param timeout  the maximum time to wait
+   * @param timeUnit the unit of the timeout
+   * @return the leased API key
+   * @throws ApiKeyLeaseTimeoutException if no key gets a permit within the given time
+   * @throws InterruptedException        if the current thread is interrupted while waiting
+   */
+  public String lease(long timeout, TimeUnit timeUnit) throws ApiKeyLeaseTimeoutException,
+          InterruptedException {
+    long remainingNanos = timeUnit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        ApiKey apiKey = getApiKeyWithMostPermits();
+        if (Objects.nonNull(apiKey)) {
+          apiKey.perMinute.tryAcquire();
+          apiKey.perDay.tryAcquire();
+          return apiKey.key;
+        }
+
+        long nanosUntilAvailable = getNanosUntilAvailable();
+        if (nanosUntilAvailable > remainingNanos) {
+          throw new ApiKeyLeaseTimeoutException("No API key is available within the deadline");
+        }
+        // permits refill over time, hence the waiting callers wake up once a permit is due
+        remainingNanos -= nanosUntilAvailable - permitAvailable.awaitNanos(nanosUntilAvailable);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reports that the API rejected a request made with the given key because of its limit, hence
+   * the key is not leased until its per minute bucket refills.
+   *
+   * @param apiKey the API key
+   */
+  public void reportLimitExceeded(String apiKey) {
+    for (ApiKey key : apiKeys) {
+      if (key.key.equals(apiKey)) {
+        key.perMinute.drain();
+      }
+    }
+  }
+
+  private ApiKey getApiKeyWithMostPermits() {
+    ApiKey apiKeyWithMostPermits = null;
+    long mostPermits = 0;
+    for (ApiKey apiKey : apiKeys) {
+      long permits = Math.min(apiKey.perMinute.getAvailablePermits(),
+              apiKey.perDay.getAvailablePermits());
+      if (permits > mostPermits) {
+        apiKeyWithMostPermits = apiKey;
+        mostPermits = permits;
+      }
+    }
+    return apiKeyWithMostPermits;
+  }
+
+  private long getNanosUntilAvailable() {
+    long nanosUntilAvailable = Long.MAX_VALUE;
+    for (ApiKey apiKey : apiKeys) {
+      nanosUntilAvailable = Math.min(nanosUntilAvailable,
+              Math.max(apiKey.perMinute.getNanosUntilAvailable(),
+                      apiKey.perDay.getNanosUntilAvailable()));
+    }
+    return nanosUntilAvailable;
+  }
+
+  private static class ApiKey {
+    private final String key;
+    private final TokenBucket perMinute;
+    private final TokenBucket perDay;
+
+    private ApiKey(String key, TokenBucket perMinute, TokenBucket perDay) {
+      this.key = key;
+      this.perMinute = perMinute;
+      this.perDay = perDay;
+    }
+  }
+}
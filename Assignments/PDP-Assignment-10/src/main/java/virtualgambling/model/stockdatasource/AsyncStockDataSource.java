@@ -0,0 +1,40 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import virtualgambling.model.bean.PriceSeries;
+import virtualgambling.model.bean.StockPrice;
+import virtualgambling.model.exceptions.StockDataNotFoundException;
+
+/**
+ * <code>AsyncStockDataSource</code> represents a data source for retrieving financial stock market
+ * related information without blocking the calling thread.
+ *
+ * <p>Every method returns a future that is completed with the result once it is available, or
+ * completed exceptionally with the exception that the equivalent {@link StockDataSource} method
+ * would have thrown.
+ */
+public interface AsyncStockDataSource {
+  /**
+   * Retrieves the stock price information for a given stock ticker and date.
+   *
+   * @param tickerName the ticker name of the stock
+   * @param date       the date when the stock needs to be purchased
+   * @return a future of the price of the stock that matches the given ticker and date, completed
+   *         exceptionally with {@link StockDataNotFoundException} if the price is not found
+   */
+  CompletableFuture<StockPrice> getPriceAsync(String tickerName, Date date);
+
+  /**
+   * Retrieves the stock prices of a given stock ticker for every trading day between the given
+   * dates (both inclusive).
+   *
+   * @param tickerName the ticker name of the stock
+   * @param fromDate   the first date of the range
+   * @param toDate     the last date of the range
+   * @return a future of the prices of the stock between the given dates, completed exceptionally
+   *         with {@link StockDataNotFoundException} if the stock data for the ticker is not found
+   */
+  CompletableFuture<PriceSeries> getPricesAsync(String tickerName, Date fromDate, Date toDate);
+}
@@ -0,0 +1,45 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+import virtualgambling.model.bean.StockPrice;
+
+/**
+ * {@link AsyncStockDataSourceAdapter} adapts any {@link StockDataSource} to an {@link
+ * AsyncStockDataSource} by running every call of the underlying data source on the given {@link
+ * Executor}.
+ */
+public class AsyncStockDataSourceAdapter implements AsyncStockDataSource {
+  private final StockDataSource stockDataSource;
+  private final Executor executor;
+
+  /**
+   * Constructs an {@link AsyncStockDataSourceAdapter} over the given data source.
+   *
+   * @param stockDataSource the data source to adapt
+   * @param executor        the executor that runs the calls of the data source
+   * @throws IllegalArgumentException if any of the given params are null
+   */
+  public AsyncStockDataSourceAdapter(StockDataSource stockDataSource, Executor executor)
+          throws IllegalArgumentException {
+    this.stockDataSource = Utils.requireNonNull(stockDataSource);
+    this.executor = Utils.requireNonNull(executor);
+  }
+
+  @Override
+  public CompletableFuture<StockPrice> getPriceAsync(String tickerName, Date date) {
+    return CompletableFuture.supplyAsync(() -> stockDataSource.getPrice(tickerName, date),
+            executor);
+  }
+
+  @Override
+  public CompletableFuture<PriceSeries> getPricesAsync(String tickerName, Date fromDate,
+                                                       Date toDate) {
+    return CompletableFuture.supplyAsync(
+            () -> stockDataSource.getPrices(tickerName, fromDate, toDate), executor);
+  }
+}
@@ -0,0 +1,99 @@
+package virtualgambling.model.stockdatasource;
+
+import util.Utils;
+import virtualgambling.model.bean.ArrayPriceSeries;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link CachedPriceSeries} is a {@link PriceSeries} held by a {@link PriceCacheTier} together with
+ * the range of days that it covers. Every day of the covered range that is missing from the series
+ * is a day without a price, such as a weekend or a holiday, hence a lookup within the covered range
+ * never has to go to the data source.
+ */
+public class CachedPriceSeries {
+  private final PriceSeries priceSeries;
+  private final int fromEpochDay;
+  private final int toEpochDay;
+
+  /**
+   * Constructs a {@link CachedPriceSeries} for the given series and covered range.
+   *
+   * @param priceSeries  the price series
+   * @param fromEpochDay the first covered day as a number of days since the epoch
+   * @param toEpochDay   the last covered day as a number of days since the epoch
+   * @throws IllegalArgumentException if the priceSeries is null
+   */
+  public CachedPriceSeries(PriceSeries priceSeries, int fromEpochDay, int toEpochDay)
+          throws IllegalArgumentException {
+    this.priceSeries = Utils.requireNonNull(priceSeries);
+    this.fromEpochDay = fromEpochDay;
+    this.toEpochDay = toEpochDay;
+  }
+
+  /**
+   * Returns the price series.
+   *
+   * @return the price series
+   */
+  public PriceSeries getPriceSeries() {
+    return priceSeries;
+  }
+
+  /**
+   * Returns the first covered day as a number of days since the epoch.
+   *
+   * @return the first covered day
+   */
+  public int getFromEpochDay() {
+    return fromEpochDay;
+  }
+
+  /**
+   * Returns the last covered day as a number of days since the epoch.
+   *
+   * @return the last covered day
+   */
+  public int getToEpochDay() {
+    return toEpochDay;
+  }
+
+  /**
+   * Returns true if every day between the given days (both inclusive) is covered.
+   *
+   * @param fromEpochDay the first day of the range
+   * @param toEpochDay   the last day of the range
+   * @return true if the given range is covered, false otherwise
+   */
+  public boolean covers(int fromEpochDay, int toEpochDay) {
+    return this.fromEpochDay <= fromEpochDay && toEpochDay <= this.toEpochDay;
+  }
+
+  /**
+   * Returns the union of this series and the given newer series if their covered ranges overlap
+   * or are adjacent, the prices of the newer series winning for the days that both cover.
+   * Otherwise the newer series is returned as it is.
+   *
+   * @param newer the newer series
+   * @return the union of the two series, or the newer series if they cannot be joined
+   */
+  public CachedPriceSeries merge(CachedPriceSeries newer) {
+    if (newer.fromEpochDay > (long) this.toEpochDay + 1
+            || (long) newer.toEpochDay + 1 < this.fromEpochDay
+            || newer.priceSeries.getScale() != this.priceSeries.getScale()) {
+      return newer;
+    }
+
+    ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(priceSeries.getScale());
+    for (int i = 0; i < priceSeries.size(); i++) {
+      int epochDay = priceSeries.getEpochDay(i);
+      if (epochDay < newer.fromEpochDay || epochDay > newer.toEpochDay) {
+        builder.add(epochDay, priceSeries.getUnscaledPrice(i));
+      }
+    }
+    for (int i = 0; i < newer.priceSeries.size(); i++) {
+      builder.add(newer.priceSeries.getEpochDay(i), newer.priceSeries.getUnscaledPrice(i));
+    }
+    return new CachedPriceSeries(builder.build(), Math.min(this.fromEpochDay, newer.fromEpochDay),
+            Math.max(this.toEpochDay, newer.toEpochDay));
+  }
+}
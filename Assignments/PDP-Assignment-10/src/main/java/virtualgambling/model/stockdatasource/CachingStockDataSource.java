@@ -0,0 +1,285 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import util.ConcurrentLRUCache;
+import util.SingleFlight;
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+import virtualgambling.model.bean.StockPrice;
+import virtualgambling.model.exceptions.StockDataNotFoundException;
+
+/**
+ * {@link CachingStockDataSource} is a {@link StockDataSource} that decorates any other data source
+ * with caches, hence every data source gets the same latency once its prices are cached.
+ *
+ * <p>The prices are cached in the following tiers, each of which is optional:
+ * <ul>
+ * <li>a memo of the single day lookups of this instance, looked up first as it is the fastest</li>
+ * <li>any number of {@link PriceCacheTier}s that hold the series of every ticker, such as a
+ * {@link MemoryPriceCacheTier} shared by every instance and a {@link DiskPriceCacheTier}, looked
+ * up in the order they were added</li>
+ * </ul>
+ *
+ * <p>A series that is fetched for a range of days is written to every tier, merged with the series
+ * that is already cached if their ranges overlap. A series found in a later tier is copied to the
+ * earlier ones. The prices of a day are served from a cached series only if the series covers the
+ * day and has a price for it, any other single day lookup is answered by the decorated data source,
+ * so that its rules for the days without prices are kept. The prices of today are never cached, as
+ * they might still change during the day.
+ *
+ * <p>The decorated data source must return the same prices for a day from {@link
+ * StockDataSource#getPrice(String, Date)} and {@link StockDataSource#getPrices(String, Date,
+ * Date)}.
+ *
+ * <p>This class is thread-safe.
+ */
+public class CachingStockDataSource implements StockDataSource {
+  private static final int MEMO_CONCURRENCY_LEVEL = 16;
+
+  private final StockDataSource stockDataSource;
+  private final ConcurrentLRUCache<String, MemoizedPrices> memo;
+  // a ticker fits in its share of the memo, which is split by the concurrency level
+  private final int maxMemoizedDaysPerTicker;
+  private final List<PriceCacheTier> priceCacheTiers;
+  private final SingleFlight<String, CachedPriceSeries> inFlightLoads = new SingleFlight<>();
+
+  private CachingStockDataSource(StockDataSource stockDataSource, long memoSize,
+                                 List<PriceCacheTier> priceCacheTiers) {
+    this.stockDataSource = stockDataSource;
+    this.memo = memoSize > 0
+            ? new ConcurrentLRUCache<>(memoSize, memoizedPrices -> memoizedPrices.size(),
+            MEMO_CONCURRENCY_LEVEL)
+            : null;
+    this.maxMemoizedDaysPerTicker = (int) Math.min(Integer.MAX_VALUE,
+            Math.max(1, memoSize / MEMO_CONCURRENCY_LEVEL));
+    this.priceCacheTiers = Collections.unmodifiableList(new ArrayList<>(priceCacheTiers));
+  }
+
+  @Override
+  public StockPrice getPrice(String tickerName, Date date) throws StockDataNotFoundException {
+    Utils.requireNonNull(tickerName);
+    int epochDay = Utils.toEpochDay(Utils.requireNonNull(date));
+
+    MemoizedPrices memoizedPrices = Objects.nonNull(memo) ? memo.get(tickerName) : null;
+    if (Objects.nonNull(memoizedPrices)) {
+      StockPrice stockPrice = memoizedPrices.get(epochDay);
+      if (Objects.nonNull(stockPrice)) {
+        return stockPrice;
+      }
+    }
+
+    Optional<CachedPriceSeries> cachedPriceSeries = getFromTiers(tickerName);
+    if (cachedPriceSeries.isPresent() && cachedPriceSeries.get().covers(epochDay, epochDay)) {
+      PriceSeries priceSeries = cachedPriceSeries.get().getPriceSeries();
+      int index = priceSeries.binarySearch(epochDay);
+      if (index >= 0) {
+        return priceSeries.getStockPrice(index);
+      }
+    }
+
+    StockPrice stockPrice = stockDataSource.getPrice(tickerName, date);
+    if (Objects.nonNull(memo) && epochDay < Utils.getTodayEpochDay()) {
+      // a day memoized by a concurrent lookup of the same ticker might be lost, which only costs
+      // a lookup of the decorated data source
+      memo.put(tickerName, Objects.nonNull(memoizedPrices)
+              ? memoizedPrices.with(epochDay, stockPrice, maxMemoizedDaysPerTicker)
+              : new MemoizedPrices(new int[]{epochDay}, new StockPrice[]{stockPrice}));
+    }
+    return stockPrice;
+  }
+
+  @Override
+  public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+          throws StockDataNotFoundException, IllegalArgumentException {
+    Utils.requireNonNull(tickerName);
+    int fromEpochDay = Utils.toEpochDay(Utils.requireNonNull(fromDate));
+    int toEpochDay = Utils.toEpochDay(Utils.requireNonNull(toDate));
+    if (fromEpochDay > toEpochDay) {
+      throw new IllegalArgumentException("From date cannot be after the to date");
+    }
+
+    while (true) {
+      Optional<CachedPriceSeries> cachedPriceSeries = getFromTiers(tickerName);
+      if (cachedPriceSeries.isPresent() && cachedPriceSeries.get().covers(fromEpochDay,
+              toEpochDay)) {
+        return cachedPriceSeries.get().getPriceSeries().subSeries(fromEpochDay, toEpochDay);
+      }
+
+      // the loads of a ticker are serialized, hence they never merge and put over each other; a
+      // lookup that joins the load of another range takes its prices only if they cover its own
+      // range, and looks up the tiers again otherwise
+      CachedPriceSeries fetched = inFlightLoads.execute(tickerName,
+              () -> load(tickerName, fromDate, toDate));
+      if (fetched.covers(fromEpochDay, toEpochDay)) {
+        return fetched.getPriceSeries().subSeries(fromEpochDay, toEpochDay);
+      }
+    }
+  }
+
+  /**
+   * Returns the calendar of the decorated data source.
+   *
+   * @return the trading calendar of the decorated data source
+   */
+  @Override
+  public TradingCalendar getTradingCalendar() {
+    return stockDataSource.getTradingCalendar();
+  }
+
+  /**
+   * Loads the prices of the given range unless a previous load of the ticker has cached them, and
+   * returns them with the fetched range, which might include today unlike the cached range.
+   */
+  private CachedPriceSeries load(String tickerName, Date fromDate, Date toDate) {
+    int fromEpochDay = Utils.toEpochDay(fromDate);
+    int toEpochDay = Utils.toEpochDay(toDate);
+    Optional<CachedPriceSeries> cachedPriceSeries = getFromTiers(tickerName);
+    if (cachedPriceSeries.isPresent() && cachedPriceSeries.get().covers(fromEpochDay,
+            toEpochDay)) {
+      return cachedPriceSeries.get();
+    }
+    PriceSeries priceSeries = stockDataSource.getPrices(tickerName, fromDate, toDate);
+
+    // the prices of today might still change, hence today is not covered
+    int lastCoveredEpochDay = Math.min(toEpochDay, Utils.getTodayEpochDay() - 1);
+    if (lastCoveredEpochDay >= fromEpochDay) {
+      CachedPriceSeries loaded = new CachedPriceSeries(priceSeries, fromEpochDay,
+              lastCoveredEpochDay);
+      if (cachedPriceSeries.isPresent()) {
+        loaded = cachedPriceSeries.get().merge(loaded);
+      }
+      for (PriceCacheTier priceCacheTier : priceCacheTiers) {
+        priceCacheTier.put(tickerName, loaded);
+      }
+    }
+    return new CachedPriceSeries(priceSeries, fromEpochDay, toEpochDay);
+  }
+
+  private Optional<CachedPriceSeries> getFromTiers(String tickerName) {
+    for (int i = 0; i < priceCacheTiers.size(); i++) {
+      Optional<CachedPriceSeries> cachedPriceSeries = priceCacheTiers.get(i).get(tickerName);
+      if (cachedPriceSeries.isPresent()) {
+        for (int j = 0; j < i; j++) {
+          priceCacheTiers.get(j).put(tickerName, cachedPriceSeries.get());
+        }
+        return cachedPriceSeries;
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * The memoized prices of a ticker, sorted by day. A price is added by copying the arrays, hence
+   * a lookup reads them without locking and without creating any key object. Once a ticker has
+   * its maximum number of days, the day farthest from the added one is dropped, as lookups tend to
+   * be close in time.
+   */
+  private static final class MemoizedPrices {
+    private final int[] epochDays;
+    private final StockPrice[] stockPrices;
+
+    private MemoizedPrices(int[] epochDays, StockPrice[] stockPrices) {
+      this.epochDays = epochDays;
+      this.stockPrices = stockPrices;
+    }
+
+    private int size() {
+      return epochDays.length;
+    }
+
+    private StockPrice get(int epochDay) {
+      int index = Arrays.binarySearch(epochDays, epochDay);
+      return index >= 0 ? stockPrices[index] : null;
+    }
+
+    private MemoizedPrices with(int epochDay, StockPrice stockPrice, int maxSize) {
+      int index = Arrays.binarySearch(epochDays, epochDay);
+      if (index >= 0) {
+        return this;
+      }
+      int insertionIndex = -index - 1;
+      int[] newEpochDays = new int[epochDays.length + 1];
+      StockPrice[] newStockPrices = new StockPrice[stockPrices.length + 1];
+      System.arraycopy(epochDays, 0, newEpochDays, 0, insertionIndex);
+      System.arraycopy(stockPrices, 0, newStockPrices, 0, insertionIndex);
+      newEpochDays[insertionIndex] = epochDay;
+      newStockPrices[insertionIndex] = stockPrice;
+      System.arraycopy(epochDays, insertionIndex, newEpochDays, insertionIndex + 1,
+              epochDays.length - insertionIndex);
+      System.arraycopy(stockPrices, insertionIndex, newStockPrices, insertionIndex + 1,
+              stockPrices.length - insertionIndex);
+      if (newEpochDays.length <= maxSize) {
+        return new MemoizedPrices(newEpochDays, newStockPrices);
+      }
+
+      int last = newEpochDays.length - 1;
+      int from = epochDay - newEpochDays[0] >= newEpochDays[last] - epochDay ? 1 : 0;
+      return new MemoizedPrices(Arrays.copyOfRange(newEpochDays, from, from + last),
+              Arrays.copyOfRange(newStockPrices, from, from + last));
+    }
+  }
+
+  /**
+   * A builder of {@link CachingStockDataSource}. By default it has no memo and no tiers.
+   */
+  public static class Builder {
+    private final StockDataSource stockDataSource;
+    private final List<PriceCacheTier> priceCacheTiers = new ArrayList<>();
+    private long memoSize;
+
+    /**
+     * Constructs a builder of a {@link CachingStockDataSource} that decorates the given data
+     * source.
+     *
+     * @param stockDataSource the data source to decorate
+     * @throws IllegalArgumentException if the stockDataSource is null
+     */
+    public Builder(StockDataSource stockDataSource) throws IllegalArgumentException {
+      this.stockDataSource = Utils.requireNonNull(stockDataSource);
+    }
+
+    /**
+     * Sets the maximum number of single day lookups that are memoized, zero disables the memo.
+     * The lookups of a ticker are evicted together.
+     *
+     * @param memoSize the maximum number of memoized lookups
+     * @return this builder
+     * @throws IllegalArgumentException if the memoSize is negative
+     */
+    public Builder setMemoSize(long memoSize) throws IllegalArgumentException {
+      if (memoSize < 0) {
+        throw new IllegalArgumentException("Memo size cannot be negative");
+      }
+      this.memoSize = memoSize;
+      return this;
+    }
+
+    /**
+     * Adds a tier after the tiers that were added so far.
+     *
+     * @param priceCacheTier the tier to add
+     * @return this builder
+     * @throws IllegalArgumentException if the priceCacheTier is null
+     */
+    public Builder addTier(PriceCacheTier priceCacheTier) throws IllegalArgumentException {
+      this.priceCacheTiers.add(Utils.requireNonNull(priceCacheTier));
+      return this;
+    }
+
+    /**
+     * Builds the {@link CachingStockDataSource}.
+     *
+     * @return the {@link CachingStockDataSource}
+     */
+    public CachingStockDataSource build() {
+      return new CachingStockDataSource(stockDataSource, memoSize, priceCacheTiers);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import virtualgambling.model.bean.ArrayPriceSeries;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link DeltaPriceSeriesCodec} encodes the entries of a {@link PriceSeries} compactly, as
+ * consecutive days and prices are close to each other.
+ *
+ * <p>The encoding has the following layout:
+ * <ul>
+ * <li>a byte holding the number of trailing decimal zeros shared by every price, which are
+ * removed from the prices</li>
+ * <li>for every entry, the difference of its epoch day and of its price from the previous entry
+ * (from zero for the first entry), each as a zig-zag encoded variable length integer of seven bits
+ * a byte, the lowest bits first</li>
+ * </ul>
+ *
+ * <p>An entry of a daily series takes about three bytes, as the day differs by one to four days
+ * and the price by a few hundred units.
+ */
+final class DeltaPriceSeriesCodec {
+  private static final int MAX_TRAILING_ZEROS = 18;
+  private static final long[] POWERS_OF_TEN = new long[MAX_TRAILING_ZEROS + 1];
+  private static final int MAX_VARINT_SIZE_IN_BYTES = 10;
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private DeltaPriceSeriesCodec() {
+  }
+
+  /**
+   * Returns the maximum number of bytes that the entries of a series of the given size are encoded
+   * to.
+   *
+   * @param size the number of entries
+   * @return the maximum size of the encoding in bytes
+   */
+  static long getMaxEncodedSizeInBytes(int size) {
+    return 1 + (long) size * 2 * MAX_VARINT_SIZE_IN_BYTES;
+  }
+
+  /**
+   * Encodes the entries of the given series into the given buffer.
+   *
+   * @param priceSeries the series to encode
+   * @param buffer      the buffer with at least {@link #getMaxEncodedSizeInBytes(int)} bytes
+   *                    remaining
+   */
+  static void encode(PriceSeries priceSeries, ByteBuffer buffer) {
+    int trailingZeros = getTrailingZeros(priceSeries);
+    long divisor = POWERS_OF_TEN[trailingZeros];
+    buffer.put((byte) trailingZeros);
+
+    int previousEpochDay = 0;
+    long previousPrice = 0;
+    for (int i = 0; i < priceSeries.size(); i++) {
+      int epochDay = priceSeries.getEpochDay(i);
+      long price = priceSeries.getUnscaledPrice(i) / divisor;
+      // the differences wrap around on overflow, which the decoding reverts
+      putVarLong(buffer, zigZagEncode(epochDay - previousEpochDay));
+      putVarLong(buffer, zigZagEncode(price - previousPrice));
+      previousEpochDay = epochDay;
+      previousPrice = price;
+    }
+  }
+
+  /**
+   * Decodes the given number of entries from the given buffer, which must have no bytes left
+   * after the entries.
+   *
+   * @param buffer the buffer to decode
+   * @param size   the number of entries
+   * @param scale  the scale of the prices
+   * @return the decoded series
+   * @throws IOException if the buffer does not hold exactly the given number of entries
+   */
+  static PriceSeries decode(ByteBuffer buffer, int size, int scale) throws IOException {
+    // every entry takes at least two bytes, which also rejects a corrupt size before allocating
+    if (size > (buffer.remaining() - 1) / 2) {
+      throw new IOException("Corrupt price series encoding");
+    }
+    try {
+      int trailingZeros = buffer.get();
+      if (trailingZeros < 0 || trailingZeros > MAX_TRAILING_ZEROS) {
+        throw new IOException("Corrupt price series encoding");
+      }
+      long multiplier = POWERS_OF_TEN[trailingZeros];
+
+      ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(scale, size);
+      int epochDay = 0;
+      long price = 0;
+      for (int i = 0; i < size; i++) {
+        epochDay += (int) zigZagDecode(getVarLong(buffer));
+        price += zigZagDecode(getVarLong(buffer));
+        builder.add(epochDay, price * multiplier);
+      }
+      if (buffer.hasRemaining()) {
+        throw new IOException("Corrupt price series encoding");
+      }
+      return builder.build();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Corrupt price series encoding", e);
+    }
+  }
+
+  private static int getTrailingZeros(PriceSeries priceSeries) {
+    int trailingZeros = MAX_TRAILING_ZEROS;
+    for (int i = 0; i < priceSeries.size() && trailingZeros > 0; i++) {
+      long price = priceSeries.getUnscaledPrice(i);
+      while (trailingZeros > 0 && price % POWERS_OF_TEN[trailingZeros] != 0) {
+        trailingZeros--;
+      }
+    }
+    return trailingZeros;
+  }
+
+  private static long zigZagEncode(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long zigZagDecode(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void putVarLong(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static long getVarLong(ByteBuffer buffer) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 7 * MAX_VARINT_SIZE_IN_BYTES; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Corrupt price series encoding");
+  }
+}
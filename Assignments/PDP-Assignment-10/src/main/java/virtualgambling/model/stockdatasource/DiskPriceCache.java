@@ -0,0 +1,466 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link DiskPriceCache} persists a {@link PriceSeries} per ticker in a compact binary file.
+ *
+ * <p>The file of a ticker is stored at {@code <root>/<ticker>/data.bin} and starts with a header
+ * of four big endian ints: magic number, format version, number of entries and price scale. The
+ * format version tells how the entries follow the header:
+ * <ul>
+ * <li>version 1, a fixed width layout that is read by memory mapping the file: a column of number
+ * of entries ints holding the epoch days in ascending order, padded to a multiple of eight bytes,
+ * and a column of number of entries longs holding the unscaled prices</li>
+ * <li>version 2, the delta encoding of {@link DeltaPriceSeriesCodec}, which takes about a quarter
+ * of the size of version 1 and is decoded in a single pass</li>
+ * <li>version 3, two more big endian ints holding the first and the last day of the range covered
+ * by the series, followed by the delta encoding of version 2</li>
+ * </ul>
+ *
+ * <p>Files are written in version 2, or in version 3 if they are written with a covered range, the
+ * range is then replaced together with the series. Files of version 1 are still read.
+ *
+ * <p>The folder can be shared by several processes. A file is written to a temporary file that is
+ * then renamed atomically over the previous one, hence a reader sees either the previous or the
+ * new file and never a partly written one. A writer holds the lock of the ticker, a {@link
+ * FileLock} on {@code <root>/<ticker>/data.lock}, hence the writes of a ticker are serialized
+ * across processes and a process can hold the lock while it fetches a series, so that the others
+ * wait for it and then read its series instead of fetching the same series again. The folder holds
+ * a {@code manifest.properties} file publishing the version of this protocol, a process does not
+ * write to a folder of a later version.
+ */
+public class DiskPriceCache {
+  private static final int MAGIC_NUMBER = 0x50524353;
+  private static final int MAPPED_FORMAT_VERSION = 1;
+  private static final int DELTA_FORMAT_VERSION = 2;
+  private static final int COVERED_DELTA_FORMAT_VERSION = 3;
+  private static final int HEADER_SIZE_IN_BYTES = 4 * Integer.BYTES;
+  private static final String CACHE_FILE_NAME = "data.bin";
+  private static final String LOCK_FILE_NAME = "data.lock";
+  private static final String MANIFEST_FILE_NAME = "manifest.properties";
+  private static final String PROTOCOL_VERSION_KEY = "protocolVersion";
+  private static final String FORMAT_VERSION_KEY = "formatVersion";
+  private static final int PROTOCOL_VERSION = 1;
+  // a file lock is held by the whole process, hence the threads of a process take turns first
+  private static final ConcurrentMap<Path, Semaphore> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+  private final Path rootPath;
+  private volatile boolean isManifestChecked;
+
+  /**
+   * Constructs a {@link DiskPriceCache} that stores its files under the given root folder.
+   *
+   * @param rootPath the root folder of the cache
+   * @throws IllegalArgumentException if the rootPath is null
+   */
+  public DiskPriceCache(Path rootPath) throws IllegalArgumentException {
+    this.rootPath = Utils.requireNonNull(rootPath);
+  }
+
+  /**
+   * Returns the folder in which the files of the given ticker are stored.
+   *
+   * @param tickerName the ticker name
+   * @return the folder of the given ticker
+   * @throws IllegalArgumentException if the tickerName is not a valid name of a folder of the
+   *                                  cache
+   */
+  public Path getTickerFolderPath(String tickerName) throws IllegalArgumentException {
+    return rootPath.resolve(checkTickerName(tickerName));
+  }
+
+  /**
+   * Returns the given ticker name if it is a valid name of a folder of the cache. A name that is
+   * empty or contains a path separator or ".." is rejected, as its folder could be outside of the
+   * root folder or shared by other tickers.
+   */
+  static String checkTickerName(String tickerName) throws IllegalArgumentException {
+    Utils.requireNonNull(tickerName);
+    if (tickerName.isEmpty() || tickerName.contains("..") || tickerName.indexOf('/') >= 0
+            || tickerName.indexOf('\\') >= 0 || tickerName.indexOf('\0') >= 0) {
+      throw new IllegalArgumentException(String.format("Invalid ticker name: %s", tickerName));
+    }
+    return tickerName;
+  }
+
+  /**
+   * Reads the price series of the given ticker from its cache file.
+   *
+   * @param tickerName the ticker name
+   * @return the price series if the ticker is cached, empty otherwise
+   * @throws IOException if the cache file cannot be read or is corrupt
+   */
+  public Optional<PriceSeries> read(String tickerName) throws IOException {
+    return readFile(tickerName).map(CachedPriceSeries::getPriceSeries);
+  }
+
+  /**
+   * Reads the price series of the given ticker together with the range it covers, which are
+   * written together by {@link #write(TickerLock, CachedPriceSeries)}.
+   *
+   * @param tickerName the ticker name
+   * @return the price series and its covered range if the ticker is cached with a covered range,
+   *         empty otherwise
+   * @throws IOException if the cache file cannot be read or is corrupt
+   */
+  public Optional<CachedPriceSeries> readCachedPriceSeries(String tickerName) throws IOException {
+    return readFile(tickerName).filter(cachedPriceSeries ->
+            cachedPriceSeries.getFromEpochDay() <= cachedPriceSeries.getToEpochDay());
+  }
+
+  /**
+   * Reads the cache file of the given ticker. A file without a covered range is read with a range
+   * that covers no day.
+   */
+  private Optional<CachedPriceSeries> readFile(String tickerName) throws IOException {
+    Path cacheFilePath = getCacheFilePath(tickerName);
+    if (!Files.exists(cacheFilePath)) {
+      return Optional.empty();
+    }
+
+    try (FileChannel channel = FileChannel.open(cacheFilePath, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE_IN_BYTES) {
+        throw new IOException(String.format("Corrupt price cache file: %s", cacheFilePath));
+      }
+      // the mapping stays valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+      int magicNumber = buffer.getInt();
+      int formatVersion = buffer.getInt();
+      int size = buffer.getInt();
+      int scale = buffer.getInt();
+      if (magicNumber != MAGIC_NUMBER || size < 0 || scale < 0) {
+        throw new IOException(String.format("Corrupt price cache file: %s", cacheFilePath));
+      }
+
+      if (formatVersion == DELTA_FORMAT_VERSION || formatVersion == COVERED_DELTA_FORMAT_VERSION) {
+        try {
+          int fromEpochDay = 0;
+          int toEpochDay = -1;
+          if (formatVersion == COVERED_DELTA_FORMAT_VERSION) {
+            if (buffer.remaining() < 2 * Integer.BYTES) {
+              throw new IOException("Corrupt covered range");
+            }
+            fromEpochDay = buffer.getInt();
+            toEpochDay = buffer.getInt();
+          }
+          PriceSeries priceSeries = DeltaPriceSeriesCodec.decode(buffer, size, scale);
+          return Optional.of(formatVersion == COVERED_DELTA_FORMAT_VERSION
+                  ? new CachedPriceSeries(priceSeries, fromEpochDay, toEpochDay)
+                  : withoutCoverage(priceSeries));
+        } catch (IOException e) {
+          throw new IOException(String.format("Corrupt price cache file: %s", cacheFilePath), e);
+        }
+      }
+      if (formatVersion != MAPPED_FORMAT_VERSION || fileSize != getMappedFileSizeInBytes(size)) {
+        throw new IOException(String.format("Corrupt price cache file: %s", cacheFilePath));
+      }
+
+      buffer.position(HEADER_SIZE_IN_BYTES);
+      IntBuffer epochDays = buffer.slice().asIntBuffer();
+      epochDays.limit(size);
+
+      buffer.position(getPricesOffset(size));
+      LongBuffer unscaledPrices = buffer.slice().asLongBuffer();
+      unscaledPrices.limit(size);
+
+      return Optional.of(withoutCoverage(new MappedPriceSeries(epochDays, unscaledPrices,
+              scale)));
+    }
+  }
+
+  private static CachedPriceSeries withoutCoverage(PriceSeries priceSeries) {
+    return new CachedPriceSeries(priceSeries, 0, -1);
+  }
+
+  /**
+   * Takes the lock of the given ticker, waiting until no other thread or process holds it. The
+   * lock is not reentrant.
+   *
+   * @param tickerName the ticker name
+   * @return the lock, which is released once it is closed
+   * @throws IOException if the lock file cannot be opened or locked, or if the thread is
+   *                     interrupted while waiting
+   */
+  public TickerLock lock(String tickerName) throws IOException {
+    Path lockFilePath = getTickerFolderPath(tickerName).resolve(LOCK_FILE_NAME)
+            .toAbsolutePath().normalize();
+    Semaphore processLock = PROCESS_LOCKS.computeIfAbsent(lockFilePath, path -> new Semaphore(1));
+    try {
+      processLock.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the lock of " + tickerName);
+    }
+
+    FileChannel channel = null;
+    try {
+      Files.createDirectories(lockFilePath.getParent());
+      channel = FileChannel.open(lockFilePath, StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE);
+      // released when the channel is closed
+      channel.lock();
+      return new TickerLock(tickerName, lockFilePath, processLock, channel);
+    } catch (IOException | RuntimeException e) {
+      if (channel != null) {
+        channel.close();
+      }
+      processLock.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the given price series as the cache file of the given ticker, replacing any existing
+   * file. The lock of the ticker is taken while the file is written.
+   *
+   * @param tickerName  the ticker name
+   * @param priceSeries the price series to write
+   * @throws IOException if the cache file cannot be written
+   */
+  public void write(String tickerName, PriceSeries priceSeries) throws IOException {
+    try (TickerLock tickerLock = lock(tickerName)) {
+      write(tickerLock, priceSeries);
+    }
+  }
+
+  /**
+   * Writes the given price series as the cache file of the ticker of the given lock, replacing any
+   * existing file.
+   *
+   * @param tickerLock  the held lock of the ticker
+   * @param priceSeries the price series to write
+   * @throws IOException              if the cache file cannot be written or if the folder was
+   *                                  written by a later version of the protocol
+   * @throws IllegalArgumentException if the tickerLock is not a held lock of this cache
+   */
+  public void write(TickerLock tickerLock, PriceSeries priceSeries)
+          throws IOException, IllegalArgumentException {
+    writeFile(tickerLock, withoutCoverage(Utils.requireNonNull(priceSeries)));
+  }
+
+  /**
+   * Writes the given price series together with the range it covers as the cache file of the
+   * ticker of the given lock, replacing any existing file. The range is replaced in the same write
+   * as the series, hence readers never see the range of one write with the series of another.
+   *
+   * @param tickerLock        the held lock of the ticker
+   * @param cachedPriceSeries the price series and its covered range
+   * @throws IOException              if the cache file cannot be written or if the folder was
+   *                                  written by a later version of the protocol
+   * @throws IllegalArgumentException if the tickerLock is not a held lock of this cache or if the
+   *                                  covered range is empty
+   */
+  public void write(TickerLock tickerLock, CachedPriceSeries cachedPriceSeries)
+          throws IOException, IllegalArgumentException {
+    if (Utils.requireNonNull(cachedPriceSeries).getFromEpochDay()
+            > cachedPriceSeries.getToEpochDay()) {
+      throw new IllegalArgumentException("The covered range is empty");
+    }
+    writeFile(tickerLock, cachedPriceSeries);
+  }
+
+  /**
+   * Writes the cache file in version 3 if the given series covers a range, in version 2 otherwise.
+   */
+  private void writeFile(TickerLock tickerLock, CachedPriceSeries cachedPriceSeries)
+          throws IOException, IllegalArgumentException {
+    String tickerName = Utils.requireNonNull(tickerLock).getTickerName();
+    if (!tickerLock.isHeld() || !tickerLock.lockFilePath.equals(getTickerFolderPath(tickerName)
+            .resolve(LOCK_FILE_NAME).toAbsolutePath().normalize())) {
+      throw new IllegalArgumentException("The lock of the ticker is not held");
+    }
+    checkManifest();
+
+    PriceSeries priceSeries = cachedPriceSeries.getPriceSeries();
+    boolean isCovered = cachedPriceSeries.getFromEpochDay() <= cachedPriceSeries.getToEpochDay();
+    int size = priceSeries.size();
+    ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(HEADER_SIZE_IN_BYTES
+            + (isCovered ? 2 * Integer.BYTES : 0)
+            + DeltaPriceSeriesCodec.getMaxEncodedSizeInBytes(size)));
+    buffer.putInt(MAGIC_NUMBER)
+            .putInt(isCovered ? COVERED_DELTA_FORMAT_VERSION : DELTA_FORMAT_VERSION)
+            .putInt(size)
+            .putInt(priceSeries.getScale());
+    if (isCovered) {
+      buffer.putInt(cachedPriceSeries.getFromEpochDay())
+              .putInt(cachedPriceSeries.getToEpochDay());
+    }
+    DeltaPriceSeriesCodec.encode(priceSeries, buffer);
+    buffer.flip();
+
+    // the file is replaced instead of being rewritten in place, as it might still be mapped
+    Path cacheFilePath = getCacheFilePath(tickerName);
+    Path tempFilePath = Files.createTempFile(cacheFilePath.getParent(), CACHE_FILE_NAME, ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tempFilePath, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        // the bytes reach the disk before the file is published under its name
+        channel.force(false);
+      }
+      Files.move(tempFilePath, cacheFilePath, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFilePath);
+    }
+  }
+
+  /**
+   * Returns the time the cache file of the given ticker was last written.
+   *
+   * @param tickerName the ticker name
+   * @return the time the cache file was last written if the ticker is cached, empty otherwise
+   * @throws IOException if the time cannot be read
+   */
+  public Optional<FileTime> getLastModifiedTime(String tickerName) throws IOException {
+    Path cacheFilePath = getCacheFilePath(tickerName);
+    if (!Files.exists(cacheFilePath)) {
+      return Optional.empty();
+    }
+    return Optional.of(Files.getLastModifiedTime(cacheFilePath));
+  }
+
+  /**
+   * Publishes the version of the protocol in the manifest of the folder if it has none, and fails
+   * if the folder was written by a later version.
+   */
+  private void checkManifest() throws IOException {
+    if (isManifestChecked) {
+      return;
+    }
+    Files.createDirectories(rootPath);
+    Path manifestFilePath = rootPath.resolve(MANIFEST_FILE_NAME);
+    if (Files.exists(manifestFilePath)) {
+      Properties manifest = new Properties();
+      try (Reader reader = Files.newBufferedReader(manifestFilePath, StandardCharsets.UTF_8)) {
+        manifest.load(reader);
+      }
+      int protocolVersion;
+      try {
+        protocolVersion = Integer.parseInt(manifest.getProperty(PROTOCOL_VERSION_KEY, ""));
+      } catch (NumberFormatException e) {
+        throw new IOException(String.format("Corrupt price cache manifest: %s",
+                manifestFilePath), e);
+      }
+      if (protocolVersion > PROTOCOL_VERSION) {
+        throw new IOException(String.format("Price cache %s is of the later protocol version %d",
+                rootPath, protocolVersion));
+      }
+    } else {
+      Properties manifest = new Properties();
+      manifest.setProperty(PROTOCOL_VERSION_KEY, String.valueOf(PROTOCOL_VERSION));
+      manifest.setProperty(FORMAT_VERSION_KEY, String.valueOf(COVERED_DELTA_FORMAT_VERSION));
+      Path tempFilePath = Files.createTempFile(rootPath, MANIFEST_FILE_NAME, ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(tempFilePath, StandardCharsets.UTF_8)) {
+          manifest.store(writer, "Price cache");
+        }
+        // processes publishing at the same time publish the same manifest
+        Files.move(tempFilePath, manifestFilePath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tempFilePath);
+      }
+    }
+    isManifestChecked = true;
+  }
+
+  private Path getCacheFilePath(String tickerName) {
+    return getTickerFolderPath(tickerName).resolve(CACHE_FILE_NAME);
+  }
+
+  private static int getPricesOffset(int size) {
+    int epochDaysEnd = HEADER_SIZE_IN_BYTES + size * Integer.BYTES;
+    // align the price column so that every long is read from an aligned address
+    return (epochDaysEnd + Long.BYTES - 1) & -Long.BYTES;
+  }
+
+  private static long getMappedFileSizeInBytes(int size) {
+    return getPricesOffset(size) + (long) size * Long.BYTES;
+  }
+
+  /**
+   * The lock of a ticker, held by a single thread of a single process at a time. It may be closed
+   * by another thread than the one that took it, hence it can be handed over to a thread that
+   * writes the series of the ticker.
+   */
+  public static final class TickerLock implements Closeable {
+    private final String tickerName;
+    private final Path lockFilePath;
+    private final Semaphore processLock;
+    private final FileChannel channel;
+    private final AtomicBoolean isHeld = new AtomicBoolean(true);
+
+    private TickerLock(String tickerName, Path lockFilePath, Semaphore processLock,
+                       FileChannel channel) {
+      this.tickerName = tickerName;
+      this.lockFilePath = lockFilePath;
+      this.processLock = processLock;
+      this.channel = channel;
+    }
+
+    /**
+     * Returns the name of the locked ticker.
+     *
+     * @return the ticker name
+     */
+    public String getTickerName() {
+      return tickerName;
+    }
+
+    /**
+     * Returns true if the lock has not been released yet.
+     *
+     * @return true if the lock is held, false otherwise
+     */
+    public boolean isHeld() {
+      return isHeld.get();
+    }
+
+    /**
+     * Releases the lock, closing it again has no effect.
+     */
+    @Override
+    public void close() {
+      if (!isHeld.compareAndSet(true, false)) {
+        return;
+      }
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // the file lock is released once the channel is closed, even if closing it failed
+      } finally {
+        processLock.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import util.Utils;
+
+/**
+ * {@link DiskPriceCacheTier} is a {@link PriceCacheTier} that persists the series in a {@link
+ * DiskPriceCache}, hence they survive restarts. The covered range of a ticker is written in the
+ * header of its cache file, under the lock of the ticker and in the same write as its series, hence
+ * a series is never read with the range of another series, even across processes.
+ */
+public class DiskPriceCacheTier implements PriceCacheTier {
+  private final DiskPriceCache diskPriceCache;
+
+  /**
+   * Constructs a {@link DiskPriceCacheTier} that stores its files under the given root folder.
+   *
+   * @param rootPath the root folder of the cache
+   * @throws IllegalArgumentException if the rootPath is null
+   */
+  public DiskPriceCacheTier(Path rootPath) throws IllegalArgumentException {
+    this.diskPriceCache = new DiskPriceCache(Utils.requireNonNull(rootPath));
+  }
+
+  @Override
+  public Optional<CachedPriceSeries> get(String tickerName) {
+    try {
+      return diskPriceCache.readCachedPriceSeries(tickerName);
+    } catch (IOException | RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void put(String tickerName, CachedPriceSeries cachedPriceSeries) {
+    try (DiskPriceCache.TickerLock tickerLock = diskPriceCache.lock(tickerName)) {
+      diskPriceCache.write(tickerLock, cachedPriceSeries);
+    } catch (IOException | IllegalArgumentException ignored) {
+      // the series is still served by the other tiers
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package virtualgambling.model.stockdatasource;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+import virtualgambling.model.bean.StockPrice;
+
+/**
+ * {@link MappedPriceSeries} is a {@link PriceSeries} that reads its epoch days and prices directly
+ * from the columns of a memory mapped cache file, hence it never parses or copies the data.
+ */
+class MappedPriceSeries implements PriceSeries {
+  private final IntBuffer epochDays;
+  private final LongBuffer unscaledPrices;
+  private final int scale;
+
+  /**
+   * Constructs a {@link MappedPriceSeries} over the given columns.
+   *
+   * @param epochDays      the column of epoch days sorted in ascending order
+   * @param unscaledPrices the column of unscaled prices
+   * @param scale          the scale of the prices
+   */
+  MappedPriceSeries(IntBuffer epochDays, LongBuffer unscaledPrices, int scale) {
+    this.epochDays = epochDays;
+    this.unscaledPrices = unscaledPrices;
+    this.scale = scale;
+  }
+
+  @Override
+  public int size() {
+    return epochDays.limit();
+  }
+
+  @Override
+  public int getScale() {
+    return scale;
+  }
+
+  @Override
+  public int getEpochDay(int index) throws IndexOutOfBoundsException {
+    return epochDays.get(index);
+  }
+
+  @Override
+  public long getUnscaledPrice(int index) throws IndexOutOfBoundsException {
+    return unscaledPrices.get(index);
+  }
+
+  @Override
+  public StockPrice getStockPrice(int index) throws IndexOutOfBoundsException {
+    return new StockPrice(unscaledPrices.get(index), scale,
+            Utils.fromEpochDay(epochDays.get(index)));
+  }
+}
@@ -0,0 +1,36 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.Optional;
+
+import util.ConcurrentLRUCache;
+
+/**
+ * {@link MemoryPriceCacheTier} is a {@link PriceCacheTier} that keeps the series in memory and
+ * evicts the least recently used series once their total size exceeds a maximum.
+ *
+ * <p>This class is thread-safe.
+ */
+public class MemoryPriceCacheTier implements PriceCacheTier {
+  private final ConcurrentLRUCache<String, CachedPriceSeries> cache;
+
+  /**
+   * Constructs a {@link MemoryPriceCacheTier} that holds series of at most the given total size.
+   *
+   * @param maximumWeightInBytes the maximum total size of the series in bytes
+   * @throws IllegalArgumentException if the maximum is not positive
+   */
+  public MemoryPriceCacheTier(long maximumWeightInBytes) throws IllegalArgumentException {
+    this.cache = new ConcurrentLRUCache<>(maximumWeightInBytes, cachedPriceSeries ->
+            (long) cachedPriceSeries.getPriceSeries().size() * (Integer.BYTES + Long.BYTES));
+  }
+
+  @Override
+  public Optional<CachedPriceSeries> get(String tickerName) {
+    return Optional.ofNullable(cache.get(tickerName));
+  }
+
+  @Override
+  public void put(String tickerName, CachedPriceSeries cachedPriceSeries) {
+    cache.put(tickerName, cachedPriceSeries);
+  }
+}
@@ -0,0 +1,203 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import util.ConcurrentLRUCache;
+import util.Utils;
+
+/**
+ * {@link NegativePriceCache} remembers, for a limited time, the lookups that are known to find no
+ * stock data: tickers that are unknown to the data source and ranges of days for which a ticker
+ * has no prices, such as the days before it was listed. Known misses are answered from memory
+ * without probing the price cache or querying the API again.
+ *
+ * <p>The misses of a ticker are kept in memory, bounded by the number of tickers, and in a small
+ * text file in the folder of the ticker, so that they survive restarts. A ticker's file is read
+ * at most once while its misses are in memory.
+ *
+ * <p>This class is thread-safe.
+ */
+public class NegativePriceCache {
+  private static final String MISSES_FILE_NAME = "misses.txt";
+  private static final List<Miss> NO_MISSES = Collections.emptyList();
+
+  private final Path rootPath;
+  private final ConcurrentLRUCache<String, List<Miss>> missesByTicker;
+
+  /**
+   * Constructs a {@link NegativePriceCache} that stores its files under the given root folder.
+   *
+   * @param rootPath       the root folder of the cache, i.e. the folder of the price cache
+   * @param maximumTickers the maximum number of tickers whose misses are kept in memory
+   * @throws IllegalArgumentException if the rootPath is null or the maximum is not positive
+   */
+  public NegativePriceCache(Path rootPath, long maximumTickers) throws IllegalArgumentException {
+    this.rootPath = Utils.requireNonNull(rootPath);
+    this.missesByTicker = new ConcurrentLRUCache<>(maximumTickers, misses -> 1);
+  }
+
+  /**
+   * Returns true if the given ticker is known to be unknown to the data source.
+   *
+   * @param tickerName the ticker name
+   * @return true if the given ticker is known to be unknown, false otherwise
+   * @throws IllegalArgumentException if the tickerName is not a valid ticker name
+   */
+  public boolean isUnknownTicker(String tickerName) throws IllegalArgumentException {
+    return isMissing(tickerName, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns true if the given ticker is known to have no price for the given day.
+   *
+   * @param tickerName the ticker name
+   * @param epochDay   the day as a number of days since the epoch
+   * @return true if the given ticker is known to have no price for the given day, false otherwise
+   * @throws IllegalArgumentException if the tickerName is not a valid ticker name
+   */
+  public boolean isMissing(String tickerName, int epochDay) throws IllegalArgumentException {
+    return isMissing(tickerName, epochDay, epochDay);
+  }
+
+  /**
+   * Remembers that the given ticker is unknown to the data source for the given time.
+   *
+   * @param tickerName the ticker name
+   * @param ttl        the time for which the miss is remembered
+   * @param timeUnit   the unit of the ttl
+   * @throws IllegalArgumentException if the tickerName is not a valid ticker name
+   */
+  public void putUnknownTicker(String tickerName, long ttl, TimeUnit timeUnit)
+          throws IllegalArgumentException {
+    putMissingRange(tickerName, Integer.MIN_VALUE, Integer.MAX_VALUE, ttl, timeUnit);
+  }
+
+  /**
+   * Remembers that the given ticker has no prices between the given days (both inclusive) for
+   * the given time.
+   *
+   * @param tickerName   the ticker name
+   * @param fromEpochDay the first day of the range as a number of days since the epoch
+   * @param toEpochDay   the last day of the range as a number of days since the epoch
+   * @param ttl          the time for which the miss is remembered
+   * @param timeUnit     the unit of the ttl
+   * @throws IllegalArgumentException if the tickerName is not a valid ticker name
+   */
+  public synchronized void putMissingRange(String tickerName, int fromEpochDay, int toEpochDay,
+                                           long ttl, TimeUnit timeUnit)
+          throws IllegalArgumentException {
+    DiskPriceCache.checkTickerName(tickerName);
+    long nowMillis = System.currentTimeMillis();
+    List<Miss> misses = new ArrayList<>();
+    for (Miss miss : getMisses(tickerName)) {
+      if (!miss.isExpired(nowMillis)) {
+        misses.add(miss);
+      }
+    }
+    misses.add(new Miss(fromEpochDay, toEpochDay, nowMillis + timeUnit.toMillis(ttl)));
+
+    missesByTicker.put(tickerName, Collections.unmodifiableList(misses));
+    try {
+      writeMisses(tickerName, misses);
+    } catch (IOException ignored) {
+      // the misses are still remembered in memory
+    }
+  }
+
+  private boolean isMissing(String tickerName, int fromEpochDay, int toEpochDay) {
+    DiskPriceCache.checkTickerName(tickerName);
+    long nowMillis = System.currentTimeMillis();
+    for (Miss miss : getMisses(tickerName)) {
+      if (!miss.isExpired(nowMillis)
+              && miss.fromEpochDay <= fromEpochDay && toEpochDay <= miss.toEpochDay) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<Miss> getMisses(String tickerName) {
+    List<Miss> misses = missesByTicker.get(tickerName);
+    if (Objects.nonNull(misses)) {
+      return misses;
+    }
+
+    // the file is read under the lock of putMissingRange, hence a miss that is put meanwhile is
+    // never overwritten by the misses read before it
+    synchronized (this) {
+      misses = missesByTicker.get(tickerName);
+      if (Objects.isNull(misses)) {
+        try {
+          misses = readMisses(tickerName);
+        } catch (IOException | RuntimeException e) {
+          misses = NO_MISSES;
+        }
+        missesByTicker.put(tickerName, misses);
+      }
+      return misses;
+    }
+  }
+
+  private List<Miss> readMisses(String tickerName) throws IOException {
+    Path missesFilePath = getMissesFilePath(tickerName);
+    if (!Files.exists(missesFilePath)) {
+      return NO_MISSES;
+    }
+
+    List<Miss> misses = new ArrayList<>();
+    for (String line : Files.readAllLines(missesFilePath, StandardCharsets.UTF_8)) {
+      String[] split = line.split(",");
+      misses.add(new Miss(Integer.parseInt(split[0]), Integer.parseInt(split[1]),
+              Long.parseLong(split[2])));
+    }
+    return Collections.unmodifiableList(misses);
+  }
+
+  private void writeMisses(String tickerName, List<Miss> misses) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (Miss miss : misses) {
+      lines.add(String.format("%d,%d,%d", miss.fromEpochDay, miss.toEpochDay,
+              miss.expiresAtMillis));
+    }
+
+    Path missesFilePath = getMissesFilePath(tickerName);
+    Files.createDirectories(missesFilePath.getParent());
+    Path tempFilePath = Files.createTempFile(missesFilePath.getParent(), MISSES_FILE_NAME, ".tmp");
+    try {
+      Files.write(tempFilePath, lines, StandardCharsets.UTF_8);
+      Files.move(tempFilePath, missesFilePath, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFilePath);
+    }
+  }
+
+  private Path getMissesFilePath(String tickerName) {
+    return rootPath.resolve(tickerName).resolve(MISSES_FILE_NAME);
+  }
+
+  private static class Miss {
+    private final int fromEpochDay;
+    private final int toEpochDay;
+    private final long expiresAtMillis;
+
+    private Miss(int fromEpochDay, int toEpochDay, long expiresAtMillis) {
+      this.fromEpochDay = fromEpochDay;
+      this.toEpochDay = toEpochDay;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    private boolean isExpired(long nowMillis) {
+      return nowMillis >= expiresAtMillis;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import util.Utils;
+
+/**
+ * {@link PipelinedInputStream} is an {@link InputStream} whose bytes are read from a source stream
+ * on another thread, hence a slow source such as a network connection is read while the bytes
+ * read so far are processed.
+ *
+ * <p>The source is read in chunks into a bounded queue, hence at most a fixed number of chunks are
+ * buffered ahead of the reader and the source is not read further until the reader catches up.
+ * The chunks are reused once they are read. A failure to read the source is thrown by the read
+ * that reaches it, after the bytes read before the failure.
+ *
+ * <p>Closing this stream stops reading the source and closes it. This stream must be read by a
+ * single thread.
+ */
+public class PipelinedInputStream extends InputStream {
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+  private static final Chunk END_OF_SOURCE = new Chunk(0);
+
+  private final InputStream source;
+  private final int chunkSizeInBytes;
+  private final BlockingQueue<Chunk> readChunks;
+  private final BlockingQueue<Chunk> freeChunks;
+  private volatile boolean isClosed;
+  private volatile Exception sourceFailure;
+
+  private Chunk currentChunk;
+  private int currentPosition;
+
+  /**
+   * Constructs a {@link PipelinedInputStream} that starts reading the given source on the given
+   * executor.
+   *
+   * @param source           the stream to read, which is closed once it is read or this stream
+   *                         is closed
+   * @param executor         the executor to read the source on
+   * @param chunkSizeInBytes the maximum size of a chunk
+   * @param maxChunks        the maximum number of chunks buffered ahead of the reader
+   * @throws IllegalArgumentException if any argument is null or if the chunkSizeInBytes or
+   *                                  maxChunks is not positive
+   */
+  public PipelinedInputStream(InputStream source, Executor executor, int chunkSizeInBytes,
+                              int maxChunks) throws IllegalArgumentException {
+    Utils.requireNonNull(executor);
+    if (chunkSizeInBytes <= 0 || maxChunks <= 0) {
+      throw new IllegalArgumentException("Chunk size and number of chunks must be positive");
+    }
+    this.source = Utils.requireNonNull(source);
+    this.chunkSizeInBytes = chunkSizeInBytes;
+    this.readChunks = new ArrayBlockingQueue<>(maxChunks + 1);
+    this.freeChunks = new ArrayBlockingQueue<>(maxChunks + 1);
+    executor.execute(this::readSource);
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] bytes = new byte[1];
+    return read(bytes, 0, 1) < 0 ? -1 : bytes[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (isClosed) {
+      throw new IOException("Stream closed");
+    }
+    if (length == 0) {
+      return 0;
+    }
+    if (currentChunk == null || currentPosition == currentChunk.length) {
+      if (currentChunk == END_OF_SOURCE) {
+        return -1;
+      }
+      if (currentChunk != null) {
+        freeChunks.offer(currentChunk);
+      }
+      currentChunk = takeChunk();
+      currentPosition = 0;
+      if (currentChunk == END_OF_SOURCE) {
+        if (sourceFailure != null) {
+          throw new IOException(sourceFailure);
+        }
+        return -1;
+      }
+    }
+
+    int numBytes = Math.min(length, currentChunk.length - currentPosition);
+    System.arraycopy(currentChunk.bytes, currentPosition, bytes, offset, numBytes);
+    currentPosition += numBytes;
+    return numBytes;
+  }
+
+  @Override
+  public void close() {
+    isClosed = true;
+    // unblocks the reading of the source, which then closes it
+    readChunks.clear();
+  }
+
+  private Chunk takeChunk() throws IOException {
+    try {
+      return readChunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the source");
+    }
+  }
+
+  private void readSource() {
+    try {
+      while (!isClosed) {
+        Chunk chunk = freeChunks.poll();
+        if (chunk == null) {
+          chunk = new Chunk(chunkSizeInBytes);
+        }
+        chunk.length = source.read(chunk.bytes, 0, chunk.bytes.length);
+        if (chunk.length < 0) {
+          break;
+        }
+        if (chunk.length > 0 && !offer(chunk)) {
+          return;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      sourceFailure = e;
+    } catch (InterruptedException e) {
+      sourceFailure = new InterruptedIOException("Interrupted while reading the source");
+      Thread.currentThread().interrupt();
+    } finally {
+      try {
+        source.close();
+      } catch (IOException ignored) {
+        // the bytes were read already
+      }
+    }
+    try {
+      offer(END_OF_SOURCE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean offer(Chunk chunk) throws InterruptedException {
+    while (!isClosed) {
+      if (readChunks.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Chunk {
+    private final byte[] bytes;
+    private int length;
+
+    private Chunk(int sizeInBytes) {
+      this.bytes = new byte[sizeInBytes];
+    }
+  }
+}
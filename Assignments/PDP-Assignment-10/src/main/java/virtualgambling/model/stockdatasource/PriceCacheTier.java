@@ -0,0 +1,29 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.Optional;
+
+/**
+ * {@link PriceCacheTier} is one level of the caches of a {@link CachingStockDataSource}, such as an
+ * in-memory cache or a persistent cache on disk. A tier holds at most one {@link
+ * CachedPriceSeries} per ticker.
+ *
+ * <p>A tier is a cache, hence failing to read or write an entry is not an error: such a read is a
+ * miss and such a write is dropped.
+ */
+public interface PriceCacheTier {
+  /**
+   * Returns the cached series of the given ticker.
+   *
+   * @param tickerName the ticker name
+   * @return the cached series if the ticker is cached in this tier, empty otherwise
+   */
+  Optional<CachedPriceSeries> get(String tickerName);
+
+  /**
+   * Caches the given series as the series of the given ticker, replacing any existing series.
+   *
+   * @param tickerName        the ticker name
+   * @param cachedPriceSeries the series to cache
+   */
+  void put(String tickerName, CachedPriceSeries cachedPriceSeries);
+}
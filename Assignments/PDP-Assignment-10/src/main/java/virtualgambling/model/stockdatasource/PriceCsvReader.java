@@ -0,0 +1,310 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import util.Utils;
+import virtualgambling.model.bean.ArrayPriceSeries;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link PriceCsvReader} reads daily prices from CSV bytes, such as the responses of Alpha Vantage
+ * and its cache files, whose rows start with a date formatted as 'yyyy-MM-dd'.
+ *
+ * <p>The rows are parsed from the bytes in place: the date is converted to an epoch day and the
+ * price column to an unscaled price without creating a String or a {@link java.math.BigDecimal}
+ * per row, hence the only objects created while reading the rows are the growing arrays of the
+ * series. Lines may end with "\n" or "\r\n", blank lines are skipped.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class PriceCsvReader implements Closeable {
+  private static final int BUFFER_SIZE_IN_BYTES = 64 * 1024;
+  private static final int DATE_LENGTH = "yyyy-MM-dd".length();
+
+  private final InputStream inputStream;
+  private final ByteBuffer byteBuffer;
+  private byte[] buffer;
+  private int position;
+  private int limit;
+  private boolean isEndOfInput;
+  private int lineNumber;
+
+  /**
+   * Constructs a {@link PriceCsvReader} that reads the given stream, which is closed with this
+   * reader.
+   *
+   * @param inputStream the stream to read
+   * @throws IllegalArgumentException if the inputStream is null
+   */
+  public PriceCsvReader(InputStream inputStream) throws IllegalArgumentException {
+    this.inputStream = Utils.requireNonNull(inputStream);
+    this.byteBuffer = null;
+    this.buffer = new byte[BUFFER_SIZE_IN_BYTES];
+  }
+
+  /**
+   * Constructs a {@link PriceCsvReader} that reads the remaining bytes of the given buffer. The
+   * position of the given buffer is not changed.
+   *
+   * @param byteBuffer the buffer to read
+   * @throws IllegalArgumentException if the byteBuffer is null
+   */
+  public PriceCsvReader(ByteBuffer byteBuffer) throws IllegalArgumentException {
+    this.inputStream = null;
+    ByteBuffer source = Utils.requireNonNull(byteBuffer).duplicate();
+    if (source.hasArray()) {
+      // the bytes are read from the backing array itself, which is never written to
+      this.byteBuffer = null;
+      this.buffer = source.array();
+      this.position = source.arrayOffset() + source.position();
+      this.limit = source.arrayOffset() + source.limit();
+      this.isEndOfInput = true;
+    } else {
+      this.byteBuffer = source;
+      this.buffer = new byte[BUFFER_SIZE_IN_BYTES];
+    }
+  }
+
+  /**
+   * Reads the next line as text, such as a header or an error message.
+   *
+   * @return the next line without its line terminator, or null at the end of the input
+   * @throws IOException if the input cannot be read
+   */
+  public String readLine() throws IOException {
+    int lineEnd = findLineEnd();
+    if (lineEnd < 0) {
+      return null;
+    }
+    String line = new String(buffer, position, getContentEnd(lineEnd) - position,
+            StandardCharsets.UTF_8);
+    skipLine(lineEnd);
+    return line;
+  }
+
+  /**
+   * Reads every remaining row as the price of the day in its first column.
+   *
+   * @param priceColumn the zero based index of the column of the price
+   * @param scale       the scale of the prices, the prices are rounded half up to it
+   * @return the prices of the rows sorted by day, the row read last wins for a repeated day
+   * @throws IOException              if the input cannot be read or a row is malformed
+   * @throws IllegalArgumentException if the priceColumn is not after the first column or if the
+   *                                  scale is negative
+   */
+  public PriceSeries readPrices(int priceColumn, int scale)
+          throws IOException, IllegalArgumentException {
+    if (priceColumn < 1) {
+      throw new IllegalArgumentException("Price column must be after the date column");
+    }
+    ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(scale);
+    int lineEnd;
+    while ((lineEnd = findLineEnd()) >= 0) {
+      int contentEnd = getContentEnd(lineEnd);
+      if (contentEnd > position) {
+        int priceStart = findColumnStart(position, contentEnd, priceColumn);
+        int priceEnd = findFieldEnd(priceStart, contentEnd);
+        builder.add(parseEpochDay(position, findFieldEnd(position, contentEnd)),
+                parseUnscaledPrice(priceStart, priceEnd, scale));
+      }
+      skipLine(lineEnd);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (inputStream != null) {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Returns the index of the line feed that ends the current line, or the end of the input for
+   * its last line, having read input until the whole line is buffered. Returns -1 at the end of
+   * the input.
+   */
+  private int findLineEnd() throws IOException {
+    int searchFrom = position;
+    while (true) {
+      for (int i = searchFrom; i < limit; i++) {
+        if (buffer[i] == '\n') {
+          return i;
+        }
+      }
+      if (isEndOfInput) {
+        return position < limit ? limit : -1;
+      }
+      searchFrom = limit - position;
+      fill();
+    }
+  }
+
+  private void fill() throws IOException {
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+    if (limit == buffer.length) {
+      // a line longer than the buffer
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+
+    int read;
+    if (inputStream != null) {
+      read = inputStream.read(buffer, limit, buffer.length - limit);
+    } else if (byteBuffer.hasRemaining()) {
+      read = Math.min(byteBuffer.remaining(), buffer.length - limit);
+      byteBuffer.get(buffer, limit, read);
+    } else {
+      read = -1;
+    }
+    if (read < 0) {
+      isEndOfInput = true;
+    } else {
+      limit += read;
+    }
+  }
+
+  private int getContentEnd(int lineEnd) {
+    return lineEnd > position && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+  }
+
+  private void skipLine(int lineEnd) {
+    position = Math.min(lineEnd + 1, limit);
+    lineNumber++;
+  }
+
+  private int findColumnStart(int from, int to, int column) throws IOException {
+    int index = from;
+    for (int i = 0; i < column; i++) {
+      index = findFieldEnd(index, to);
+      if (index == to) {
+        throw getMalformedRowException();
+      }
+      index++;
+    }
+    return index;
+  }
+
+  private int findFieldEnd(int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer[i] == ',') {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  private int parseEpochDay(int from, int to) throws IOException {
+    // any time after the date is ignored
+    if (to - from < DATE_LENGTH || buffer[from + 4] != '-' || buffer[from + 7] != '-') {
+      throw getMalformedRowException();
+    }
+    int year = parseDigits(from, from + 4);
+    int month = parseDigits(from + 5, from + 7);
+    int dayOfMonth = parseDigits(from + 8, from + 10);
+    if (month < 1 || month > 12 || dayOfMonth < 1
+            || dayOfMonth > getLengthOfMonth(year, month)) {
+      throw getMalformedRowException();
+    }
+
+    // the days since 0000-03-01, the year starting in March puts the leap day at its end
+    int marchBasedYear = month <= 2 ? year - 1 : year;
+    int marchBasedMonth = month <= 2 ? month + 9 : month - 3;
+    int dayOfYear = (153 * marchBasedMonth + 2) / 5 + dayOfMonth - 1;
+    int days = marchBasedYear * 365 + Math.floorDiv(marchBasedYear, 4)
+            - Math.floorDiv(marchBasedYear, 100) + Math.floorDiv(marchBasedYear, 400) + dayOfYear;
+    // 0000-03-01 was 719468 days before the epoch
+    return days - 719468;
+  }
+
+  private int parseDigits(int from, int to) throws IOException {
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = buffer[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw getMalformedRowException();
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private static int getLengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean isLeapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+        return isLeapYear ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  private long parseUnscaledPrice(int from, int to, int scale) throws IOException {
+    int index = from;
+    boolean isNegative = false;
+    if (index < to && (buffer[index] == '-' || buffer[index] == '+')) {
+      isNegative = buffer[index] == '-';
+      index++;
+    }
+
+    try {
+      long unscaledPrice = 0;
+      int numDigits = 0;
+      // the number of fraction digits read so far, negative before the decimal point
+      int numFractionDigits = -1;
+      boolean isRoundedUp = false;
+      for (; index < to; index++) {
+        byte b = buffer[index];
+        if (b == '.' && numFractionDigits < 0) {
+          numFractionDigits = 0;
+          continue;
+        }
+        int digit = b - '0';
+        if (digit < 0 || digit > 9) {
+          throw getMalformedRowException();
+        }
+        numDigits++;
+        if (numFractionDigits < scale) {
+          unscaledPrice = Math.addExact(Math.multiplyExact(unscaledPrice, 10), digit);
+          if (numFractionDigits >= 0) {
+            numFractionDigits++;
+          }
+        } else if (numFractionDigits == scale) {
+          // the first digit beyond the scale decides the rounding
+          isRoundedUp = digit >= 5;
+          numFractionDigits++;
+        }
+      }
+      if (numDigits == 0) {
+        throw getMalformedRowException();
+      }
+
+      for (int i = Math.max(numFractionDigits, 0); i < scale; i++) {
+        unscaledPrice = Math.multiplyExact(unscaledPrice, 10);
+      }
+      if (isRoundedUp) {
+        unscaledPrice = Math.addExact(unscaledPrice, 1);
+      }
+      return isNegative ? -unscaledPrice : unscaledPrice;
+    } catch (ArithmeticException e) {
+      throw getMalformedRowException();
+    }
+  }
+
+  private IOException getMalformedRowException() {
+    return new IOException(String.format("Malformed price row at line %d", lineNumber + 1));
+  }
+}
@@ -0,0 +1,237 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link PriceHistoryImporter} fills a {@link DiskPriceCache} from a directory of offline price
+ * histories, hence the cache can be seeded without calling any API.
+ *
+ * <p>Every file whose name ends with ".csv" in the directory or its sub directories holds the
+ * history of the ticker it is named after, such as "AAPL.csv". Its first line is a header and
+ * every other row starts with a date formatted as 'yyyy-MM-dd'. The price is taken from the
+ * column named "close" in the header, or from a default column if there is no such column.
+ *
+ * <p>The files are parsed and written in parallel on a fork join pool. An import can be resumed:
+ * a ticker whose cache file was written after its history file was last modified is skipped, hence
+ * running an interrupted import again only imports the remaining files and the files that changed.
+ */
+public class PriceHistoryImporter {
+  private static final String HISTORY_FILE_EXTENSION = ".csv";
+  private static final String PRICE_COLUMN_NAME = "close";
+  private static final int MAX_FILES_PER_TASK = 8;
+
+  private final DiskPriceCache diskPriceCache;
+  private final int scale;
+  private final int defaultPriceColumn;
+  private final int parallelism;
+
+  /**
+   * Constructs a {@link PriceHistoryImporter} that writes into the given cache.
+   *
+   * @param diskPriceCache     the cache to fill
+   * @param scale              the scale of the imported prices
+   * @param defaultPriceColumn the zero based index of the price column in a file without a
+   *                           "close" column
+   * @param parallelism        the number of files imported at the same time
+   * @throws IllegalArgumentException if the diskPriceCache is null, if the scale is negative, if
+   *                                  the defaultPriceColumn is not after the first column or if
+   *                                  the parallelism is not positive
+   */
+  public PriceHistoryImporter(DiskPriceCache diskPriceCache, int scale, int defaultPriceColumn,
+                              int parallelism) throws IllegalArgumentException {
+    if (scale < 0 || defaultPriceColumn < 1 || parallelism < 1) {
+      throw new IllegalArgumentException("Invalid scale, price column or parallelism");
+    }
+    this.diskPriceCache = Utils.requireNonNull(diskPriceCache);
+    this.scale = scale;
+    this.defaultPriceColumn = defaultPriceColumn;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Imports every history file of the given directory that is not imported already.
+   *
+   * @param directoryPath the directory of the history files
+   * @return the outcome of the import
+   * @throws IOException              if the directory cannot be listed
+   * @throws IllegalArgumentException if the directoryPath is null or is not a directory
+   */
+  public ImportSummary importDirectory(Path directoryPath)
+          throws IOException, IllegalArgumentException {
+    if (!Files.isDirectory(Utils.requireNonNull(directoryPath))) {
+      throw new IllegalArgumentException(String.format("Not a directory: %s", directoryPath));
+    }
+    List<Path> historyFilePaths;
+    try (Stream<Path> paths = Files.walk(directoryPath)) {
+      historyFilePaths = paths
+              .filter(path -> path.getFileName().toString().endsWith(HISTORY_FILE_EXTENSION))
+              .filter(Files::isRegularFile)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    ImportSummary summary = new ImportSummary();
+    long startNanos = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new ImportTask(historyFilePaths, 0, historyFilePaths.size(), summary));
+    } finally {
+      pool.shutdown();
+    }
+    summary.elapsedNanos = System.nanoTime() - startNanos;
+    return summary;
+  }
+
+  private void importFile(Path historyFilePath, ImportSummary summary) {
+    String fileName = historyFilePath.getFileName().toString();
+    String tickerName = fileName.substring(0, fileName.length() - HISTORY_FILE_EXTENSION.length());
+    try {
+      Optional<FileTime> lastWrittenTime = diskPriceCache.getLastModifiedTime(tickerName);
+      if (lastWrittenTime.isPresent()
+              && lastWrittenTime.get().compareTo(Files.getLastModifiedTime(historyFilePath)) > 0) {
+        summary.numSkippedTickers.incrementAndGet();
+        return;
+      }
+
+      PriceSeries priceSeries;
+      try (PriceCsvReader reader = new PriceCsvReader(Files.newInputStream(historyFilePath))) {
+        priceSeries = reader.readPrices(getPriceColumn(reader.readLine()), scale);
+      }
+      if (priceSeries.isEmpty()) {
+        summary.failures.put(tickerName, "No prices");
+        return;
+      }
+      diskPriceCache.write(tickerName, priceSeries);
+      summary.numImportedTickers.incrementAndGet();
+      summary.numImportedRows.add(priceSeries.size());
+    } catch (IOException | RuntimeException e) {
+      summary.failures.put(tickerName, String.valueOf(e.getMessage()));
+    }
+  }
+
+  private int getPriceColumn(String header) {
+    if (header != null) {
+      String[] columnNames = header.split(",");
+      for (int i = 1; i < columnNames.length; i++) {
+        if (columnNames[i].trim().equalsIgnoreCase(PRICE_COLUMN_NAME)) {
+          return i;
+        }
+      }
+    }
+    return defaultPriceColumn;
+  }
+
+  /**
+   * Imports the files of a range of the list, splitting the range until it is small enough.
+   */
+  private class ImportTask extends RecursiveAction {
+    private final List<Path> historyFilePaths;
+    private final int from;
+    private final int to;
+    private final ImportSummary summary;
+
+    private ImportTask(List<Path> historyFilePaths, int from, int to, ImportSummary summary) {
+      this.historyFilePaths = historyFilePaths;
+      this.from = from;
+      this.to = to;
+      this.summary = summary;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= MAX_FILES_PER_TASK) {
+        for (int i = from; i < to; i++) {
+          importFile(historyFilePaths.get(i), summary);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new ImportTask(historyFilePaths, from, middle, summary),
+              new ImportTask(historyFilePaths, middle, to, summary));
+    }
+  }
+
+  /**
+   * The outcome of an import.
+   */
+  public static class ImportSummary {
+    private final AtomicInteger numImportedTickers = new AtomicInteger();
+    private final AtomicInteger numSkippedTickers = new AtomicInteger();
+    private final LongAdder numImportedRows = new LongAdder();
+    private final Map<String, String> failures = new ConcurrentSkipListMap<>();
+    private long elapsedNanos;
+
+    private ImportSummary() {
+    }
+
+    /**
+     * Returns the number of tickers that were imported.
+     *
+     * @return the number of imported tickers
+     */
+    public int getNumImportedTickers() {
+      return numImportedTickers.get();
+    }
+
+    /**
+     * Returns the number of tickers that were skipped as they were imported already.
+     *
+     * @return the number of skipped tickers
+     */
+    public int getNumSkippedTickers() {
+      return numSkippedTickers.get();
+    }
+
+    /**
+     * Returns the number of rows of the imported tickers.
+     *
+     * @return the number of imported rows
+     */
+    public long getNumImportedRows() {
+      return numImportedRows.sum();
+    }
+
+    /**
+     * Returns the reason of the failure of every ticker that could not be imported.
+     *
+     * @return the failures sorted by ticker name
+     */
+    public Map<String, String> getFailures() {
+      return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the number of imported rows per second of the import.
+     *
+     * @return the number of rows imported per second
+     */
+    public double getRowsPerSecond() {
+      return elapsedNanos == 0 ? 0 : getNumImportedRows() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Imported %d tickers (%d rows) in %.1f seconds, %.0f rows/sec, "
+                      + "skipped %d already imported tickers, %d tickers failed",
+              getNumImportedTickers(), getNumImportedRows(), elapsedNanos / 1e9,
+              getRowsPerSecond(), getNumSkippedTickers(), failures.size());
+    }
+  }
+}
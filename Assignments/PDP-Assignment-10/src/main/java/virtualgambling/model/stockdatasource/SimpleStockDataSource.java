@@ -1,31 +1,79 @@
 package virtualgambling.model.stockdatasource;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.SplittableRandom;
 
+import util.ConcurrentLRUCache;
 import util.Utils;
+import virtualgambling.model.bean.ArrayPriceSeries;
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.StockPrice;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
 
 /**
  * <code>SimpleStockDataSource</code> implements the <code>StockDataSource</code> interface and
- * provides data from an in memory source of stock prices for the last ten days.
+ * provides data from an in memory source of stock prices.
  *
- * <p>It provides stock prices for the last 100 days of the following tickers ["AAPL", "GOOG",
- * "GE", "BAC", "ORCL", "VZ", "MS", "T"].
+ * <p>By default it provides stock prices for the last 100 days of the following tickers ["AAPL",
+ * "GOOG", "GE", "BAC", "ORCL", "VZ", "MS", "T", "FB", "NFLX"]. A {@link Builder} creates a
+ * synthetic universe of any number of tickers and days instead, whose prices are seeded random
+ * walks, for load testing without the network.
+ *
+ * <p>The prices of a ticker are kept as a series of its weekdays, hence the position of the price
+ * of a day is computed from the day itself without searching. The series of a synthetic ticker is
+ * generated when the ticker is first looked up and kept in a cache bounded by size, hence a large
+ * universe costs nothing up front and only as much memory as the cache.
  */
 public class SimpleStockDataSource implements StockDataSource {
+  private static final List<String> DEFAULT_TICKER_NAMES = Arrays.asList("AAPL", "GOOG", "GE",
+          "BAC", "ORCL", "VZ", "MS", "T", "FB", "NFLX");
+  private static final int DEFAULT_HISTORY_IN_DAYS = 100;
+  // every ticker has a price on each of the days and it grows by ten a day across the tickers
+  private static final int DEFAULT_LAST_EPOCH_DAY = Utils.getTodayEpochDay();
+  private static final int DEFAULT_FIRST_EPOCH_DAY =
+          DEFAULT_LAST_EPOCH_DAY - DEFAULT_HISTORY_IN_DAYS + 1;
+  private static final Map<String, PriceSeries> DEFAULT_PRICE_SERIES = getDefaultPriceSeries();
+  private static final TradingCalendar DEFAULT_TRADING_CALENDAR =
+          createTradingCalendar(DEFAULT_FIRST_EPOCH_DAY, DEFAULT_LAST_EPOCH_DAY);
+
+  private static final int SYNTHETIC_PRICE_SCALE = 2;
+  private static final long SYNTHETIC_CACHE_MAXIMUM_WEIGHT_IN_BYTES = 64L * 1024 * 1024;
+
+  private final int firstEpochDay;
+  private final int lastEpochDay;
+  private final Map<String, PriceSeries> priceSeriesByTicker;
+  private final SyntheticUniverse syntheticUniverse;
+  private final ConcurrentLRUCache<String, PriceSeries> syntheticPriceSeries;
+  private final TradingCalendar tradingCalendar;
+
+  /**
+   * Constructs a {@link SimpleStockDataSource} that provides the prices of the last 100 days of
+   * the default tickers.
+   */
+  public SimpleStockDataSource() {
+    this.firstEpochDay = DEFAULT_FIRST_EPOCH_DAY;
+    this.lastEpochDay = DEFAULT_LAST_EPOCH_DAY;
+    this.priceSeriesByTicker = DEFAULT_PRICE_SERIES;
+    this.syntheticUniverse = null;
+    this.syntheticPriceSeries = null;
+    this.tradingCalendar = DEFAULT_TRADING_CALENDAR;
+  }
 
-  private static final Map<String, List<StockPrice>> STOCK_PRICES =
-          getStockPricesForLast10Days();
+  private SimpleStockDataSource(SyntheticUniverse syntheticUniverse, int historyInDays) {
+    this.lastEpochDay = Utils.getTodayEpochDay();
+    this.firstEpochDay = this.lastEpochDay - historyInDays + 1;
+    this.priceSeriesByTicker = Collections.emptyMap();
+    this.syntheticUniverse = syntheticUniverse;
+    this.syntheticPriceSeries = new ConcurrentLRUCache<>(SYNTHETIC_CACHE_MAXIMUM_WEIGHT_IN_BYTES,
+            priceSeries -> (long) priceSeries.size() * (Integer.BYTES + Long.BYTES));
+    this.tradingCalendar = createTradingCalendar(firstEpochDay, lastEpochDay);
+  }
 
   /**
    * Retrieves the stock price information for a given stock ticker and date.
@@ -44,53 +92,247 @@ public class SimpleStockDataSource implements StockDataSource {
       throw new IllegalArgumentException("Cannot buy shares at given time");
     }
 
-    List<StockPrice> stockPrices =
-            STOCK_PRICES.getOrDefault(tickerName, Collections.emptyList()).stream()
-                    .filter(stockPrice -> Utils.doesDatesHaveSameDay(stockPrice.getDate(), date))
-                    .collect(Collectors.toList());
-    if (!stockPrices.isEmpty()) {
-      // only a single entry will exist
-      return stockPrices.get(0);
-    } else {
+    int epochDay = Utils.toEpochDay(date);
+    PriceSeries priceSeries = getPriceSeries(tickerName);
+    if (Objects.nonNull(priceSeries) && firstEpochDay <= epochDay && epochDay <= lastEpochDay) {
+      return priceSeries.getStockPrice(getWeekdaysBefore(epochDay)
+              - getWeekdaysBefore(firstEpochDay));
+    }
+    throw new StockDataNotFoundException(
+            String.format("Stock Data not found for Stock:%s for Date:%s", tickerName, date));
+  }
+
+  /**
+   * Retrieves the stock prices of the given ticker for every day between the given dates.
+   *
+   * <p>{@link SimpleStockDataSource} only considers the date and not the time.
+   *
+   * @param tickerName the ticker name of the stock
+   * @param fromDate   the first date of the range
+   * @param toDate     the last date of the range
+   * @return the prices of the stock between the given dates
+   * @throws StockDataNotFoundException if the ticker is not found
+   * @throws IllegalArgumentException   if the fromDate is after the toDate
+   */
+  @Override
+  public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+          throws StockDataNotFoundException, IllegalArgumentException {
+    int fromEpochDay = Utils.toEpochDay(fromDate);
+    int toEpochDay = Utils.toEpochDay(toDate);
+    if (fromEpochDay > toEpochDay) {
+      throw new IllegalArgumentException("From date cannot be after the to date");
+    }
+
+    PriceSeries priceSeries = getPriceSeries(tickerName);
+    if (Objects.isNull(priceSeries)) {
       throw new StockDataNotFoundException(
-              String.format("Stock Data not found for Stock:%s for Date:%s", tickerName, date));
+              String.format("Stock Data not found for Stock:%s", tickerName));
     }
+    return priceSeries.subSeries(fromEpochDay, toEpochDay);
   }
 
-  private static Map<String, List<StockPrice>> getStockPricesForLast10Days() {
-    List<Date> dates = getDatesForLast100Days();
+  /**
+   * Returns the calendar of this data source, whose trading days are the weekdays of its range.
+   *
+   * @return the trading calendar of this data source
+   */
+  @Override
+  public TradingCalendar getTradingCalendar() {
+    return tradingCalendar;
+  }
 
-    List<String> stocks = Arrays.asList("AAPL", "GOOG", "GE", "BAC", "ORCL", "VZ", "MS", "T", "FB"
-            , "NFLX");
-    BigDecimal stockPrice = new BigDecimal(10);
-    Map<String, List<StockPrice>> stockPrices = new LinkedHashMap<>();
-    for (String stockName : stocks) {
-      List<StockPrice> stockPriceList = new ArrayList<>();
-      for (Date date : dates) {
+  private PriceSeries getPriceSeries(String tickerName) {
+    if (Objects.isNull(syntheticUniverse)) {
+      return priceSeriesByTicker.get(tickerName);
+    }
 
-        stockPriceList.add(new StockPrice(stockPrice, date));
+    int tickerIndex = syntheticUniverse.getTickerIndex(tickerName);
+    if (tickerIndex < 0) {
+      return null;
+    }
+    PriceSeries priceSeries = syntheticPriceSeries.get(tickerName);
+    if (Objects.isNull(priceSeries)) {
+      // generating the same series twice is cheaper than coordinating the threads
+      priceSeries = syntheticUniverse.generatePriceSeries(tickerIndex, firstEpochDay,
+              lastEpochDay);
+      syntheticPriceSeries.put(tickerName, priceSeries);
+    }
+    return priceSeries;
+  }
 
-        stockPrice = stockPrice.add(BigDecimal.TEN);
+  /**
+   * Returns the number of weekdays from a fixed Monday up to, but excluding, the given day.
+   */
+  private static int getWeekdaysBefore(int epochDay) {
+    // the epoch was a Thursday, hence 3 days after the epoch day is the count from a Monday
+    int daysSinceMonday = epochDay + 3;
+    return Math.floorDiv(daysSinceMonday, 7) * 5 + Math.min(Math.floorMod(daysSinceMonday, 7), 5);
+  }
+
+  private static TradingCalendar createTradingCalendar(int firstEpochDay, int lastEpochDay) {
+    TradingCalendar tradingCalendar = new TradingCalendar();
+    tradingCalendar.addTradingDays(firstEpochDay, lastEpochDay,
+            epochDay -> !Utils.isNonWorkingDayOfTheWeek(epochDay));
+    return tradingCalendar;
+  }
+
+  private static Map<String, PriceSeries> getDefaultPriceSeries() {
+    Map<String, PriceSeries> stockPriceSeries = new HashMap<>();
+    long stockPrice = 10;
+    for (String tickerName : DEFAULT_TICKER_NAMES) {
+      ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(0);
+      for (int epochDay = DEFAULT_FIRST_EPOCH_DAY; epochDay <= DEFAULT_LAST_EPOCH_DAY;
+           epochDay++) {
+        if (!Utils.isNonWorkingDayOfTheWeek(epochDay)) {
+          builder.add(epochDay, stockPrice);
+        }
+        stockPrice += 10;
       }
-      stockPrices.put(stockName, stockPriceList);
+      stockPriceSeries.put(tickerName, builder.build());
     }
-    return stockPrices;
+    return Collections.unmodifiableMap(stockPriceSeries);
   }
 
-  private static List<Date> getDatesForLast100Days() {
-    Calendar calendar = Utils.getCalendarInstance();
-    calendar.set(Calendar.HOUR_OF_DAY, 0);
-    calendar.set(Calendar.MINUTE, 0);
-    calendar.set(Calendar.SECOND, 0);
-    calendar.set(Calendar.MILLISECOND, 0);
+  /**
+   * A builder of a {@link SimpleStockDataSource} over a synthetic universe. The tickers are named
+   * by a prefix followed by their zero padded index, such as "SYN0000" to "SYN4999" for 5000
+   * tickers, and have prices for the weekdays of the given number of days up to today. By default
+   * the universe has 5000 tickers, 20 years of history and the seed 42.
+   */
+  public static class Builder {
+    private int numTickers = 5000;
+    private int historyInDays = 20 * 365;
+    private long seed = 42;
+    private String tickerPrefix = "SYN";
+
+    /**
+     * Sets the number of tickers of the universe.
+     *
+     * @param numTickers the number of tickers
+     * @return this builder
+     * @throws IllegalArgumentException if the number of tickers is not positive
+     */
+    public Builder setNumTickers(int numTickers) throws IllegalArgumentException {
+      if (numTickers <= 0) {
+        throw new IllegalArgumentException("Number of tickers has to be positive");
+      }
+      this.numTickers = numTickers;
+      return this;
+    }
+
+    /**
+     * Sets the number of days up to today for which the tickers have prices.
+     *
+     * @param historyInDays the number of days of history
+     * @return this builder
+     * @throws IllegalArgumentException if the number of days is not positive
+     */
+    public Builder setHistoryInDays(int historyInDays) throws IllegalArgumentException {
+      if (historyInDays <= 0) {
+        throw new IllegalArgumentException("History has to be positive");
+      }
+      this.historyInDays = historyInDays;
+      return this;
+    }
+
+    /**
+     * Sets the seed of the prices, the same seed always generates the same prices.
+     *
+     * @param seed the seed
+     * @return this builder
+     */
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Sets the prefix of the names of the tickers.
+     *
+     * @param tickerPrefix the prefix
+     * @return this builder
+     * @throws IllegalArgumentException if the prefix is null
+     */
+    public Builder setTickerPrefix(String tickerPrefix) throws IllegalArgumentException {
+      this.tickerPrefix = Utils.requireNonNull(tickerPrefix);
+      return this;
+    }
 
-    List<Date> dates = new ArrayList<>();
-    for (int i = 0; i < 100; i++) {
-      dates.add(calendar.getTime());
-      calendar.add(Calendar.DATE, -1);
+    /**
+     * Returns the name of the ticker at the given index of the universe.
+     *
+     * @param tickerIndex the index of the ticker, from 0 to the number of tickers - 1
+     * @return the name of the ticker
+     * @throws IllegalArgumentException if the index is out of range
+     */
+    public String getTickerName(int tickerIndex) throws IllegalArgumentException {
+      if (tickerIndex < 0 || tickerIndex >= numTickers) {
+        throw new IllegalArgumentException("Ticker index out of range");
+      }
+      return new SyntheticUniverse(numTickers, seed, tickerPrefix).getTickerName(tickerIndex);
     }
 
-    Collections.reverse(dates);
-    return dates;
+    /**
+     * Builds a {@link SimpleStockDataSource} over the synthetic universe.
+     *
+     * @return a {@link SimpleStockDataSource} over the synthetic universe
+     */
+    public SimpleStockDataSource build() {
+      return new SimpleStockDataSource(new SyntheticUniverse(numTickers, seed, tickerPrefix),
+              historyInDays);
+    }
+  }
+
+  private static class SyntheticUniverse {
+    private final int numTickers;
+    private final long seed;
+    private final String tickerPrefix;
+    private final int numDigits;
+
+    private SyntheticUniverse(int numTickers, long seed, String tickerPrefix) {
+      this.numTickers = numTickers;
+      this.seed = seed;
+      this.tickerPrefix = tickerPrefix;
+      this.numDigits = String.valueOf(numTickers - 1).length();
+    }
+
+    private String getTickerName(int tickerIndex) {
+      return String.format("%s%0" + numDigits + "d", tickerPrefix, tickerIndex);
+    }
+
+    private int getTickerIndex(String tickerName) {
+      if (Objects.isNull(tickerName)
+              || tickerName.length() != tickerPrefix.length() + numDigits
+              || !tickerName.startsWith(tickerPrefix)) {
+        return -1;
+      }
+      int tickerIndex = 0;
+      for (int i = tickerPrefix.length(); i < tickerName.length(); i++) {
+        char digit = tickerName.charAt(i);
+        if (digit < '0' || digit > '9') {
+          return -1;
+        }
+        tickerIndex = tickerIndex * 10 + (digit - '0');
+      }
+      return tickerIndex < numTickers ? tickerIndex : -1;
+    }
+
+    private PriceSeries generatePriceSeries(int tickerIndex, int firstEpochDay,
+                                            int lastEpochDay) {
+      SplittableRandom random = new SplittableRandom(seed * 31 + tickerIndex);
+      long unscaledPrice = (10 + random.nextInt(491)) * 100L;
+
+      // a step of at most two percent a weekday, never below a dollar
+      ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(SYNTHETIC_PRICE_SCALE);
+      for (int epochDay = firstEpochDay; epochDay <= lastEpochDay; epochDay++) {
+        if (Utils.isNonWorkingDayOfTheWeek(epochDay)) {
+          continue;
+        }
+        builder.add(epochDay, unscaledPrice);
+        unscaledPrice = Math.max(100L,
+                unscaledPrice + unscaledPrice * (random.nextInt(401) - 200) / 10000);
+      }
+      return builder.build();
+    }
   }
 }
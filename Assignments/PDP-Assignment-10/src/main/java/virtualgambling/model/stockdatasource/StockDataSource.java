@@ -2,6 +2,7 @@ package virtualgambling.model.stockdatasource;
 
 import java.util.Date;
 
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.StockPrice;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
 
@@ -20,4 +21,34 @@ public interface StockDataSource {
    *                                    found
    */
   StockPrice getPrice(String tickerName, Date date) throws StockDataNotFoundException;
+
+  /**
+   * Retrieves the stock prices of a given stock ticker for every trading day between the given
+   * dates (both inclusive). Only the date component of the given dates is considered.
+   *
+   * <p>The returned series is empty if the data source has no price for the ticker in the given
+   * range, days on which the stock was not traded are not part of the series.
+   *
+   * @param tickerName the ticker name of the stock
+   * @param fromDate   the first date of the range
+   * @param toDate     the last date of the range
+   * @return the prices of the stock between the given dates
+   * @throws StockDataNotFoundException if the stock data for the ticker is not found
+   * @throws IllegalArgumentException   if the fromDate is after the toDate
+   */
+  PriceSeries getPrices(String tickerName, Date fromDate, Date toDate)
+          throws StockDataNotFoundException, IllegalArgumentException;
+
+  /**
+   * Returns the calendar of the trading days of this data source, which knows the days of the
+   * prices this data source has loaded so far.
+   *
+   * <p>By default a calendar that knows no day is returned, hence the callers look up the prices
+   * instead.
+   *
+   * @return the trading calendar of this data source
+   */
+  default TradingCalendar getTradingCalendar() {
+    return new TradingCalendar();
+  }
 }
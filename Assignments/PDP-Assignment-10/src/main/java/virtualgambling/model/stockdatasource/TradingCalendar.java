@@ -0,0 +1,210 @@
+package virtualgambling.model.stockdatasource;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link TradingCalendar} knows the trading days of an exchange, built from the price series of
+ * its tickers: a day is a trading day if any series has a price for it. The calendar only knows
+ * the days between the first and the last day of some series added so far, any other day, such as
+ * a day between two series that do not overlap, is unknown and has to be resolved by looking up
+ * its prices.
+ *
+ * <p>The days are kept as a bit per day, along with a bit per day telling whether it is known,
+ * hence whether a day is a trading day is answered in constant time and the next or previous
+ * trading day is found by scanning the few bits of the weekend or holidays in between.
+ *
+ * <p>Adding days copies the bits, which only happens when a series with new days is loaded, and
+ * the queries read an immutable snapshot without locking. This class is thread-safe.
+ */
+public class TradingCalendar {
+  /**
+   * The day returned by the queries when the answer is not known to the calendar.
+   */
+  public static final int UNKNOWN_DAY = Integer.MIN_VALUE;
+
+  private volatile Snapshot snapshot = new Snapshot(new BitSet(), new BitSet(), 0, -1);
+
+  /**
+   * Adds the days of the given series to this calendar. Every day between the first and the last
+   * day of the series becomes known, the days without a price are holidays unless another series
+   * has a price for them.
+   *
+   * @param priceSeries the price series
+   * @throws IllegalArgumentException if the priceSeries is null
+   */
+  public void addTradingDays(PriceSeries priceSeries) throws IllegalArgumentException {
+    Utils.requireNonNull(priceSeries);
+    if (priceSeries.isEmpty()) {
+      return;
+    }
+    int firstEpochDay = priceSeries.getEpochDay(0);
+    BitSet tradingDays = new BitSet();
+    for (int i = 0; i < priceSeries.size(); i++) {
+      tradingDays.set(priceSeries.getEpochDay(i) - firstEpochDay);
+    }
+    addTradingDays(firstEpochDay, priceSeries.getEpochDay(priceSeries.size() - 1), tradingDays);
+  }
+
+  /**
+   * Adds the days between the given days (both inclusive) that match the given rule to this
+   * calendar, such as the weekdays of a data source without holidays.
+   *
+   * @param firstEpochDay the first day as a number of days since the epoch
+   * @param lastEpochDay  the last day as a number of days since the epoch
+   * @param isTradingDay  the rule that tells whether a day is a trading day
+   * @throws IllegalArgumentException if the isTradingDay is null or if the firstEpochDay is after
+   *                                  the lastEpochDay
+   */
+  public void addTradingDays(int firstEpochDay, int lastEpochDay, IntPredicate isTradingDay)
+          throws IllegalArgumentException {
+    Utils.requireNonNull(isTradingDay);
+    if (firstEpochDay > lastEpochDay) {
+      throw new IllegalArgumentException("First day cannot be after the last day");
+    }
+    BitSet tradingDays = new BitSet();
+    for (int epochDay = firstEpochDay; epochDay <= lastEpochDay; epochDay++) {
+      if (isTradingDay.test(epochDay)) {
+        tradingDays.set(epochDay - firstEpochDay);
+      }
+    }
+    addTradingDays(firstEpochDay, lastEpochDay, tradingDays);
+  }
+
+  /**
+   * Returns true if the given day is known to this calendar, that is whether it is a trading day
+   * can be answered.
+   *
+   * @param epochDay the day as a number of days since the epoch
+   * @return true if the given day is known, false otherwise
+   */
+  public boolean isKnownDay(int epochDay) {
+    return snapshot.isKnownDay(epochDay);
+  }
+
+  /**
+   * Returns true if the given day is known to be a trading day.
+   *
+   * @param epochDay the day as a number of days since the epoch
+   * @return true if the given day is a trading day, false if it is a holiday or is not known
+   */
+  public boolean isTradingDay(int epochDay) {
+    Snapshot current = this.snapshot;
+    return current.isKnownDay(epochDay)
+            && current.tradingDays.get(epochDay - current.firstEpochDay);
+  }
+
+  /**
+   * Returns the first trading day on or after the given day.
+   *
+   * @param epochDay the day as a number of days since the epoch
+   * @return the first trading day on or after the given day, or {@link #UNKNOWN_DAY} if the given
+   *         day is not known or no later known day is a trading day
+   */
+  public int getNextTradingDay(int epochDay) {
+    Snapshot current = this.snapshot;
+    if (!current.isKnownDay(epochDay)) {
+      return UNKNOWN_DAY;
+    }
+    int index = epochDay - current.firstEpochDay;
+    int tradingDayIndex = current.tradingDays.nextSetBit(index);
+    // a trading day after the next unknown day is not the next one
+    if (tradingDayIndex < 0 || tradingDayIndex >= current.knownDays.nextClearBit(index)) {
+      return UNKNOWN_DAY;
+    }
+    return current.firstEpochDay + tradingDayIndex;
+  }
+
+  /**
+   * Returns the last trading day on or before the given day.
+   *
+   * @param epochDay the day as a number of days since the epoch
+   * @return the last trading day on or before the given day, or {@link #UNKNOWN_DAY} if the given
+   *         day is not known or no earlier known day is a trading day
+   */
+  public int getPreviousTradingDay(int epochDay) {
+    Snapshot current = this.snapshot;
+    if (!current.isKnownDay(epochDay)) {
+      return UNKNOWN_DAY;
+    }
+    int index = epochDay - current.firstEpochDay;
+    int tradingDayIndex = current.tradingDays.previousSetBit(index);
+    // a trading day before the previous unknown day is not the previous one
+    if (tradingDayIndex < 0 || tradingDayIndex <= current.knownDays.previousClearBit(index)) {
+      return UNKNOWN_DAY;
+    }
+    return current.firstEpochDay + tradingDayIndex;
+  }
+
+  private synchronized void addTradingDays(int firstEpochDay, int lastEpochDay,
+                                           BitSet tradingDays) {
+    Snapshot current = this.snapshot;
+    if (current.containsAll(firstEpochDay, lastEpochDay, tradingDays)) {
+      return;
+    }
+
+    int mergedFirstEpochDay = current.isEmpty() ? firstEpochDay
+            : Math.min(current.firstEpochDay, firstEpochDay);
+    int mergedLastEpochDay = current.isEmpty() ? lastEpochDay
+            : Math.max(current.lastEpochDay, lastEpochDay);
+    BitSet mergedTradingDays = new BitSet();
+    BitSet mergedKnownDays = new BitSet();
+    copy(current.tradingDays, mergedTradingDays, current.firstEpochDay - mergedFirstEpochDay);
+    copy(current.knownDays, mergedKnownDays, current.firstEpochDay - mergedFirstEpochDay);
+    copy(tradingDays, mergedTradingDays, firstEpochDay - mergedFirstEpochDay);
+    mergedKnownDays.set(firstEpochDay - mergedFirstEpochDay,
+            lastEpochDay - mergedFirstEpochDay + 1);
+    this.snapshot = new Snapshot(mergedTradingDays, mergedKnownDays, mergedFirstEpochDay,
+            mergedLastEpochDay);
+  }
+
+  private static void copy(BitSet source, BitSet target, int offset) {
+    for (int i = source.nextSetBit(0); i >= 0; i = source.nextSetBit(i + 1)) {
+      target.set(i + offset);
+    }
+  }
+
+  private static class Snapshot {
+    // the bit of a day is its number of days after the first day
+    private final BitSet tradingDays;
+    // the days of the added series, the days between two series that do not overlap are unknown
+    private final BitSet knownDays;
+    private final int firstEpochDay;
+    private final int lastEpochDay;
+
+    private Snapshot(BitSet tradingDays, BitSet knownDays, int firstEpochDay, int lastEpochDay) {
+      this.tradingDays = tradingDays;
+      this.knownDays = knownDays;
+      this.firstEpochDay = firstEpochDay;
+      this.lastEpochDay = lastEpochDay;
+    }
+
+    private boolean isEmpty() {
+      return firstEpochDay > lastEpochDay;
+    }
+
+    private boolean isKnownDay(int epochDay) {
+      return firstEpochDay <= epochDay && epochDay <= lastEpochDay
+              && knownDays.get(epochDay - firstEpochDay);
+    }
+
+    private boolean containsAll(int otherFirstEpochDay, int otherLastEpochDay,
+                                BitSet otherTradingDays) {
+      if (!isKnownDay(otherFirstEpochDay) || !isKnownDay(otherLastEpochDay)
+              || knownDays.nextClearBit(otherFirstEpochDay - firstEpochDay)
+              <= otherLastEpochDay - firstEpochDay) {
+        return false;
+      }
+      int offset = otherFirstEpochDay - firstEpochDay;
+      for (int i = otherTradingDays.nextSetBit(0); i >= 0; i = otherTradingDays.nextSetBit(i + 1)) {
+        if (!tradingDays.get(i + offset)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
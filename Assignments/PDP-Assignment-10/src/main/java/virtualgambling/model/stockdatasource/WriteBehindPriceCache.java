@@ -0,0 +1,128 @@
+package virtualgambling.model.stockdatasource;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import util.Utils;
+import virtualgambling.model.bean.PriceSeries;
+
+/**
+ * {@link WriteBehindPriceCache} persists series to a {@link DiskPriceCache} on a background
+ * thread, hence the caller that loaded a series does not wait for the disk.
+ *
+ * <p>A series waiting to be written is returned by {@link #read(String)} in place of the one on
+ * disk. A series is written with the lock of its ticker, which is handed over by the caller and
+ * released once the series reached the disk, hence other processes waiting for the ticker read
+ * the written series. At most a fixed number of series wait to be written, once that many wait the
+ * caller writes its series itself, hence a slow disk slows down the callers instead of holding
+ * every series in memory.
+ *
+ * <p>Every file is replaced atomically by
+ * {@link DiskPriceCache#write(DiskPriceCache.TickerLock, PriceSeries)}. A series that fails to be
+ * written is dropped, as it is fetched again once it is missed.
+ *
+ * <p>This class is thread-safe.
+ */
+public class WriteBehindPriceCache {
+  private final DiskPriceCache diskPriceCache;
+  private final ConcurrentMap<String, PriceSeries> pendingWrites = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * Constructs a {@link WriteBehindPriceCache} in front of the given disk cache.
+   *
+   * @param diskPriceCache   the disk cache to write to
+   * @param maxPendingWrites the maximum number of series waiting to be written
+   * @param threadName       the name of the thread that writes the series
+   * @throws IllegalArgumentException if the diskPriceCache or threadName is null or if the
+   *                                  maxPendingWrites is not positive
+   */
+  public WriteBehindPriceCache(DiskPriceCache diskPriceCache, int maxPendingWrites,
+                               String threadName) throws IllegalArgumentException {
+    this.diskPriceCache = Utils.requireNonNull(diskPriceCache);
+    Utils.requireNonNull(threadName);
+    if (maxPendingWrites <= 0) {
+      throw new IllegalArgumentException("Maximum pending writes must be positive");
+    }
+    this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxPendingWrites), runnable -> {
+              Thread thread = new Thread(runnable, threadName);
+              thread.setDaemon(true);
+              return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  /**
+   * Reads the series of the given ticker, which is the series waiting to be written if there is
+   * one.
+   *
+   * @param tickerName the ticker name
+   * @return the series if the ticker is cached, empty otherwise
+   * @throws IOException if the cache file cannot be read or is corrupt
+   */
+  public Optional<PriceSeries> read(String tickerName) throws IOException {
+    PriceSeries pendingPriceSeries = pendingWrites.get(tickerName);
+    if (pendingPriceSeries != null) {
+      return Optional.of(pendingPriceSeries);
+    }
+    return diskPriceCache.read(tickerName);
+  }
+
+  /**
+   * Writes the given series as the series of the ticker of the given lock in the background. The
+   * lock is released once the series is written or failed to be.
+   *
+   * @param tickerLock  the held lock of the ticker, which is handed over to this cache
+   * @param priceSeries the series to write
+   * @throws IllegalArgumentException if any argument is null
+   */
+  public void write(DiskPriceCache.TickerLock tickerLock, PriceSeries priceSeries)
+          throws IllegalArgumentException {
+    Utils.requireNonNull(tickerLock);
+    Utils.requireNonNull(priceSeries);
+    // no other series of the ticker is pending, as it would hold the lock
+    pendingWrites.put(tickerLock.getTickerName(), priceSeries);
+    executor.execute(() -> persist(tickerLock, priceSeries));
+  }
+
+  /**
+   * Waits until every series written so far has reached the disk or failed to.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if no series is waiting to be written, false if the timeout elapsed
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public synchronized boolean awaitWrites(long timeout, TimeUnit unit)
+          throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!pendingWrites.isEmpty()) {
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+    }
+    return true;
+  }
+
+  private void persist(DiskPriceCache.TickerLock tickerLock, PriceSeries priceSeries) {
+    try {
+      diskPriceCache.write(tickerLock, priceSeries);
+    } catch (IOException | RuntimeException ignored) {
+      // the series is fetched again once it is missed
+    } finally {
+      // removed before the lock is released, as the next series of the ticker is pending then
+      pendingWrites.remove(tickerLock.getTickerName(), priceSeries);
+      tickerLock.close();
+    }
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+}
@@ -2,20 +2,25 @@ package virtualgambling.model.strategy;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
+import util.FixedPointDecimal;
 import util.Utils;
 import virtualgambling.model.bean.SharePurchaseOrder;
 import virtualgambling.model.bean.StockPrice;
+import virtualgambling.model.exceptions.BatchPriceLookupException;
 import virtualgambling.model.exceptions.StrategyExecutionException;
 import virtualgambling.model.factory.StockDAOFactory;
 import virtualgambling.model.factory.StockDAOType;
 import virtualgambling.model.factory.StockDataSourceType;
 import virtualgambling.model.stockdao.StockDAO;
+import virtualgambling.model.stockdatasource.TradingCalendar;
 
 /**
  * {@link RecurringWeightedInvestmentStrategy} is a strategy to invest in a set of stocks that takes
@@ -98,37 +103,58 @@ public class RecurringWeightedInvestmentStrategy implements Strategy {
       setEndDate(getDefaultEndDate());
     }
 
-    Calendar calendar = Utils.getCalendarInstance();
-    calendar.setTime(this.startDate);
-
     StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(stockDAOType,
             stockDataSourceType);
 
+    // the amount for a stock is the same on every date, only the price changes
+    Map<String, FixedPointDecimal> amountsAvailable = new HashMap<>();
+    for (Map.Entry<String, Double> tickerAndAmount : this.stockWeights.entrySet()) {
+      amountsAvailable.put(tickerAndAmount.getKey(), FixedPointDecimal.valueOf(
+              getAmountAvailableForThisStock(amountToInvest, tickerAndAmount.getValue())));
+    }
+
     List<SharePurchaseOrder> sharePurchaseOrders = new ArrayList<>();
 
-    while (calendar.getTime().compareTo(endDate) <= 0) {
-      Date dateOfPurchase = calendar.getTime();
+    TradingCalendar tradingCalendar = stockDAO.getTradingCalendar();
+    int endEpochDay = Utils.toEpochDay(endDate);
+    for (int epochDay = Utils.toEpochDay(this.startDate); epochDay <= endEpochDay;
+         epochDay += dayFrequency) {
+      // a holiday known to the calendar is moved to the next trading day without a lookup, any
+      // other day is resolved by the data source from its prices
+      int tradingEpochDay = tradingCalendar.getNextTradingDay(epochDay);
+      if (tradingEpochDay != TradingCalendar.UNKNOWN_DAY) {
+        epochDay = tradingEpochDay;
+      }
+      Date dateOfPurchase = Utils.fromEpochDay(epochDay);
+      Map<String, StockPrice> stockPrices;
+      Map<String, RuntimeException> failures;
+      try {
+        stockPrices = stockDAO.getPrices(this.stockWeights.keySet(), dateOfPurchase);
+        failures = Collections.emptyMap();
+      } catch (BatchPriceLookupException e) {
+        stockPrices = e.getStockPrices();
+        failures = e.getFailures();
+      }
+
       List<SharePurchaseOrder> purchaseOrders = new ArrayList<>();
-      for (Map.Entry<String, Double> tickerAndAmount : this.stockWeights.entrySet()) {
-        String tickerName = tickerAndAmount.getKey();
-        Double stockWeight = tickerAndAmount.getValue();
-        StockPrice stockPrice = stockDAO.getPrice(tickerName, dateOfPurchase);
-        BigDecimal amountAvailableForThisStock = getAmountAvailableForThisStock(amountToInvest,
-                stockWeight);
-        long quantity = getQuantityToBePurchased(stockPrice, amountAvailableForThisStock);
+      for (String tickerName : this.stockWeights.keySet()) {
+        if (failures.containsKey(tickerName)) {
+          throw failures.get(tickerName);
+        }
+        StockPrice stockPrice = stockPrices.get(tickerName);
+        long quantity = stockPrice.getQuantityPurchasable(amountsAvailable.get(tickerName));
         if (quantity <= 0) {
           break;
         }
-        SharePurchaseOrder purchaseOrder = stockDAO.createPurchaseOrder(tickerName, quantity,
-                dateOfPurchase);
-        calendar.setTime(purchaseOrder.getStockPrice().getDate());
+        SharePurchaseOrder purchaseOrder = new SharePurchaseOrder(tickerName, stockPrice,
+                quantity);
+        epochDay = Utils.toEpochDay(purchaseOrder.getStockPrice().getDate());
         purchaseOrders.add(purchaseOrder);
       }
       if (purchaseOrders.size() == this.stockWeights.size()) {
         // add only if all orders could be executed
         sharePurchaseOrders.addAll(purchaseOrders);
       }
-      calendar.add(Calendar.DATE, dayFrequency);
     }
     if (sharePurchaseOrders.isEmpty()) {
       throw new StrategyExecutionException("Unable to buy even a single stock");
@@ -136,10 +162,14 @@ public class RecurringWeightedInvestmentStrategy implements Strategy {
     return sharePurchaseOrders;
   }
 
-  private long getQuantityToBePurchased(StockPrice stockPrice,
-                                        BigDecimal amountAvailableForThisStock) {
-    return amountAvailableForThisStock.divide(stockPrice.getUnitPrice(),
-            BigDecimal.ROUND_DOWN).longValue();
+  @Override
+  public CompletableFuture<Void> prefetchPrices(StockDAOType stockDAOType,
+                                                StockDataSourceType stockDataSourceType)
+          throws IllegalArgumentException {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(
+            Utils.requireNonNull(stockDAOType), Utils.requireNonNull(stockDataSourceType));
+    Date lastDate = Objects.nonNull(this.endDate) ? this.endDate : getDefaultEndDate();
+    return stockDAO.prefetch(this.stockWeights.keySet(), this.startDate, lastDate);
   }
 
   private BigDecimal getAmountAvailableForThisStock(BigDecimal amountToInvest, Double stockWeight) {
@@ -180,7 +210,7 @@ public class RecurringWeightedInvestmentStrategy implements Strategy {
 
   private void checkStartDate(Date startDate) throws IllegalArgumentException {
     Utils.requireNonNull(startDate);
-    if (Utils.doesDatesHaveSameDay(Utils.getTodayDate(), startDate)) {
+    if (Utils.toEpochDay(startDate) == Utils.getTodayEpochDay()) {
       throw new IllegalArgumentException("Strategy cannot start from today");
     }
     if (Utils.isFutureDate(startDate)) {
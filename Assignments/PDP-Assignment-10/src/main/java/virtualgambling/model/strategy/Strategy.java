@@ -2,6 +2,7 @@ package virtualgambling.model.strategy;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import virtualgambling.model.bean.SharePurchaseOrder;
 import virtualgambling.model.exceptions.StrategyExecutionException;
@@ -30,4 +31,17 @@ public interface Strategy {
                                    StockDAOType stockDAOType,
                                    StockDataSourceType stockDataSourceType)
           throws IllegalArgumentException, StrategyExecutionException;
+
+  /**
+   * Loads the prices of every stock and day that this strategy may buy into the caches of the
+   * data source in the background, so that a later execution is served from the caches.
+   *
+   * @param stockDAOType        the type of stockDAO to use
+   * @param stockDataSourceType the type of stockDataSource to use
+   * @return a future that is completed, never exceptionally, once the prices are loaded
+   * @throws IllegalArgumentException if any of the given params are null
+   */
+  CompletableFuture<Void> prefetchPrices(StockDAOType stockDAOType,
+                                         StockDataSourceType stockDataSourceType)
+          throws IllegalArgumentException;
 }
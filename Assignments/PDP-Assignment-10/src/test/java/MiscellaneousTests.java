@@ -2,18 +2,56 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.math.BigDecimal;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import util.CircuitBreaker;
+import util.ConcurrentLRUCache;
 import util.Constants;
+import util.FixedPointDecimal;
+import util.ScheduledRetryer;
+import util.SingleFlight;
 import util.TestUtils;
+import util.TokenBucket;
 import util.Utils;
 import virtualgambling.controller.Controller;
 import virtualgambling.controller.EnhancedTradingController;
@@ -21,17 +59,44 @@ import virtualgambling.controller.OrchestratorController;
 import virtualgambling.controller.TradingController;
 import virtualgambling.model.EnhancedUserModel;
 import virtualgambling.model.UserModel;
+import virtualgambling.model.bean.ArrayPriceSeries;
 import virtualgambling.model.bean.Portfolio;
+import virtualgambling.model.bean.PriceSeries;
 import virtualgambling.model.bean.SharePurchaseOrder;
 import virtualgambling.model.bean.StockPrice;
+import virtualgambling.model.exceptions.APILimitExceededException;
+import virtualgambling.model.exceptions.ApiKeyLeaseTimeoutException;
+import virtualgambling.model.exceptions.BatchPriceLookupException;
 import virtualgambling.model.exceptions.InsufficientCapitalException;
 import virtualgambling.model.exceptions.PortfolioNotFoundException;
+import virtualgambling.model.exceptions.RetryException;
 import virtualgambling.model.exceptions.StockDataNotFoundException;
 import virtualgambling.model.exceptions.StrategyExecutionException;
+import virtualgambling.model.factory.StockDAOFactory;
 import virtualgambling.model.factory.StockDAOType;
 import virtualgambling.model.factory.StockDataSourceType;
+import virtualgambling.model.stockdao.SimpleStockDAO;
+import virtualgambling.model.stockdao.StockDAO;
 import virtualgambling.model.stockdatasource.AlphaVantageAPIStockDataSource;
+import virtualgambling.model.stockdatasource.AlphaVantageStandInServer;
+import virtualgambling.model.stockdatasource.ApiKeyPool;
+import virtualgambling.model.stockdatasource.AsyncStockDataSource;
+import virtualgambling.model.stockdatasource.AsyncStockDataSourceAdapter;
+import virtualgambling.model.stockdatasource.CachedPriceSeries;
+import virtualgambling.model.stockdatasource.CachingStockDataSource;
+import virtualgambling.model.stockdatasource.DiskPriceCache;
+import virtualgambling.model.stockdatasource.DiskPriceCacheTier;
+import virtualgambling.model.stockdatasource.MemoryPriceCacheTier;
+import virtualgambling.model.stockdatasource.NegativePriceCache;
+import virtualgambling.model.stockdatasource.PipelinedInputStream;
+import virtualgambling.model.stockdatasource.PriceCacheTier;
+import virtualgambling.model.stockdatasource.PriceCsvReader;
+import virtualgambling.model.stockdatasource.PriceHistoryImporter;
+import virtualgambling.model.stockdatasource.SimpleStockDataSource;
 import virtualgambling.model.stockdatasource.StockDataSource;
+import virtualgambling.model.stockdatasource.TradingCalendar;
+import virtualgambling.model.stockdatasource.WriteBehindPriceCache;
+import virtualgambling.model.strategy.RecurringWeightedInvestmentStrategy;
 import virtualgambling.model.strategy.Strategy;
 import virtualgambling.view.TextView;
 import virtualgambling.view.View;
@@ -419,6 +484,1703 @@ public class MiscellaneousTests {
   // end of AlphaVantageAPIStockDataSource tests
 
 
+  // start of StockDAO range query tests
+  @Test
+  public void getPricesOfMockDataSourceMatchesSinglePriceLookups() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.MOCK);
+    Calendar calendar = Utils.getCalendarInstance();
+    calendar.set(2018, Calendar.OCTOBER, 30);
+    Date fromDate = calendar.getTime();
+    Date toDate = TestUtils.getValidDateForTrading();
+
+    PriceSeries priceSeries = stockDAO.getPrices("AAPL", fromDate, toDate);
+    Assert.assertEquals(3, priceSeries.size());
+    for (int i = 0; i < priceSeries.size(); i++) {
+      StockPrice stockPrice = priceSeries.getStockPrice(i);
+      Assert.assertEquals(stockDAO.getPrice("AAPL", stockPrice.getDate()), stockPrice);
+    }
+  }
+
+  @Test
+  public void getPricesOfSimpleDataSourceSkipsWeekends() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.SIMPLE);
+    Calendar calendar = Utils.getCalendarInstance();
+    calendar.add(Calendar.DATE, -13);
+    Date fromDate = calendar.getTime();
+
+    PriceSeries priceSeries = stockDAO.getPrices("GOOG", fromDate, TestUtils.getFutureTime());
+    Assert.assertEquals(10, priceSeries.size());
+    for (int i = 0; i < priceSeries.size(); i++) {
+      StockPrice stockPrice = priceSeries.getStockPrice(i);
+      Assert.assertFalse(Utils.isNonWorkingDayOfTheWeek(stockPrice.getDate()));
+      Assert.assertEquals(stockDAO.getPrice("GOOG", stockPrice.getDate()), stockPrice);
+    }
+  }
+
+  @Test
+  public void getPricesFailsIfFromDateIsAfterToDate() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.MOCK);
+    Calendar calendar = Utils.getCalendarInstance();
+    calendar.set(2018, Calendar.OCTOBER, 30);
+    try {
+      stockDAO.getPrices("AAPL", TestUtils.getValidDateForTrading(), calendar.getTime());
+      Assert.fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("From date cannot be after the to date", e.getMessage());
+    }
+  }
+
+  @Test
+  public void batchGetPricesReturnsPriceOfEveryTicker() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.MOCK);
+    Date date = TestUtils.getValidDateForTrading();
+    Set<String> tickerNames = new LinkedHashSet<>(Arrays.asList("GOOG", "AAPL", "FB", "NFLX"));
+
+    Map<String, StockPrice> stockPrices = stockDAO.getPrices(tickerNames, date);
+    Assert.assertEquals(new ArrayList<>(tickerNames), new ArrayList<>(stockPrices.keySet()));
+    for (String tickerName : tickerNames) {
+      Assert.assertEquals(stockDAO.getPrice(tickerName, date), stockPrices.get(tickerName));
+    }
+  }
+
+  @Test
+  public void batchGetPricesReportsFailuresPerTicker() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.MOCK);
+    Set<String> tickerNames = new LinkedHashSet<>(Arrays.asList("GOOG", "XYZ", "FB", "ABC"));
+    try {
+      stockDAO.getPrices(tickerNames, TestUtils.getValidDateForTrading());
+      Assert.fail("should have failed");
+    } catch (BatchPriceLookupException e) {
+      Assert.assertEquals(Arrays.asList("GOOG", "FB"),
+              new ArrayList<>(e.getStockPrices().keySet()));
+      Assert.assertEquals(Arrays.asList("XYZ", "ABC"), new ArrayList<>(e.getFailures().keySet()));
+      Assert.assertTrue(e.getFirstFailure() instanceof StockDataNotFoundException);
+    }
+  }
+
+  @Test
+  public void batchGetPricesReportsFailureOfSingleTickerLikeBatch() {
+    StockDAO stockDAO = new SimpleStockDAO(new SimpleStockDataSource() {
+      @Override
+      public StockPrice getPrice(String tickerName, Date date) {
+        throw new RetryException("failed to get results");
+      }
+    });
+    Set<String> tickerNames = Collections.singleton("AAPL");
+    try {
+      stockDAO.getPrices(tickerNames, TestUtils.getValidDateForTrading());
+      Assert.fail("should have failed");
+    } catch (BatchPriceLookupException e) {
+      Assert.assertTrue(e.getStockPrices().isEmpty());
+      Assert.assertTrue(e.getFailures().get("AAPL") instanceof RetryException);
+    }
+    try {
+      stockDAO.getPrices(tickerNames, Utils.fromEpochDay(Utils.getTodayEpochDay() + 1));
+      Assert.fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Cannot buy shares at given time", e.getMessage());
+    }
+  }
+  // end of StockDAO range query tests
+
+
+  // start of PriceSeries tests
+  @Test
+  public void priceSeriesIsSortedAndKeepsLatestDuplicate() {
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(2)
+            .add(10, 100)
+            .add(12, 120)
+            .add(11, 110)
+            .add(12, 125)
+            .build();
+
+    Assert.assertEquals(3, priceSeries.size());
+    Assert.assertEquals(10, priceSeries.getEpochDay(0));
+    Assert.assertEquals(11, priceSeries.getEpochDay(1));
+    Assert.assertEquals(12, priceSeries.getEpochDay(2));
+    Assert.assertEquals(125, priceSeries.getUnscaledPrice(2));
+  }
+
+  @Test
+  public void priceSeriesBuiltInDescendingOrderIsReversed() {
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(4)
+            .add(20, new BigDecimal("222.22"))
+            .add(15, new BigDecimal("172.2900"))
+            .build();
+
+    Assert.assertEquals(15, priceSeries.getEpochDay(0));
+    Assert.assertEquals(new BigDecimal("172.2900"), priceSeries.getStockPrice(0).getUnitPrice());
+    Assert.assertEquals(new BigDecimal("222.2200"), priceSeries.getStockPrice(1).getUnitPrice());
+  }
+
+  @Test
+  public void priceSeriesFloorAndCeilingLookupsWork() {
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(0)
+            .add(10, 1)
+            .add(13, 2)
+            .add(14, 3)
+            .build();
+
+    Assert.assertEquals(0, priceSeries.ceilingIndex(10));
+    Assert.assertEquals(1, priceSeries.ceilingIndex(11));
+    Assert.assertEquals(-1, priceSeries.ceilingIndex(15));
+    Assert.assertEquals(0, priceSeries.floorIndex(12));
+    Assert.assertEquals(-1, priceSeries.floorIndex(9));
+    Assert.assertEquals(2, priceSeries.floorIndex(20));
+    Assert.assertTrue(priceSeries.isInRange(12));
+    Assert.assertFalse(priceSeries.isInRange(15));
+  }
+
+  @Test
+  public void priceSeriesStockPriceHasDateWithoutTime() {
+    Date validDateForTrading = TestUtils.getValidDateForTrading();
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(0)
+            .add(Utils.toEpochDay(validDateForTrading), 10)
+            .build();
+
+    Assert.assertEquals(Utils.removeTimeFromDate(validDateForTrading),
+            priceSeries.getStockPrice(0).getDate());
+  }
+
+  @Test
+  public void priceSeriesWrittenToDiskCacheIsReadBack() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+    Assert.assertFalse(diskPriceCache.read("AAPL").isPresent());
+
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(4)
+            .add(17000, 1722900)
+            .add(17001, 1746200)
+            .add(17004, 2222200)
+            .build();
+    diskPriceCache.write("AAPL", priceSeries);
+
+    PriceSeries readPriceSeries = diskPriceCache.read("AAPL").orElseThrow(AssertionError::new);
+    Assert.assertEquals(3, readPriceSeries.size());
+    Assert.assertEquals(4, readPriceSeries.getScale());
+    Assert.assertEquals(2, readPriceSeries.ceilingIndex(17002));
+    Assert.assertEquals(new BigDecimal("174.6200"),
+            readPriceSeries.getStockPrice(1).getUnitPrice());
+  }
+
+  @Test
+  public void rewritingDiskCacheKeepsPreviouslyReadSeriesIntact() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+    diskPriceCache.write("AAPL", new ArrayPriceSeries.Builder(4)
+            .add(17000, 1722900)
+            .add(17001, 1746200)
+            .build());
+    PriceSeries oldPriceSeries = diskPriceCache.read("AAPL").orElseThrow(AssertionError::new);
+
+    diskPriceCache.write("AAPL", new ArrayPriceSeries.Builder(4).add(17005, 100).build());
+
+    Assert.assertEquals(2, oldPriceSeries.size());
+    Assert.assertEquals(1746200, oldPriceSeries.getUnscaledPrice(1));
+    PriceSeries newPriceSeries = diskPriceCache.read("AAPL").orElseThrow(AssertionError::new);
+    Assert.assertEquals(1, newPriceSeries.size());
+    Assert.assertEquals(17005, newPriceSeries.getEpochDay(0));
+    try (Stream<Path> files = Files.list(rootPath.resolve("AAPL"))) {
+      // the lock file stays next to the cache file
+      Assert.assertEquals(1, files.filter(path -> !path.endsWith("data.lock")).count());
+    }
+  }
+
+  @Test
+  public void diskCacheStoresDeltaEncodedSeriesCompactly() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+    Random random = new Random(11);
+    ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(4);
+    long unscaledPrice = 1722900;
+    for (int epochDay = 10000; epochDay < 17000; epochDay++) {
+      if (!Utils.isNonWorkingDayOfTheWeek(epochDay)) {
+        unscaledPrice += (random.nextInt(2001) - 1000) * 100;
+        builder.add(epochDay, unscaledPrice);
+      }
+    }
+    PriceSeries priceSeries = builder.build();
+    diskPriceCache.write("AAPL", priceSeries);
+
+    PriceSeries readPriceSeries = diskPriceCache.read("AAPL").orElseThrow(AssertionError::new);
+    Assert.assertEquals(priceSeries.size(), readPriceSeries.size());
+    Assert.assertEquals(4, readPriceSeries.getScale());
+    for (int i = 0; i < priceSeries.size(); i++) {
+      Assert.assertEquals(priceSeries.getEpochDay(i), readPriceSeries.getEpochDay(i));
+      Assert.assertEquals(priceSeries.getUnscaledPrice(i), readPriceSeries.getUnscaledPrice(i));
+    }
+    // a fixed width entry takes twelve bytes
+    Assert.assertTrue(Files.size(rootPath.resolve("AAPL").resolve("data.bin"))
+            < priceSeries.size() * 4L);
+
+    PriceSeries extremes = new ArrayPriceSeries.Builder(2)
+            .add(-30000, Long.MAX_VALUE)
+            .add(0, Long.MIN_VALUE)
+            .add(30000, 0)
+            .build();
+    diskPriceCache.write("EXTREMES", extremes);
+    PriceSeries readExtremes = diskPriceCache.read("EXTREMES").orElseThrow(AssertionError::new);
+    for (int i = 0; i < extremes.size(); i++) {
+      Assert.assertEquals(extremes.getEpochDay(i), readExtremes.getEpochDay(i));
+      Assert.assertEquals(extremes.getUnscaledPrice(i), readExtremes.getUnscaledPrice(i));
+    }
+  }
+
+  @Test
+  public void diskCacheReadsFixedWidthFilesOfFirstVersion() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    Files.createDirectories(rootPath.resolve("AAPL"));
+    // header, two epoch days padded to eight bytes and two prices
+    ByteBuffer buffer = ByteBuffer.allocate(16 + 8 + 16);
+    buffer.putInt(0x50524353).putInt(1).putInt(2).putInt(4)
+            .putInt(17000).putInt(17001)
+            .putLong(1722900).putLong(1746200);
+    Files.write(rootPath.resolve("AAPL").resolve("data.bin"), buffer.array());
+
+    PriceSeries priceSeries = new DiskPriceCache(rootPath).read("AAPL")
+            .orElseThrow(AssertionError::new);
+    Assert.assertEquals(2, priceSeries.size());
+    Assert.assertEquals(17001, priceSeries.getEpochDay(1));
+    Assert.assertEquals(new BigDecimal("174.6200"), priceSeries.getStockPrice(1).getUnitPrice());
+
+    Files.write(rootPath.resolve("AAPL").resolve("data.bin"),
+            Arrays.copyOf(buffer.array(), 20));
+    try {
+      new DiskPriceCache(rootPath).read("AAPL");
+      Assert.fail("should have failed");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+  // end of PriceSeries tests
+
+
+  // start of ConcurrentLRUCache tests
+  @Test
+  public void cacheEvictsLeastRecentlyUsedEntryWhenWeightIsExceeded() {
+    ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<>(10, String::length, 1);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    Assert.assertEquals("aaaa", cache.get("a"));
+
+    cache.put("c", "cccc");
+    Assert.assertEquals("aaaa", cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertEquals("cccc", cache.get("c"));
+    Assert.assertEquals(8, cache.getWeight());
+  }
+
+  @Test
+  public void cacheReplacingValueUpdatesWeight() {
+    ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<>(10, String::length, 1);
+    cache.put("a", "aaaaaaaa");
+    cache.put("a", "aa");
+    cache.put("b", "bbbbbbbb");
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(10, cache.getWeight());
+
+    Assert.assertEquals("aa", cache.remove("a"));
+    Assert.assertEquals(8, cache.getWeight());
+  }
+
+  @Test
+  public void cacheCanBeUsedFromMultipleThreads() throws InterruptedException {
+    ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(1000, value -> 1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      int offset = i * 10_000;
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 10_000; j++) {
+          cache.put(offset + j, j);
+          cache.get(offset + j / 2);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertTrue(cache.getWeight() <= 1000);
+    Assert.assertEquals(cache.size(), cache.getWeight());
+  }
+  // end of ConcurrentLRUCache tests
+
+
+  // start of SingleFlight tests
+  @Test
+  public void concurrentLoadsOfSameKeyRunLoaderOnce() throws InterruptedException {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    AtomicInteger loaderInvocations = new AtomicInteger();
+    CountDownLatch loaderStarted = new CountDownLatch(1);
+    CountDownLatch releaseLoader = new CountDownLatch(1);
+    List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+
+    Runnable load = () -> results.add(singleFlight.execute("AAPL", () -> {
+      loaderInvocations.incrementAndGet();
+      loaderStarted.countDown();
+      try {
+        releaseLoader.await();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return 42;
+    }));
+
+    Thread leader = new Thread(load);
+    leader.start();
+    loaderStarted.await();
+
+    List<Thread> followers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread follower = new Thread(load);
+      followers.add(follower);
+      follower.start();
+    }
+    while (followers.stream().anyMatch(thread -> thread.getState() != Thread.State.WAITING)) {
+      Thread.sleep(1);
+    }
+    releaseLoader.countDown();
+
+    leader.join();
+    for (Thread follower : followers) {
+      follower.join();
+    }
+    Assert.assertEquals(1, loaderInvocations.get());
+    Assert.assertEquals(Arrays.asList(42, 42, 42, 42, 42), results);
+    Assert.assertEquals(0, singleFlight.getInFlightCount());
+  }
+
+  @Test
+  public void failedLoadIsNotRemembered() {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    try {
+      singleFlight.execute("AAPL", () -> {
+        throw new StockDataNotFoundException("Stock Data not found");
+      });
+      Assert.fail("should have failed");
+    } catch (StockDataNotFoundException e) {
+      Assert.assertEquals("Stock Data not found", e.getMessage());
+    }
+    Assert.assertEquals(Integer.valueOf(1), singleFlight.execute("AAPL", () -> 1));
+  }
+  // end of SingleFlight tests
+
+
+  // start of AsyncStockDataSource tests
+  @Test
+  public void asyncAdapterCompletesExceptionallyForUnknownTicker() {
+    AsyncStockDataSource asyncStockDataSource = new AsyncStockDataSourceAdapter(
+            new SimpleStockDataSource(), Runnable::run);
+    CompletableFuture<StockPrice> stockPrice =
+            asyncStockDataSource.getPriceAsync("XYZ", TestUtils.getValidDateForTrading());
+    Assert.assertTrue(stockPrice.isCompletedExceptionally());
+    try {
+      Utils.join(stockPrice);
+      Assert.fail("should have failed");
+    } catch (StockDataNotFoundException e) {
+      Assert.assertTrue(e.getMessage().startsWith("Stock Data not found for Stock:XYZ"));
+    }
+  }
+
+  @Test
+  public void asyncBatchGetPricesComposesPriceOfEveryTicker() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.MOCK);
+    Date date = TestUtils.getValidDateForTrading();
+    Set<String> tickerNames = new LinkedHashSet<>(Arrays.asList("GOOG", "AAPL", "FB"));
+
+    BigDecimal total = stockDAO.getPricesAsync(tickerNames, date)
+            .thenApply(stockPrices -> stockPrices.values().stream()
+                    .map(StockPrice::getUnitPrice)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add))
+            .join();
+    BigDecimal expectedTotal = BigDecimal.ZERO;
+    for (String tickerName : tickerNames) {
+      expectedTotal = expectedTotal.add(stockDAO.getPrice(tickerName, date).getUnitPrice());
+    }
+    Assert.assertEquals(expectedTotal, total);
+  }
+  // end of AsyncStockDataSource tests
+
+
+  // start of ScheduledRetryer tests
+  @Test
+  public void retryerRetriesWithBackOffUntilFunctionSucceeds() {
+    AtomicInteger attempts = new AtomicInteger();
+    ScheduledRetryer<String, Integer, Integer> retryer =
+            new ScheduledRetryer.RetryerBuilder<String, Integer, Integer>((ticker, day) -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new APILimitExceededException("API Limit exceeded");
+              }
+              return day;
+            })
+                    .setNumRetries(5)
+                    .setBackOffMillis(1, 4)
+                    .setExceptionClass(APILimitExceededException.class)
+                    .createRetryer();
+
+    Assert.assertEquals(Integer.valueOf(17000), retryer.retryAsync("AAPL", 17000).join());
+    Assert.assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void retryerGivesUpAfterNumRetriesAndPropagatesOtherExceptions() {
+    ScheduledRetryer<String, Integer, Integer> retryer =
+            new ScheduledRetryer.RetryerBuilder<String, Integer, Integer>((ticker, day) -> {
+              if (day > 0) {
+                throw new APILimitExceededException("API Limit exceeded");
+              }
+              throw new StockDataNotFoundException("Stock Data not found");
+            })
+                    .setNumRetries(3)
+                    .setBackOffMillis(1, 1)
+                    .setExceptionClass(APILimitExceededException.class)
+                    .createRetryer();
+
+    try {
+      retryer.retry("AAPL", 1);
+      Assert.fail("should have failed");
+    } catch (RetryException e) {
+      Assert.assertEquals("failed to get results after retrying 3 number of times",
+              e.getMessage());
+    }
+    try {
+      retryer.retry("AAPL", 0);
+      Assert.fail("should have failed");
+    } catch (StockDataNotFoundException e) {
+      Assert.assertEquals("Stock Data not found", e.getMessage());
+    }
+  }
+
+  @Test
+  public void openCircuitFailsFastWithoutCallingFunction() {
+    AtomicInteger attempts = new AtomicInteger();
+    CircuitBreaker circuitBreaker = new CircuitBreaker(2, 1, TimeUnit.HOURS);
+    ScheduledRetryer<String, Integer, Integer> retryer =
+            new ScheduledRetryer.RetryerBuilder<String, Integer, Integer>((ticker, day) -> {
+              attempts.incrementAndGet();
+              throw new APILimitExceededException("API Limit exceeded");
+            })
+                    .setNumRetries(10)
+                    .setBackOffMillis(1, 1)
+                    .setExceptionClass(APILimitExceededException.class)
+                    .setCircuitBreaker(circuitBreaker)
+                    .createRetryer();
+
+    try {
+      retryer.retry("AAPL", 1);
+      Assert.fail("should have failed");
+    } catch (RetryException e) {
+      Assert.assertEquals("failed to get results as the circuit is open", e.getMessage());
+    }
+    Assert.assertEquals(2, attempts.get());
+    Assert.assertFalse(circuitBreaker.isCallPermitted());
+
+    try {
+      Utils.join(retryer.retryAsync("GOOG", 1));
+      Assert.fail("should have failed");
+    } catch (RetryException e) {
+      Assert.assertEquals("failed to get results as the circuit is open", e.getMessage());
+    }
+    Assert.assertEquals(2, attempts.get());
+  }
+
+  @Test
+  public void retryerRunsBurstOfCallsOnBoundedThreads() {
+    Set<Thread> workers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    ScheduledRetryer<String, Integer, Integer> retryer =
+            new ScheduledRetryer.RetryerBuilder<String, Integer, Integer>((ticker, day) -> {
+              workers.add(Thread.currentThread());
+              try {
+                Thread.sleep(5);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return day;
+            })
+                    .setDeadlineMillis(60000)
+                    .createRetryer();
+
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      results.add(retryer.retryAsync("AAPL", i));
+    }
+    for (int i = 0; i < 200; i++) {
+      Assert.assertEquals(Integer.valueOf(i), results.get(i).join());
+    }
+    Assert.assertTrue(workers.size() <= 16);
+  }
+
+  @Test
+  public void callWithDeadlineCapsDeadlineOfRetryers() throws Exception {
+    ScheduledRetryer<String, Integer, Integer> retryer =
+            new ScheduledRetryer.RetryerBuilder<String, Integer, Integer>((ticker, day) -> {
+              throw new APILimitExceededException("API Limit exceeded");
+            })
+                    .setNumRetries(1000)
+                    .setBackOffMillis(20, 20)
+                    .setDeadlineMillis(60000)
+                    .setExceptionClass(APILimitExceededException.class)
+                    .createRetryer();
+
+    long startNanos = System.nanoTime();
+    try {
+      ScheduledRetryer.callWithDeadline(100, () -> {
+        Assert.assertTrue(ScheduledRetryer.getRemainingNanosOfCurrentCall().getAsLong()
+                <= TimeUnit.MILLISECONDS.toNanos(100));
+        return retryer.retry("AAPL", 1);
+      });
+      Assert.fail("should have failed");
+    } catch (RetryException e) {
+      Assert.assertEquals("failed to get results within the deadline of the call", e.getMessage());
+    }
+    Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(10));
+    Assert.assertFalse(ScheduledRetryer.getRemainingNanosOfCurrentCall().isPresent());
+  }
+  // end of ScheduledRetryer tests
+
+
+  // start of ApiKeyPool tests
+  @Test
+  public void tokenBucketPermitsCapacityPerPeriod() {
+    TokenBucket tokenBucket = new TokenBucket(2, 1, TimeUnit.HOURS);
+    Assert.assertEquals(2, tokenBucket.getAvailablePermits());
+    Assert.assertTrue(tokenBucket.tryAcquire());
+    Assert.assertTrue(tokenBucket.tryAcquire());
+    Assert.assertFalse(tokenBucket.tryAcquire());
+    Assert.assertTrue(tokenBucket.getNanosUntilAvailable() > TimeUnit.MINUTES.toNanos(29));
+  }
+
+  @Test
+  public void apiKeyPoolLeasesEveryKeyWithinItsQuota() throws InterruptedException {
+    ApiKeyPool apiKeyPool = new ApiKeyPool(Arrays.asList("KEY1", "KEY2"), 1, 500);
+    Set<String> leasedKeys = new LinkedHashSet<>();
+    leasedKeys.add(apiKeyPool.lease(0, TimeUnit.SECONDS));
+    leasedKeys.add(apiKeyPool.lease(0, TimeUnit.SECONDS));
+    Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("KEY1", "KEY2")), leasedKeys);
+
+    try {
+      apiKeyPool.lease(1, TimeUnit.SECONDS);
+      Assert.fail("should have failed");
+    } catch (ApiKeyLeaseTimeoutException e) {
+      Assert.assertEquals("No API key is available within the deadline", e.getMessage());
+    }
+  }
+
+  @Test
+  public void queuedApiKeyLeasesDoNotOpenCircuit() throws Exception {
+    // a key refills every 100 milliseconds once it is drained
+    ApiKeyPool apiKeyPool = new ApiKeyPool(Collections.singletonList("KEY1"), 600, 100000);
+    apiKeyPool.reportLimitExceeded("KEY1");
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1, TimeUnit.MINUTES);
+    BiFunction<String, Long, String> leaseKey = (name, fallbackTimeoutMillis) -> {
+      try {
+        long timeoutNanos = ScheduledRetryer.getRemainingNanosOfCurrentCall()
+                .orElse(TimeUnit.MILLISECONDS.toNanos(fallbackTimeoutMillis));
+        return apiKeyPool.lease(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+    ScheduledRetryer<String, Long, String> retryer = new ScheduledRetryer.RetryerBuilder<>(leaseKey)
+            .setNumRetries(3)
+            .setDeadlineMillis(10000)
+            .setExceptionClass(APILimitExceededException.class)
+            .setCircuitBreaker(circuitBreaker)
+            .createRetryer();
+
+    // more callers than the bucket holds wait in the queue until their permit is due
+    List<CompletableFuture<String>> leases = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      leases.add(retryer.retryAsync("caller" + i, 0L));
+    }
+    for (CompletableFuture<String> lease : leases) {
+      Assert.assertEquals("KEY1", lease.get(10, TimeUnit.SECONDS));
+    }
+    Assert.assertTrue(circuitBreaker.isCallPermitted());
+
+    // a caller whose deadline passes before its permit gives up without opening the circuit
+    ScheduledRetryer<String, Long, String> impatientRetryer =
+            new ScheduledRetryer.RetryerBuilder<>(leaseKey)
+                    .setNumRetries(3)
+                    .setDeadlineMillis(1)
+                    .setExceptionClass(APILimitExceededException.class)
+                    .setCircuitBreaker(circuitBreaker)
+                    .createRetryer();
+    apiKeyPool.reportLimitExceeded("KEY1");
+    try {
+      impatientRetryer.retry("impatient", 0L);
+      Assert.fail("should have failed");
+    } catch (ApiKeyLeaseTimeoutException e) {
+      Assert.assertTrue(circuitBreaker.isCallPermitted());
+    }
+  }
+
+  @Test
+  public void apiKeyPoolSkipsKeyThatExceededItsLimit() throws InterruptedException {
+    ApiKeyPool apiKeyPool = new ApiKeyPool(Arrays.asList("KEY1", "KEY2"), 5, 500);
+    apiKeyPool.reportLimitExceeded("KEY1");
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("KEY2", apiKeyPool.lease(0, TimeUnit.SECONDS));
+    }
+  }
+  // end of ApiKeyPool tests
+
+
+  // start of AlphaVantageStandInServer tests
+  @Test
+  public void standInServerServesLatestDaysOfAnySymbolFirst() throws IOException {
+    AlphaVantageStandInServer server = new AlphaVantageStandInServer.Builder()
+            .setHistoryInDays(365)
+            .build();
+    server.start();
+    try {
+      URL url = new URL(server.getBaseUrl() + "function=TIME_SERIES_DAILY&outputsize=compact" +
+              "&symbol=XYZ&apikey=KEY1&datatype=csv");
+      List<String> rows = new ArrayList<>();
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()))) {
+        Assert.assertEquals("timestamp,open,high,low,close,volume", reader.readLine());
+        String row;
+        while ((row = reader.readLine()) != null) {
+          rows.add(row);
+        }
+      }
+      Assert.assertEquals(100, rows.size());
+      Assert.assertTrue(rows.get(0).compareTo(rows.get(1)) > 0);
+      Assert.assertEquals(1, server.getRequestCount());
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void alphaVantageDataSourceFetchesFromStandInServer() throws IOException,
+          InterruptedException {
+    AlphaVantageStandInServer server = new AlphaVantageStandInServer.Builder()
+            .setHistoryInDays(365)
+            .build();
+    server.start();
+    AlphaVantageAPIStockDataSource dataSource = AlphaVantageAPIStockDataSource.getInstance();
+    String baseUrl = dataSource.getBaseUrl();
+    Path tickerFolderPath = Paths.get("StocksPriceCache", "STANDIN");
+    deleteRecursively(tickerFolderPath);
+    try {
+      dataSource.setBaseUrl(server.getBaseUrl());
+      Date date = new Date(Utils.getTodayDate().getTime() - TimeUnit.DAYS.toMillis(30));
+      StockPrice stockPrice = dataSource.getPrice("STANDIN", date);
+      Assert.assertEquals(4, stockPrice.getUnitPrice().scale());
+      Assert.assertEquals(stockPrice, dataSource.getPrice("STANDIN", date));
+      Assert.assertEquals(1, server.getRequestCount());
+    } finally {
+      dataSource.setBaseUrl(baseUrl);
+      server.stop();
+      dataSource.awaitDiskCacheWrites(10, TimeUnit.SECONDS);
+      deleteRecursively(tickerFolderPath);
+    }
+  }
+
+  @Test
+  public void errorResponseOfStandInServerFailsWithStockDataNotFound() throws IOException,
+          InterruptedException {
+    AlphaVantageStandInServer server = new AlphaVantageStandInServer.Builder()
+            .setErrorProbability(1)
+            .build();
+    server.start();
+    AlphaVantageAPIStockDataSource dataSource = AlphaVantageAPIStockDataSource.getInstance();
+    String baseUrl = dataSource.getBaseUrl();
+    Path tickerFolderPath = Paths.get("StocksPriceCache", "STANDINERROR");
+    deleteRecursively(tickerFolderPath);
+    try {
+      dataSource.setBaseUrl(server.getBaseUrl());
+      for (int i = 0; i < 2; i++) {
+        try {
+          dataSource.getPrice("STANDINERROR", TestUtils.getValidDateForTrading());
+          Assert.fail("should have failed");
+        } catch (StockDataNotFoundException e) {
+          // the second lookup is answered by the negative cache
+          Assert.assertEquals(1, server.getRequestCount());
+          Assert.assertEquals(1, server.getErrorCount());
+        }
+      }
+    } finally {
+      dataSource.setBaseUrl(baseUrl);
+      server.stop();
+      dataSource.awaitDiskCacheWrites(10, TimeUnit.SECONDS);
+      deleteRecursively(tickerFolderPath);
+    }
+  }
+
+  @Test
+  public void prefetchingPortfolioPricesWarmsCachesForValuation() throws IOException,
+          InterruptedException {
+    AlphaVantageStandInServer server = new AlphaVantageStandInServer.Builder()
+            .setHistoryInDays(365)
+            .build();
+    server.start();
+    AlphaVantageAPIStockDataSource dataSource = AlphaVantageAPIStockDataSource.getInstance();
+    String baseUrl = dataSource.getBaseUrl();
+    List<Path> tickerFolderPaths = Arrays.asList(Paths.get("StocksPriceCache", "PREFETCHA"),
+            Paths.get("StocksPriceCache", "PREFETCHB"));
+    for (Path tickerFolderPath : tickerFolderPaths) {
+      deleteRecursively(tickerFolderPath);
+    }
+    try {
+      dataSource.setBaseUrl(server.getBaseUrl());
+      Date date = new Date(Utils.getTodayDate().getTime() - TimeUnit.DAYS.toMillis(30));
+      StockPrice stockPrice = new StockPrice(BigDecimal.ONE, date);
+      Portfolio portfolio = new Portfolio("prefetch", StockDAOType.SIMPLE,
+              StockDataSourceType.ALPHA_VANTAGE, Arrays.asList(
+                      new SharePurchaseOrder("PREFETCHA", stockPrice, 1),
+                      new SharePurchaseOrder("PREFETCHB", stockPrice, 2),
+                      new SharePurchaseOrder("PREFETCHA", stockPrice, 3)));
+
+      portfolio.prefetchPrices().join();
+      Assert.assertEquals(2, server.getRequestCount());
+
+      Assert.assertEquals(1, portfolio.getValue(date).signum());
+      Assert.assertEquals(2, server.getRequestCount());
+    } finally {
+      dataSource.setBaseUrl(baseUrl);
+      server.stop();
+      dataSource.awaitDiskCacheWrites(10, TimeUnit.SECONDS);
+      for (Path tickerFolderPath : tickerFolderPaths) {
+        deleteRecursively(tickerFolderPath);
+      }
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(path)) {
+      for (Path pathToDelete : paths.sorted(Comparator.reverseOrder())
+              .collect(Collectors.toList())) {
+        Files.delete(pathToDelete);
+      }
+    }
+  }
+  // end of AlphaVantageStandInServer tests
+
+
+  // start of NegativePriceCache tests
+  @Test
+  public void negativeCacheRemembersMissesAcrossInstances() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    NegativePriceCache negativePriceCache = new NegativePriceCache(rootPath, 10);
+    negativePriceCache.putMissingRange("AAPL", 17000, 17002, 1, TimeUnit.HOURS);
+    negativePriceCache.putUnknownTicker("XYZ", 1, TimeUnit.HOURS);
+
+    for (NegativePriceCache cache : Arrays.asList(negativePriceCache,
+            new NegativePriceCache(rootPath, 10))) {
+      Assert.assertTrue(cache.isMissing("AAPL", 17000));
+      Assert.assertTrue(cache.isMissing("AAPL", 17002));
+      Assert.assertFalse(cache.isMissing("AAPL", 17003));
+      Assert.assertFalse(cache.isUnknownTicker("AAPL"));
+      Assert.assertTrue(cache.isUnknownTicker("XYZ"));
+      Assert.assertTrue(cache.isMissing("XYZ", 17003));
+      Assert.assertFalse(cache.isUnknownTicker("GOOG"));
+    }
+  }
+
+  @Test
+  public void expiredMissesAreForgotten() throws IOException {
+    NegativePriceCache negativePriceCache =
+            new NegativePriceCache(Files.createTempDirectory("StocksPriceCache"), 10);
+    negativePriceCache.putMissingRange("AAPL", 17000, 17002, 0, TimeUnit.HOURS);
+    negativePriceCache.putUnknownTicker("XYZ", 0, TimeUnit.HOURS);
+    Assert.assertFalse(negativePriceCache.isMissing("AAPL", 17001));
+    Assert.assertFalse(negativePriceCache.isUnknownTicker("XYZ"));
+  }
+
+  @Test
+  public void negativeCacheKeepsMissPutWhileLoadingTicker() throws Exception {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      for (int i = 0; i < 100; i++) {
+        NegativePriceCache negativePriceCache = new NegativePriceCache(rootPath, 10);
+        String tickerName = "T" + i;
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?> lookup = executorService.submit(() -> {
+          start.await();
+          return negativePriceCache.isMissing(tickerName, 17000);
+        });
+        Future<?> put = executorService.submit(() -> {
+          start.await();
+          negativePriceCache.putMissingRange(tickerName, 17001, 17001, 1, TimeUnit.HOURS);
+          return null;
+        });
+        start.countDown();
+        lookup.get(10, TimeUnit.SECONDS);
+        put.get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(negativePriceCache.isMissing(tickerName, 17001));
+      }
+    } finally {
+      executorService.shutdownNow();
+      deleteRecursively(rootPath);
+    }
+  }
+
+  @Test
+  public void negativeCacheRejectsTickerNamesOutsideItsFolder() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    try {
+      NegativePriceCache negativePriceCache = new NegativePriceCache(rootPath, 10);
+      for (String tickerName : Arrays.asList("", "..", "../AAPL", "A/B", "A\\B")) {
+        try {
+          negativePriceCache.putUnknownTicker(tickerName, 1, TimeUnit.HOURS);
+          Assert.fail("should have failed");
+        } catch (IllegalArgumentException e) {
+          Assert.assertEquals("Invalid ticker name: " + tickerName, e.getMessage());
+        }
+        try {
+          negativePriceCache.isUnknownTicker(tickerName);
+          Assert.fail("should have failed");
+        } catch (IllegalArgumentException e) {
+          Assert.assertEquals("Invalid ticker name: " + tickerName, e.getMessage());
+        }
+      }
+      Assert.assertFalse(Files.exists(rootPath.resolveSibling("AAPL")));
+    } finally {
+      deleteRecursively(rootPath);
+    }
+  }
+  // end of NegativePriceCache tests
+
+
+  // start of Utils date tests
+  @Test
+  public void epochDayConversionsIgnoreTimeOfDay() throws ParseException {
+    Date date = TestUtils.getValidDateForTrading();
+    int epochDay = Utils.toEpochDay(date);
+    Assert.assertEquals(LocalDate.of(2018, 11, 1).toEpochDay(), epochDay);
+    Assert.assertEquals(Utils.removeTimeFromDate(date), Utils.fromEpochDay(epochDay));
+    Assert.assertEquals(epochDay, Utils.getEpochDayFromDefaultFormattedDateString("2018-11-01"));
+    Assert.assertEquals("2018-11-01", Utils.getDefaultFormattedDateStringFromDate(date));
+    Assert.assertEquals(Utils.toEpochDay(new Date()), Utils.getTodayEpochDay());
+  }
+
+  @Test
+  public void weekendsAreNonWorkingDays() {
+    // 2018-11-03 was a Saturday
+    int saturday = (int) LocalDate.of(2018, 11, 3).toEpochDay();
+    Assert.assertFalse(Utils.isNonWorkingDayOfTheWeek(saturday - 1));
+    Assert.assertTrue(Utils.isNonWorkingDayOfTheWeek(saturday));
+    Assert.assertTrue(Utils.isNonWorkingDayOfTheWeek(saturday + 1));
+    Assert.assertFalse(Utils.isNonWorkingDayOfTheWeek(saturday + 2));
+  }
+
+  @Test
+  public void invalidDateStringsAreNotParsed() {
+    for (String dateString : Arrays.asList("2018-02-30", "2018-13-01", "2018/11/01", "")) {
+      try {
+        Utils.getDateFromDefaultFormattedDateString(dateString);
+        Assert.fail("should have failed");
+      } catch (ParseException e) {
+        Assert.assertEquals(String.format("Unparseable date: \"%s\"", dateString),
+                e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void dateFormattingIsThreadSafe() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    AtomicInteger numMismatches = new AtomicInteger();
+    for (int i = 0; i < 8; i++) {
+      int offset = i;
+      threads.add(new Thread(() -> {
+        for (int epochDay = 17000 + offset; epochDay < 18000; epochDay += 8) {
+          String dateString = Utils.getDefaultFormattedDateStringFromDate(
+                  Utils.fromEpochDay(epochDay));
+          if (!LocalDate.ofEpochDay(epochDay).toString().equals(dateString)) {
+            numMismatches.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals(0, numMismatches.get());
+  }
+  // end of Utils date tests
+
+
+  // start of FixedPointDecimal tests
+  @Test
+  public void fixedPointSumsAreEqualToBigDecimalSums() {
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      BigDecimal expected = BigDecimal.ZERO;
+      FixedPointDecimal actual = new FixedPointDecimal();
+      for (int j = 0; j < 10; j++) {
+        StockPrice stockPrice = new StockPrice(random.nextInt(10_000_000), random.nextInt(5),
+                new Date());
+        long quantity = random.nextInt(1000);
+        expected = expected.add(stockPrice.getUnitPrice().multiply(new BigDecimal(quantity)));
+        stockPrice.addCostTo(actual, quantity);
+      }
+      // equals also compares the scale
+      Assert.assertEquals(expected, actual.toBigDecimal());
+    }
+  }
+
+  @Test
+  public void fixedPointSumFallsBackToBigDecimalOnOverflow() {
+    FixedPointDecimal actual = new FixedPointDecimal();
+    actual.addProduct(Long.MAX_VALUE, 2, 3).add(new BigDecimal("0.001"));
+    Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(BigDecimal.valueOf(3))
+            .add(new BigDecimal("0.001")), actual.toBigDecimal());
+
+    actual.add(new BigDecimal(0.1D));
+    Assert.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(BigDecimal.valueOf(3))
+            .add(new BigDecimal("0.001")).add(new BigDecimal(0.1D)), actual.toBigDecimal());
+  }
+
+  @Test
+  public void fixedPointSumFallsBackToBigDecimalWhenAddingOverflows() {
+    FixedPointDecimal actual = new FixedPointDecimal()
+            .addProduct(9_000_000_000_000_000_000L, 0, 1)
+            .addProduct(999_999_999_999_999_999L, 0, 1);
+    Assert.assertEquals(new BigDecimal("9999999999999999999"), actual.toBigDecimal());
+
+    actual.addProduct(1, 0, 1).add(BigDecimal.ONE);
+    Assert.assertEquals(new BigDecimal("10000000000000000001"), actual.toBigDecimal());
+  }
+
+  @Test
+  public void fixedPointSumFallsBackToBigDecimalWhenRescalingOverflows() {
+    FixedPointDecimal actual = new FixedPointDecimal()
+            .addProduct(2_000_000_000_000_000L, 0, 1)
+            .addProduct(12345, 4, 1);
+    Assert.assertEquals(new BigDecimal("2000000000000001.2345"), actual.toBigDecimal());
+  }
+
+  @Test
+  public void fixedPointQuantitiesAreEqualToBigDecimalQuantities() {
+    Random random = new Random(42);
+    double[] weights = {10D, 12.5D, 100D / 3, 0.01D};
+    for (int i = 0; i < 1000; i++) {
+      BigDecimal amount = BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(3))
+              .multiply(BigDecimal.valueOf(weights[i % weights.length]))
+              .divide(BigDecimal.valueOf(100), BigDecimal.ROUND_DOWN);
+      StockPrice stockPrice = new StockPrice(1 + random.nextInt(1_000_000), random.nextInt(5),
+              new Date());
+      Assert.assertEquals(amount.divide(stockPrice.getUnitPrice(), BigDecimal.ROUND_DOWN)
+              .longValue(), stockPrice.getQuantityPurchasable(FixedPointDecimal.valueOf(amount)));
+    }
+  }
+
+  @Test
+  public void costBasisIsUnchangedByFixedPointArithmetic() {
+    StockPrice stockPrice = new StockPrice(new BigDecimal("12.3456"), new Date());
+    SharePurchaseOrder withoutCommission = new SharePurchaseOrder("AAPL", stockPrice, 7);
+    SharePurchaseOrder withCommission = new SharePurchaseOrder(withoutCommission, 2.5D);
+
+    FixedPointDecimal actual = new FixedPointDecimal();
+    withoutCommission.addCostOfPurchaseTo(actual);
+    withCommission.addCostOfPurchaseTo(actual);
+    Assert.assertEquals(withoutCommission.getCostOfPurchase()
+            .add(withCommission.getCostOfPurchase()), actual.toBigDecimal());
+  }
+  // end of FixedPointDecimal tests
+
+
+  // start of CachingStockDataSource tests
+  @Test
+  public void cachingDataSourceServesCoveredRangesFromTiers() {
+    CountingStockDataSource delegate = new CountingStockDataSource(new SimpleStockDataSource());
+    MemoryPriceCacheTier sharedTier = new MemoryPriceCacheTier(1024 * 1024);
+    StockDataSource dataSource = new CachingStockDataSource.Builder(delegate)
+            .addTier(sharedTier)
+            .build();
+    int todayEpochDay = Utils.getTodayEpochDay();
+    Date fromDate = Utils.fromEpochDay(todayEpochDay - 30);
+    Date toDate = Utils.fromEpochDay(todayEpochDay - 10);
+
+    PriceSeries priceSeries = dataSource.getPrices("AAPL", fromDate, toDate);
+    Assert.assertEquals(1, delegate.numGetPricesCalls.get());
+    assertSamePrices(new SimpleStockDataSource().getPrices("AAPL", fromDate, toDate),
+            priceSeries);
+
+    // a sub range and the days with prices within the range are served from the cache
+    dataSource.getPrices("AAPL", Utils.fromEpochDay(todayEpochDay - 20), toDate);
+    dataSource.getPrice("AAPL", priceSeries.getStockPrice(0).getDate());
+    Assert.assertEquals(1, delegate.numGetPricesCalls.get());
+    Assert.assertEquals(0, delegate.numGetPriceCalls.get());
+
+    // another instance shares the tier
+    new CachingStockDataSource.Builder(delegate).addTier(sharedTier).build()
+            .getPrices("AAPL", fromDate, toDate);
+    Assert.assertEquals(1, delegate.numGetPricesCalls.get());
+
+    // an adjacent range is fetched and merged into the cached series
+    dataSource.getPrices("AAPL", Utils.fromEpochDay(todayEpochDay - 40),
+            Utils.fromEpochDay(todayEpochDay - 31));
+    dataSource.getPrices("AAPL", Utils.fromEpochDay(todayEpochDay - 40), toDate);
+    Assert.assertEquals(2, delegate.numGetPricesCalls.get());
+  }
+
+  @Test
+  public void cachingDataSourceMemoizesLookupsOutsideCachedSeries() {
+    CountingStockDataSource delegate = new CountingStockDataSource(new SimpleStockDataSource());
+    StockDataSource dataSource = new CachingStockDataSource.Builder(delegate)
+            .setMemoSize(16)
+            .build();
+    Date yesterday = Utils.fromEpochDay(Utils.getTodayEpochDay() - 1);
+    while (Utils.isNonWorkingDayOfTheWeek(yesterday)) {
+      yesterday = Utils.fromEpochDay(Utils.toEpochDay(yesterday) - 1);
+    }
+
+    Assert.assertEquals(delegate.getPrice("AAPL", yesterday),
+            dataSource.getPrice("AAPL", yesterday));
+    Assert.assertEquals(delegate.getPrice("AAPL", yesterday),
+            dataSource.getPrice("AAPL", yesterday));
+    Assert.assertEquals(3, delegate.numGetPriceCalls.get());
+
+    // the rules of the decorated data source for days without prices are kept
+    try {
+      dataSource.getPrice("UNKNOWN", yesterday);
+      Assert.fail("should have failed");
+    } catch (StockDataNotFoundException e) {
+      Assert.assertEquals(4, delegate.numGetPriceCalls.get());
+    }
+  }
+
+  @Test
+  public void cachingDataSourceLooksUpMemoBeforeTiers() {
+    CountingStockDataSource delegate = new CountingStockDataSource(new SimpleStockDataSource());
+    AtomicInteger numTierLookups = new AtomicInteger();
+    StockDataSource dataSource = new CachingStockDataSource.Builder(delegate)
+            .setMemoSize(32)
+            .addTier(new PriceCacheTier() {
+              @Override
+              public Optional<CachedPriceSeries> get(String tickerName) {
+                numTierLookups.incrementAndGet();
+                return Optional.empty();
+              }
+
+              @Override
+              public void put(String tickerName, CachedPriceSeries cachedPriceSeries) {
+                // caches nothing
+              }
+            })
+            .build();
+    List<Date> workingDays = new ArrayList<>();
+    for (int epochDay = Utils.getTodayEpochDay() - 1; workingDays.size() < 3; epochDay--) {
+      if (!Utils.isNonWorkingDayOfTheWeek(epochDay)) {
+        workingDays.add(0, Utils.fromEpochDay(epochDay));
+      }
+    }
+
+    for (Date day : workingDays) {
+      dataSource.getPrice("AAPL", day);
+      dataSource.getPrice("AAPL", day);
+    }
+    Assert.assertEquals(3, numTierLookups.get());
+    Assert.assertEquals(3, delegate.numGetPriceCalls.get());
+
+    // a ticker keeps two days of a memo of 32 lookups, the farthest day was dropped
+    dataSource.getPrice("AAPL", workingDays.get(2));
+    dataSource.getPrice("AAPL", workingDays.get(0));
+    Assert.assertEquals(4, numTierLookups.get());
+    Assert.assertEquals(4, delegate.numGetPriceCalls.get());
+  }
+
+  @Test
+  public void cachingDataSourcePromotesSeriesFromDiskTier() throws IOException {
+    Path rootPath = Files.createTempDirectory("tiered-price-cache");
+    try {
+      CountingStockDataSource delegate =
+              new CountingStockDataSource(new SimpleStockDataSource());
+      int todayEpochDay = Utils.getTodayEpochDay();
+      Date fromDate = Utils.fromEpochDay(todayEpochDay - 30);
+      Date toDate = Utils.fromEpochDay(todayEpochDay - 10);
+      new CachingStockDataSource.Builder(delegate)
+              .addTier(new DiskPriceCacheTier(rootPath))
+              .build()
+              .getPrices("GOOG", fromDate, toDate);
+
+      // a fresh memory tier is filled from the disk tier, as after a restart
+      MemoryPriceCacheTier memoryTier = new MemoryPriceCacheTier(1024 * 1024);
+      PriceSeries priceSeries = new CachingStockDataSource.Builder(delegate)
+              .addTier(memoryTier)
+              .addTier(new DiskPriceCacheTier(rootPath))
+              .build()
+              .getPrices("GOOG", fromDate, toDate);
+      Assert.assertEquals(1, delegate.numGetPricesCalls.get());
+      assertSamePrices(new SimpleStockDataSource().getPrices("GOOG", fromDate, toDate),
+              priceSeries);
+      Assert.assertTrue(memoryTier.get("GOOG").isPresent());
+      Assert.assertEquals(todayEpochDay - 30, memoryTier.get("GOOG").get().getFromEpochDay());
+    } finally {
+      deleteRecursively(rootPath);
+    }
+  }
+
+  @Test
+  public void diskTierWritesCoverageWithSeries() throws IOException {
+    Path rootPath = Files.createTempDirectory("disk-price-cache-tier");
+    try {
+      int todayEpochDay = Utils.getTodayEpochDay();
+      PriceSeries priceSeries = new SimpleStockDataSource().getPrices("AAPL",
+              Utils.fromEpochDay(todayEpochDay - 30), Utils.fromEpochDay(todayEpochDay - 10));
+      DiskPriceCacheTier tier = new DiskPriceCacheTier(rootPath);
+      tier.put("AAPL", new CachedPriceSeries(priceSeries, todayEpochDay - 30,
+              todayEpochDay - 10));
+
+      CachedPriceSeries cachedPriceSeries = tier.get("AAPL").get();
+      Assert.assertEquals(todayEpochDay - 30, cachedPriceSeries.getFromEpochDay());
+      Assert.assertEquals(todayEpochDay - 10, cachedPriceSeries.getToEpochDay());
+      assertSamePrices(priceSeries, cachedPriceSeries.getPriceSeries());
+
+      // a series written without its range is not served by the tier
+      DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+      diskPriceCache.write("GOOG", priceSeries);
+      Assert.assertFalse(tier.get("GOOG").isPresent());
+      Assert.assertTrue(diskPriceCache.read("GOOG").isPresent());
+    } finally {
+      deleteRecursively(rootPath);
+    }
+  }
+
+  @Test
+  public void cachingDataSourceSerializesOverlappingLoadsOfTicker() throws Exception {
+    AtomicInteger numRunningLoads = new AtomicInteger();
+    AtomicInteger maxRunningLoads = new AtomicInteger();
+    StockDataSource delegate = new CountingStockDataSource(new SimpleStockDataSource()) {
+      @Override
+      public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate) {
+        maxRunningLoads.accumulateAndGet(numRunningLoads.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(50);
+          return super.getPrices(tickerName, fromDate, toDate);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        } finally {
+          numRunningLoads.decrementAndGet();
+        }
+      }
+    };
+    StockDataSource dataSource = new CachingStockDataSource.Builder(delegate)
+            .addTier(new MemoryPriceCacheTier(1024 * 1024))
+            .build();
+    int todayEpochDay = Utils.getTodayEpochDay();
+    ExecutorService executorService = Executors.newFixedThreadPool(3);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<PriceSeries>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        Date fromDate = Utils.fromEpochDay(todayEpochDay - 40 + 10 * i);
+        Date toDate = Utils.fromEpochDay(todayEpochDay - 25 + 10 * i);
+        futures.add(executorService.submit(() -> {
+          start.await();
+          return dataSource.getPrices("AAPL", fromDate, toDate);
+        }));
+      }
+      start.countDown();
+      for (int i = 0; i < 3; i++) {
+        assertSamePrices(new SimpleStockDataSource().getPrices("AAPL",
+                Utils.fromEpochDay(todayEpochDay - 40 + 10 * i),
+                Utils.fromEpochDay(todayEpochDay - 25 + 10 * i)),
+                futures.get(i).get(10, TimeUnit.SECONDS));
+      }
+      Assert.assertEquals(1, maxRunningLoads.get());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void cachingDataSourceDoesNotCoverToday() {
+    CountingStockDataSource delegate = new CountingStockDataSource(new SimpleStockDataSource());
+    StockDataSource dataSource = new CachingStockDataSource.Builder(delegate)
+            .addTier(new MemoryPriceCacheTier(1024 * 1024))
+            .build();
+    Date fromDate = Utils.fromEpochDay(Utils.getTodayEpochDay() - 5);
+    dataSource.getPrices("GE", fromDate, Utils.getTodayDate());
+    dataSource.getPrices("GE", fromDate, Utils.getTodayDate());
+    Assert.assertEquals(2, delegate.numGetPricesCalls.get());
+  }
+
+  @Test
+  public void factoryDecoratesConfiguredDataSourceTypes() throws IOException {
+    Date date = TestUtils.getValidDateForTrading();
+    StockPrice expected = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.MOCK).getPrice("AAPL", date);
+    Path diskTierPath = Paths.get("TieredPriceCache", "mock");
+    deleteRecursively(diskTierPath);
+    System.setProperty(StockDAOFactory.CACHED_DATA_SOURCE_TYPES_PROPERTY, "simple, MOCK");
+    try {
+      StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+              StockDataSourceType.MOCK);
+      Assert.assertEquals(expected, stockDAO.getPrice("AAPL", date));
+      Assert.assertEquals(expected, stockDAO.getPrice("AAPL", date));
+
+      // the prices of the in-process data sources are cached in memory only
+      Date fromDate = Utils.fromEpochDay(Utils.toEpochDay(date) - 10);
+      Assert.assertEquals(stockDAO.getPrices("AAPL", fromDate, date).size(),
+              stockDAO.getPrices("AAPL", fromDate, date).size());
+      Assert.assertFalse(Files.exists(diskTierPath));
+    } finally {
+      System.clearProperty(StockDAOFactory.CACHED_DATA_SOURCE_TYPES_PROPERTY);
+    }
+  }
+
+  @Test
+  public void factorySharesStockDAOsPerType() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.SIMPLE);
+    Assert.assertSame(stockDAO, StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.SIMPLE));
+    Assert.assertNotSame(stockDAO, StockDAOFactory.fromStockDAOAndDataSource(
+            StockDAOType.SIMPLE, StockDataSourceType.MOCK));
+
+    System.setProperty(StockDAOFactory.CACHED_DATA_SOURCE_TYPES_PROPERTY, "SIMPLE");
+    try {
+      Assert.assertNotSame(stockDAO, StockDAOFactory.fromStockDAOAndDataSource(
+              StockDAOType.SIMPLE, StockDataSourceType.SIMPLE));
+    } finally {
+      System.clearProperty(StockDAOFactory.CACHED_DATA_SOURCE_TYPES_PROPERTY);
+    }
+  }
+
+  private static void assertSamePrices(PriceSeries expected, PriceSeries actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.getStockPrice(i), actual.getStockPrice(i));
+    }
+  }
+
+  private static class CountingStockDataSource implements StockDataSource {
+    private final StockDataSource stockDataSource;
+    private final AtomicInteger numGetPriceCalls = new AtomicInteger();
+    private final AtomicInteger numGetPricesCalls = new AtomicInteger();
+
+    private CountingStockDataSource(StockDataSource stockDataSource) {
+      this.stockDataSource = stockDataSource;
+    }
+
+    @Override
+    public StockPrice getPrice(String tickerName, Date date) {
+      numGetPriceCalls.incrementAndGet();
+      return stockDataSource.getPrice(tickerName, date);
+    }
+
+    @Override
+    public PriceSeries getPrices(String tickerName, Date fromDate, Date toDate) {
+      numGetPricesCalls.incrementAndGet();
+      return stockDataSource.getPrices(tickerName, fromDate, toDate);
+    }
+  }
+  // end of CachingStockDataSource tests
+
+
+  // start of SimpleStockDataSource tests
+  @Test
+  public void simpleDataSourceKeepsDefaultPrices() {
+    StockDataSource dataSource = new SimpleStockDataSource();
+    int firstEpochDay = Utils.getTodayEpochDay() - 99;
+    for (int epochDay = firstEpochDay; epochDay <= Utils.getTodayEpochDay() - 1; epochDay++) {
+      Date date = Utils.fromEpochDay(epochDay);
+      if (Utils.isNonWorkingDayOfTheWeek(epochDay)) {
+        continue;
+      }
+      Assert.assertEquals(new StockPrice(new BigDecimal(10 + 10 * (epochDay - firstEpochDay)),
+              date), dataSource.getPrice("AAPL", date));
+      Assert.assertEquals(new StockPrice(new BigDecimal(1010 + 10 * (epochDay - firstEpochDay)),
+              date), dataSource.getPrice("GOOG", date));
+    }
+  }
+
+  @Test
+  public void syntheticUniverseIsDeterministicAndIndexed() {
+    SimpleStockDataSource.Builder builder = new SimpleStockDataSource.Builder()
+            .setNumTickers(5000)
+            .setHistoryInDays(20 * 365)
+            .setSeed(7);
+    StockDataSource dataSource = builder.build();
+    Assert.assertEquals("SYN0042", builder.getTickerName(42));
+    Assert.assertEquals("SYN4999", builder.getTickerName(4999));
+
+    Date fromDate = Utils.fromEpochDay(Utils.getTodayEpochDay() - 20 * 365 + 1);
+    PriceSeries priceSeries = dataSource.getPrices("SYN4999", fromDate, Utils.getTodayDate());
+    Assert.assertTrue(priceSeries.size() > 5000);
+    for (int i = 0; i < priceSeries.size(); i++) {
+      StockPrice stockPrice = priceSeries.getStockPrice(i);
+      Assert.assertEquals(stockPrice, dataSource.getPrice("SYN4999", stockPrice.getDate()));
+      Assert.assertTrue(stockPrice.getUnitPrice().compareTo(BigDecimal.ONE) >= 0);
+    }
+
+    Date date = priceSeries.getStockPrice(priceSeries.size() / 2).getDate();
+    Assert.assertEquals(dataSource.getPrice("SYN0001", date),
+            builder.build().getPrice("SYN0001", date));
+    Assert.assertNotEquals(dataSource.getPrice("SYN0001", date),
+            builder.setSeed(8).build().getPrice("SYN0001", date));
+
+    for (String tickerName : Arrays.asList("SYN5000", "SYN001", "AAPL")) {
+      try {
+        dataSource.getPrice(tickerName, date);
+        Assert.fail("should have failed");
+      } catch (StockDataNotFoundException e) {
+        // expected
+      }
+    }
+  }
+  // end of SimpleStockDataSource tests
+
+  // start of fetch pipeline tests
+  @Test
+  public void pipelinedInputStreamReadsSourceInOrder() throws IOException {
+    byte[] bytes = new byte[100000];
+    new Random(5).nextBytes(bytes);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      PipelinedInputStream inputStream = new PipelinedInputStream(
+              new ByteArrayInputStream(bytes), executor, 1000, 4);
+      ByteArrayOutputStream readBytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[777];
+      int numBytes;
+      while ((numBytes = inputStream.read(buffer, 0, buffer.length)) >= 0) {
+        readBytes.write(buffer, 0, numBytes);
+      }
+      Assert.assertArrayEquals(bytes, readBytes.toByteArray());
+
+      InputStream failingSource = new InputStream() {
+        private int numReads;
+
+        @Override
+        public int read() throws IOException {
+          if (numReads++ >= 10) {
+            throw new IOException("connection reset");
+          }
+          return 'a';
+        }
+      };
+      PipelinedInputStream failingInputStream = new PipelinedInputStream(failingSource,
+              executor, 4, 2);
+      try {
+        while (failingInputStream.read(buffer, 0, buffer.length) >= 0) {
+          // reads until the failure
+        }
+        Assert.fail("should have failed");
+      } catch (IOException e) {
+        Assert.assertEquals("connection reset", e.getCause().getMessage());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void writeBehindCacheServesPendingSeriesAndPersistsLatest() throws IOException,
+          InterruptedException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+    WriteBehindPriceCache writeBehindCache = new WriteBehindPriceCache(diskPriceCache, 1,
+            "test-persist");
+    for (int i = 1; i <= 50; i++) {
+      PriceSeries priceSeries = new ArrayPriceSeries.Builder(2).add(17000 + i, i).build();
+      writeBehindCache.write(diskPriceCache.lock("AAPL"), priceSeries);
+      writeBehindCache.write(diskPriceCache.lock("GOOG"), priceSeries);
+      Assert.assertEquals(17000 + i, writeBehindCache.read("AAPL")
+              .orElseThrow(AssertionError::new).getEpochDay(0));
+    }
+
+    Assert.assertTrue(writeBehindCache.awaitWrites(10, TimeUnit.SECONDS));
+    for (String tickerName : Arrays.asList("AAPL", "GOOG")) {
+      PriceSeries priceSeries = diskPriceCache.read(tickerName).orElseThrow(AssertionError::new);
+      Assert.assertEquals(17050, priceSeries.getEpochDay(0));
+      Assert.assertEquals(50, priceSeries.getUnscaledPrice(0));
+    }
+  }
+
+  @Test
+  public void priceHistoryImporterImportsDirectoryAndResumes() throws IOException {
+    Path historyPath = Files.createTempDirectory("PriceHistories");
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    Files.createDirectories(historyPath.resolve("nasdaq"));
+    Files.write(historyPath.resolve("AAPL.csv"), Arrays.asList(
+            "timestamp,open,high,low,close,volume",
+            "2018-11-26,1.0,2.0,0.5,174.62,1000",
+            "2018-11-23,1.0,2.0,0.5,172.29,1000"));
+    Files.write(historyPath.resolve("nasdaq").resolve("GOOG.csv"), Arrays.asList(
+            "date,close", "2018-11-23,1030.1"));
+    Files.write(historyPath.resolve("BAD.csv"), Arrays.asList("date,close", "yesterday,1"));
+    Files.write(historyPath.resolve("notes.txt"), Collections.singletonList("not a history"));
+    DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+    PriceHistoryImporter importer = new PriceHistoryImporter(diskPriceCache, 4, 4, 2);
+
+    PriceHistoryImporter.ImportSummary summary = importer.importDirectory(historyPath);
+    Assert.assertEquals(2, summary.getNumImportedTickers());
+    Assert.assertEquals(3, summary.getNumImportedRows());
+    Assert.assertEquals(Collections.singleton("BAD"), summary.getFailures().keySet());
+    PriceSeries priceSeries = diskPriceCache.read("AAPL").orElseThrow(AssertionError::new);
+    Assert.assertEquals(new BigDecimal("174.6200"), priceSeries.getStockPrice(1).getUnitPrice());
+    Assert.assertEquals(10301000, diskPriceCache.read("GOOG").orElseThrow(AssertionError::new)
+            .getUnscaledPrice(0));
+
+    // the imported tickers are skipped until their history changes
+    Files.setLastModifiedTime(historyPath.resolve("AAPL.csv"),
+            FileTime.fromMillis(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+    summary = importer.importDirectory(historyPath);
+    Assert.assertEquals(1, summary.getNumImportedTickers());
+    Assert.assertEquals(1, summary.getNumSkippedTickers());
+    Assert.assertEquals(1, summary.getFailures().size());
+  }
+  // end of fetch pipeline tests
+
+  // start of shared disk cache tests
+
+  @Test
+  public void tickerLockExcludesOtherHoldersUntilClosed() throws Exception {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    DiskPriceCache diskPriceCache = new DiskPriceCache(rootPath);
+    // another instance on the same folder shares the locks, as a process holds a file lock once
+    DiskPriceCache otherDiskPriceCache = new DiskPriceCache(rootPath);
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(2).add(17000, 100).build();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      DiskPriceCache.TickerLock tickerLock = diskPriceCache.lock("AAPL");
+      Future<?> otherWrite = executor.submit(() -> {
+        otherDiskPriceCache.write("AAPL", priceSeries);
+        return null;
+      });
+      try {
+        otherWrite.get(200, TimeUnit.MILLISECONDS);
+        Assert.fail("should have waited for the lock");
+      } catch (TimeoutException e) {
+        Assert.assertFalse(diskPriceCache.read("AAPL").isPresent());
+      }
+
+      tickerLock.close();
+      tickerLock.close();
+      otherWrite.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(17000, diskPriceCache.read("AAPL").orElseThrow(AssertionError::new)
+              .getEpochDay(0));
+      try {
+        diskPriceCache.write(tickerLock, priceSeries);
+        Assert.fail("should have failed");
+      } catch (IllegalArgumentException e) {
+        Assert.assertFalse(tickerLock.isHeld());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void diskCachePublishesManifestAndRefusesLaterProtocol() throws IOException {
+    Path rootPath = Files.createTempDirectory("StocksPriceCache");
+    PriceSeries priceSeries = new ArrayPriceSeries.Builder(2).add(17000, 100).build();
+    new DiskPriceCache(rootPath).write("AAPL", priceSeries);
+    Assert.assertTrue(Files.readAllLines(rootPath.resolve("manifest.properties"))
+            .contains("protocolVersion=1"));
+    try (Stream<Path> paths = Files.list(rootPath.resolve("AAPL"))) {
+      Assert.assertEquals(Arrays.asList("data.bin", "data.lock"), paths
+              .map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList()));
+    }
+
+    Files.write(rootPath.resolve("manifest.properties"),
+            Collections.singletonList("protocolVersion=99"));
+    DiskPriceCache laterDiskPriceCache = new DiskPriceCache(rootPath);
+    try {
+      laterDiskPriceCache.write("GOOG", priceSeries);
+      Assert.fail("should have failed");
+    } catch (IOException e) {
+      Assert.assertFalse(laterDiskPriceCache.read("GOOG").isPresent());
+    }
+    Assert.assertTrue(laterDiskPriceCache.read("AAPL").isPresent());
+  }
+  // end of shared disk cache tests
+
+  // start of PriceCsvReader tests
+  @Test
+  public void priceCsvReaderParsesRowsWithoutStrings() throws IOException {
+    String csv = "timestamp,open,high,low,close,volume\r\n"
+            + "2018-11-26,1.0,2.0,0.5,174.62,1000\r\n"
+            + "\n"
+            + "2016-02-29,1.0,2.0,0.5,-3.14159,1000\n"
+            + "2018-11-23 16:00:00,1.0,2.0,0.5,172.29005,1000";
+    PriceCsvReader reader = new PriceCsvReader(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    Assert.assertEquals("timestamp,open,high,low,close,volume", reader.readLine());
+    PriceSeries priceSeries = reader.readPrices(4, 4);
+
+    Assert.assertEquals(3, priceSeries.size());
+    Assert.assertEquals(LocalDate.of(2016, 2, 29).toEpochDay(), priceSeries.getEpochDay(0));
+    Assert.assertEquals(-31416, priceSeries.getUnscaledPrice(0));
+    Assert.assertEquals(LocalDate.of(2018, 11, 23).toEpochDay(), priceSeries.getEpochDay(1));
+    Assert.assertEquals(1722901, priceSeries.getUnscaledPrice(1));
+    Assert.assertEquals(1746200, priceSeries.getUnscaledPrice(2));
+    Assert.assertNull(reader.readLine());
+
+    for (String malformed : Arrays.asList("2018-02-29,1,2,3,4", "2018-11-26,1,2,3",
+            "2018-11-26,1,2,3,1e5", "2018-11-26,1,2,3,")) {
+      try {
+        new PriceCsvReader(ByteBuffer.wrap(malformed.getBytes(StandardCharsets.UTF_8)))
+                .readPrices(4, 4);
+        Assert.fail("should have failed for " + malformed);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void priceCsvReaderMatchesDateParserAcrossBufferRefills() throws IOException,
+          ParseException {
+    StringBuilder csv = new StringBuilder();
+    for (LocalDate date = LocalDate.of(1999, 1, 1); date.isBefore(LocalDate.of(2020, 1, 1));
+         date = date.plusDays(1)) {
+      csv.append(date).append(",1,1,1,").append(date.getDayOfMonth()).append(".5\n");
+    }
+    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+    directBuffer.put(bytes).flip();
+    PriceSeries priceSeries = new PriceCsvReader(directBuffer).readPrices(4, 0);
+
+    Assert.assertEquals(0, directBuffer.position());
+    Assert.assertEquals(csv.toString().split("\n").length, priceSeries.size());
+    for (int i = 0; i < priceSeries.size(); i++) {
+      LocalDate date = LocalDate.ofEpochDay(priceSeries.getEpochDay(i));
+      Assert.assertEquals(priceSeries.getEpochDay(i),
+              Utils.getEpochDayFromDefaultFormattedDateString(date.toString()));
+      Assert.assertEquals(date.getDayOfMonth() + 1, priceSeries.getUnscaledPrice(i));
+    }
+  }
+  // end of PriceCsvReader tests
+
+  // start of TradingCalendar tests
+  @Test
+  public void tradingCalendarResolvesHolidaysFromSeries() {
+    // 2018-11-22 was Thanksgiving and 2018-11-24 a Saturday
+    int wednesday = (int) LocalDate.of(2018, 11, 21).toEpochDay();
+    ArrayPriceSeries.Builder builder = new ArrayPriceSeries.Builder(0);
+    for (int epochDay : new int[]{wednesday, wednesday + 2, wednesday + 5}) {
+      builder.add(epochDay, 10L);
+    }
+    TradingCalendar tradingCalendar = new TradingCalendar();
+    tradingCalendar.addTradingDays(builder.build());
+
+    Assert.assertTrue(tradingCalendar.isTradingDay(wednesday));
+    Assert.assertFalse(tradingCalendar.isTradingDay(wednesday + 1));
+    Assert.assertEquals(wednesday + 2, tradingCalendar.getNextTradingDay(wednesday + 1));
+    Assert.assertEquals(wednesday + 5, tradingCalendar.getNextTradingDay(wednesday + 3));
+    Assert.assertEquals(wednesday + 2, tradingCalendar.getPreviousTradingDay(wednesday + 4));
+    Assert.assertFalse(tradingCalendar.isKnownDay(wednesday - 1));
+    Assert.assertEquals(TradingCalendar.UNKNOWN_DAY,
+            tradingCalendar.getNextTradingDay(wednesday + 6));
+
+    // another ticker that traded on the holiday and later days makes them trading days
+    tradingCalendar.addTradingDays(wednesday + 1, wednesday + 8,
+            epochDay -> !Utils.isNonWorkingDayOfTheWeek(epochDay));
+    Assert.assertTrue(tradingCalendar.isTradingDay(wednesday + 1));
+    Assert.assertTrue(tradingCalendar.isTradingDay(wednesday));
+    Assert.assertEquals(wednesday + 6, tradingCalendar.getNextTradingDay(wednesday + 6));
+    Assert.assertEquals(wednesday + 2, tradingCalendar.getPreviousTradingDay(wednesday + 4));
+  }
+
+  @Test
+  public void tradingCalendarDoesNotKnowDaysBetweenDisjointSeries() {
+    int monday = (int) LocalDate.of(2008, 12, 29).toEpochDay();
+    int laterMonday = (int) LocalDate.of(2012, 1, 2).toEpochDay();
+    TradingCalendar tradingCalendar = new TradingCalendar();
+    tradingCalendar.addTradingDays(new ArrayPriceSeries.Builder(0)
+            .add(monday, 10L).add(monday + 2, 10L).build());
+    tradingCalendar.addTradingDays(new ArrayPriceSeries.Builder(0)
+            .add(laterMonday + 1, 10L).add(laterMonday + 3, 10L).build());
+
+    Assert.assertFalse(tradingCalendar.isKnownDay(monday + 3));
+    Assert.assertFalse(tradingCalendar.isKnownDay(laterMonday));
+    Assert.assertEquals(TradingCalendar.UNKNOWN_DAY,
+            tradingCalendar.getNextTradingDay(monday + 100));
+    Assert.assertEquals(TradingCalendar.UNKNOWN_DAY,
+            tradingCalendar.getPreviousTradingDay(laterMonday - 100));
+    Assert.assertEquals(laterMonday + 3, tradingCalendar.getNextTradingDay(laterMonday + 2));
+    Assert.assertEquals(monday + 2, tradingCalendar.getPreviousTradingDay(monday + 2));
+
+    // a series spanning the gap makes its days known
+    tradingCalendar.addTradingDays(monday, laterMonday + 3,
+            epochDay -> !Utils.isNonWorkingDayOfTheWeek(epochDay));
+    Assert.assertEquals(monday + 3, tradingCalendar.getNextTradingDay(monday + 3));
+    Assert.assertEquals(laterMonday, tradingCalendar.getNextTradingDay(laterMonday - 1));
+  }
+
+  @Test
+  public void strategyMovesWeekendsToNextTradingDayOfCalendar() {
+    int saturday = Utils.getTodayEpochDay() - 40;
+    while (!Utils.isNonWorkingDayOfTheWeek(saturday)
+            || Utils.isNonWorkingDayOfTheWeek(saturday - 1)) {
+      saturday++;
+    }
+    Strategy strategy = new RecurringWeightedInvestmentStrategy(Utils.fromEpochDay(saturday),
+            Collections.singletonMap("AAPL", 100D), 7, Utils.fromEpochDay(saturday));
+    List<SharePurchaseOrder> sharePurchaseOrders = strategy.execute(new BigDecimal(10000),
+            StockDAOType.SIMPLE, StockDataSourceType.SIMPLE);
+
+    Assert.assertEquals(1, sharePurchaseOrders.size());
+    Assert.assertEquals(Utils.fromEpochDay(saturday + 2),
+            sharePurchaseOrders.get(0).getStockPrice().getDate());
+  }
+  // end of TradingCalendar tests
+
+  // start of Portfolio valuation tests
+
+  @Test
+  public void portfolioValuesRepeatedPurchasesOfAStockTogether() {
+    StockDAO stockDAO = StockDAOFactory.fromStockDAOAndDataSource(StockDAOType.SIMPLE,
+            StockDataSourceType.SIMPLE);
+    List<Date> workingDays = new ArrayList<>();
+    for (int i = 1; workingDays.size() < 50; i++) {
+      Date day = new Date(Utils.getTodayDate().getTime() - TimeUnit.DAYS.toMillis(i));
+      if (!Utils.isNonWorkingDayOfTheWeek(day)) {
+        workingDays.add(day);
+      }
+    }
+    Date date = workingDays.get(1);
+    List<String> tickerNames = Arrays.asList("AAPL", "GOOG", "GE");
+    List<SharePurchaseOrder> purchases = new ArrayList<>();
+    BigDecimal expectedValue = BigDecimal.ZERO;
+    for (int i = 0; i < 300; i++) {
+      String tickerName = tickerNames.get(i % tickerNames.size());
+      Date purchaseDate = workingDays.get(1 + i % 49);
+      purchases.add(new SharePurchaseOrder(tickerName,
+              stockDAO.getPrice(tickerName, purchaseDate), i + 1));
+      expectedValue = expectedValue.add(stockDAO.getPrice(tickerName, date).getUnitPrice()
+              .multiply(BigDecimal.valueOf(i + 1)));
+    }
+    // bought after the date, hence not part of its value
+    purchases.add(new SharePurchaseOrder("GOOG", stockDAO.getPrice("GOOG", workingDays.get(0)),
+            1000));
+    Portfolio portfolio = new Portfolio("recurring", StockDAOType.SIMPLE,
+            StockDataSourceType.SIMPLE, purchases) {
+      @Override
+      protected Date getTodayDate() {
+        return workingDays.get(0);
+      }
+    };
+
+    Assert.assertEquals(0, expectedValue.compareTo(portfolio.getValue(date)));
+    Assert.assertTrue(portfolio.toString().contains(Utils.getFormattedCurrencyNumberString(
+            portfolio.getValue(workingDays.get(0)))));
+  }
+  // end of Portfolio valuation tests
+
+
   private static class MockModel implements UserModel {
 
     protected final StringBuilder log;